@@ -0,0 +1,214 @@
+package org.lab1.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Typed entry points into the application classes.
+ * <p>
+ * The application lives in the unnamed package, which cannot be imported from a named package,
+ * and JMH refuses benchmark classes in the unnamed package. The application is therefore reached through
+ * {@code static final} method handles, which the JIT inlines like direct calls.
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodHandle NEW_USER = constructor("User", String.class, String.class);
+    private static final MethodHandle NEW_VEHICLE = constructor("Vehicle", String.class, String.class, int.class);
+    private static final MethodHandle NEW_HOME_POLICY = constructor("HomePolicy",
+            int.class, String.class, String.class, String.class, float.class, float.class);
+    private static final MethodHandle NEW_AUTO_POLICY = constructor("AutoPolicy",
+            int.class, int.class, type("Vehicle"));
+
+    private static final MethodHandle ADD_POLICY = virtual("User", "addPolicy", void.class, type("Policy"));
+    private static final MethodHandle HAS_ACTIVE_HOME = virtual("User", "hasActiveHomePolicy", boolean.class);
+    private static final MethodHandle HAS_ACTIVE_AUTO = virtual("User", "hasActiveAutoPolicy", boolean.class);
+    private static final MethodHandle CALCULATE_PREMIUM = virtual("Policy", "calculatePremium", void.class, type("User"));
+    private static final MethodHandle GET_TOTAL_PREMIUM = virtual("Policy", "getTotalPremium", float.class);
+
+    private static final MethodHandle AUTHENTICATE = statik("AuthManager", "authenticate",
+            type("User"), String.class, String.class);
+    private static final MethodHandle REGISTER_USER = statik("AuthManager", "registerUser",
+            boolean.class, String.class, String.class);
+    private static final MethodHandle LOGIN = statik("AuthManager", "login",
+            String.class, String.class, String.class);
+    private static final MethodHandle AUTHENTICATE_TOKEN = statik("AuthManager", "authenticateToken",
+            type("User"), String.class);
+
+    private App() {
+    }
+
+    static Object newUser(String username, String password) {
+        try {
+            return (Object) NEW_USER.invokeExact(username, password);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object newVehicle(String make, String model, int year) {
+        try {
+            return (Object) NEW_VEHICLE.invokeExact(make, model, year);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object newHomePolicy(int homeAge, String dwellingType, String heatingType, String location,
+                                float homeValue, float liabilityLimit) {
+        try {
+            return (Object) NEW_HOME_POLICY.invokeExact(homeAge, dwellingType, heatingType, location,
+                    homeValue, liabilityLimit);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object newAutoPolicy(int driverAge, int accidentCount, Object vehicle) {
+        try {
+            return (Object) NEW_AUTO_POLICY.invokeExact(driverAge, accidentCount, vehicle);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void addPolicy(Object user, Object policy) {
+        try {
+            ADD_POLICY.invokeExact(user, policy);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static boolean hasActiveHomePolicy(Object user) {
+        try {
+            return (boolean) HAS_ACTIVE_HOME.invokeExact(user);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static boolean hasActiveAutoPolicy(Object user) {
+        try {
+            return (boolean) HAS_ACTIVE_AUTO.invokeExact(user);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void calculatePremium(Object policy, Object user) {
+        try {
+            CALCULATE_PREMIUM.invokeExact(policy, user);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static float getTotalPremium(Object policy) {
+        try {
+            return (float) GET_TOTAL_PREMIUM.invokeExact(policy);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object authenticate(String username, String password) {
+        try {
+            return (Object) AUTHENTICATE.invokeExact(username, password);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static boolean registerUser(String username, String password) {
+        try {
+            return (boolean) REGISTER_USER.invokeExact(username, password);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static String login(String username, String password) {
+        try {
+            return (String) LOGIN.invokeExact(username, password);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object authenticateToken(String token) {
+        try {
+            return (Object) AUTHENTICATE_TOKEN.invokeExact(token);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class not found: " + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(type(className), methodType(void.class, parameterTypes));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Constructor not found on " + className, e);
+        }
+    }
+
+    private static MethodHandle virtual(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(type(className), name, methodType(returnType, parameterTypes));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + className + "." + name, e);
+        }
+    }
+
+    private static MethodHandle statik(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findStatic(type(className), name, methodType(returnType, parameterTypes));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * Replaces application types in a method type with {@code Object}, keeping primitives and JDK types.
+     */
+    private static MethodType erase(MethodType type) {
+        MethodType erased = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) {
+                erased = erased.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationType(type.returnType())) {
+            erased = erased.changeReturnType(Object.class);
+        }
+        return erased;
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException e) {
+            return e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,77 @@
+package org.lab1.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code AuthManager.authenticate} with 10^6 registered users.
+ * <p>
+ * Passwords are hashed with a single PBKDF2 iteration, so registering the users stays feasible and the result
+ * remains comparable with earlier runs of this benchmark; {@link LoginThroughputBenchmark} measures logins at the
+ * production iteration count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g", "-Dtaylor.password.iterations=1"})
+public class AuthenticateBenchmark {
+    private static final int REGISTERED_USERS = 1_000_000;
+    private static final int POOL_SIZE = 4096;
+
+    /**
+     * Registers the users once per fork; the registry is static and shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Setup
+        public void setup() {
+            for (int i = 0; i < REGISTERED_USERS; i++) {
+                App.registerUser("user" + i, "password" + i);
+            }
+        }
+    }
+
+    /**
+     * hit: valid credentials; wrong-password: existing user, bad password; miss: unknown user.
+     */
+    @State(Scope.Thread)
+    public static class Credentials {
+        @Param({"hit", "wrong-password", "miss"})
+        public String outcome;
+
+        String[] usernames;
+        String[] passwords;
+        int next;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            usernames = new String[POOL_SIZE];
+            passwords = new String[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                int id = random.nextInt(REGISTERED_USERS);
+                usernames[i] = outcome.equals("miss") ? "nobody" + id : "user" + id;
+                passwords[i] = outcome.equals("hit") ? "password" + id : "wrong" + id;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object authenticate(Registry registry, Credentials credentials) {
+        int i = credentials.next++ & (POOL_SIZE - 1);
+        return App.authenticate(credentials.usernames[i], credentials.passwords[i]);
+    }
+}
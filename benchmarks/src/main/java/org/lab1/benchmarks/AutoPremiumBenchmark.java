@@ -0,0 +1,81 @@
+package org.lab1.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code AutoPolicy.calculatePremium} over a pool of pre-built policies.
+ * The distribution parameter controls which rating branches the inputs exercise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AutoPremiumBenchmark {
+    private static final int POOL_SIZE = 1024;
+
+    /**
+     * uniform: driver ages, accident counts and vehicle years mixed at random;
+     * clean-record: experienced drivers, no accidents, new vehicles; high-risk: young drivers, 3+ accidents, old vehicles.
+     */
+    @Param({"uniform", "clean-record", "high-risk"})
+    public String distribution;
+
+    private Object[] policies;
+    private Object owner;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        policies = new Object[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int driverAge;
+            int accidentCount;
+            int year;
+            switch (distribution) {
+                case "clean-record" -> {
+                    driverAge = 30 + random.nextInt(40);
+                    accidentCount = 0;
+                    year = 2022 + random.nextInt(3);
+                }
+                case "high-risk" -> {
+                    driverAge = 16 + random.nextInt(9);
+                    accidentCount = 3 + random.nextInt(3);
+                    year = 1990 + random.nextInt(10);
+                }
+                default -> {
+                    driverAge = 16 + random.nextInt(70);
+                    accidentCount = random.nextInt(5);
+                    year = 1995 + random.nextInt(30);
+                }
+            }
+            policies[i] = App.newAutoPolicy(driverAge, accidentCount, App.newVehicle("Toyota", "Corolla", year));
+        }
+
+        // the owner holds one home policy, so the multi-policy discount lookup is part of the measurement
+        owner = App.newUser("bench", "bench");
+        App.addPolicy(owner, App.newHomePolicy(20, "house", "electric", "urban", 300_000f, 1_000_000f));
+    }
+
+    @Benchmark
+    public float calculatePremium() {
+        Object policy = policies[next++ & (POOL_SIZE - 1)];
+        App.calculatePremium(policy, owner);
+        return App.getTotalPremium(policy);
+    }
+}
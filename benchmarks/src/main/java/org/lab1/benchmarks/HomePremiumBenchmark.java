@@ -0,0 +1,88 @@
+package org.lab1.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code HomePolicy.calculatePremium} over a pool of pre-built policies.
+ * The distribution parameter controls which rating branches the inputs exercise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HomePremiumBenchmark {
+    private static final int POOL_SIZE = 1024;
+
+    /**
+     * uniform: all heating types, locations, ages and limits mixed at random;
+     * urban-electric: only the cheapest branches; rural-oil-old: only the most expensive branches.
+     */
+    @Param({"uniform", "urban-electric", "rural-oil-old"})
+    public String distribution;
+
+    private Object[] policies;
+    private Object owner;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] heatingTypes = {"oil", "wood", "electric"};
+        String[] locations = {"urban", "rural"};
+        policies = new Object[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int homeAge;
+            String heating;
+            String location;
+            float liabilityLimit;
+            switch (distribution) {
+                case "urban-electric" -> {
+                    homeAge = random.nextInt(25);
+                    heating = "electric";
+                    location = "urban";
+                    liabilityLimit = 1_000_000f;
+                }
+                case "rural-oil-old" -> {
+                    homeAge = 51 + random.nextInt(100);
+                    heating = "oil";
+                    location = "rural";
+                    liabilityLimit = 2_000_000f;
+                }
+                default -> {
+                    homeAge = random.nextInt(100);
+                    heating = heatingTypes[random.nextInt(heatingTypes.length)];
+                    location = locations[random.nextInt(locations.length)];
+                    liabilityLimit = random.nextBoolean() ? 2_000_000f : 1_000_000f;
+                }
+            }
+            float homeValue = 100_000 + random.nextInt(900_000);
+            policies[i] = App.newHomePolicy(homeAge, "house", heating, location, homeValue, liabilityLimit);
+        }
+
+        // the owner holds one auto policy, so the multi-policy discount lookup is part of the measurement
+        owner = App.newUser("bench", "bench");
+        App.addPolicy(owner, App.newAutoPolicy(40, 0, App.newVehicle("Honda", "Civic", 2020)));
+    }
+
+    @Benchmark
+    public float calculatePremium() {
+        Object policy = policies[next++ & (POOL_SIZE - 1)];
+        App.calculatePremium(policy, owner);
+        return App.getTotalPremium(policy);
+    }
+}
@@ -0,0 +1,92 @@
+package org.lab1.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sustained logins per second with one benchmark thread per core.
+ * <p>
+ * Every password login hashes with PBKDF2 on the verification pool, so throughput levels off at the pool size
+ * (half the cores) however many threads log in. Requests with a session token skip the hash.
+ * Run with {@code -jvmArgsAppend -Dtaylor.password.iterations=N} to see the effect of the iteration count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(2)
+public class LoginThroughputBenchmark {
+    private static final int REGISTERED_USERS = 64;
+    private static final int POOL_SIZE = 4096;
+
+    /**
+     * Registers and logs in the users once per fork; the registry is static and shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Registry {
+        String[] tokens;
+
+        @Setup
+        public void setup() {
+            tokens = new String[REGISTERED_USERS];
+            for (int i = 0; i < REGISTERED_USERS; i++) {
+                App.registerUser("user" + i, "password" + i);
+                tokens[i] = App.login("user" + i, "password" + i);
+            }
+        }
+    }
+
+    /**
+     * hit: valid credentials; wrong-password: existing user, bad password; miss: unknown user;
+     * token: a live session token instead of a password.
+     */
+    @State(Scope.Thread)
+    public static class Credentials {
+        @Param({"hit", "wrong-password", "miss", "token"})
+        public String outcome;
+
+        String[] usernames;
+        String[] passwords;
+        String[] tokens;
+        boolean useToken;
+        int next;
+
+        @Setup
+        public void setup(Registry registry) {
+            useToken = outcome.equals("token");
+            Random random = new Random(42);
+            usernames = new String[POOL_SIZE];
+            passwords = new String[POOL_SIZE];
+            tokens = new String[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                int id = random.nextInt(REGISTERED_USERS);
+                usernames[i] = outcome.equals("miss") ? "nobody" + id : "user" + id;
+                passwords[i] = outcome.equals("hit") ? "password" + id : "wrong" + id;
+                tokens[i] = registry.tokens[id];
+            }
+        }
+    }
+
+    @Benchmark
+    public Object authenticate(Credentials credentials) {
+        int i = credentials.next++ & (POOL_SIZE - 1);
+        if (credentials.useToken) {
+            return App.authenticateToken(credentials.tokens[i]);
+        }
+        return App.authenticate(credentials.usernames[i], credentials.passwords[i]);
+    }
+}
@@ -0,0 +1,73 @@
+package org.lab1.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code User.hasActiveHomePolicy} and {@code User.hasActiveAutoPolicy} for users holding
+ * 1, 10 and 1000 policies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class UserLookupBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int policiesPerUser;
+
+    /**
+     * miss: the user holds only policies of the other type, so every lookup scans the whole list;
+     * last: the matching policy is the last one added; first: the matching policy is the first one added.
+     */
+    @Param({"miss", "last", "first"})
+    public String placement;
+
+    private Object homeOwner;
+    private Object autoOwner;
+
+    @Setup
+    public void setup() {
+        Object vehicle = App.newVehicle("Ford", "Focus", 2015);
+
+        // holds autos, looked up for an active home policy
+        homeOwner = App.newUser("autos", "bench");
+        // holds homes, looked up for an active auto policy
+        autoOwner = App.newUser("homes", "bench");
+
+        for (int i = 0; i < policiesPerUser; i++) {
+            boolean match = switch (placement) {
+                case "last" -> i == policiesPerUser - 1;
+                case "first" -> i == 0;
+                default -> false;
+            };
+            Object home = App.newHomePolicy(20, "house", "electric", "urban", 300_000f, 1_000_000f);
+            Object auto = App.newAutoPolicy(40, 0, vehicle);
+            App.addPolicy(homeOwner, match ? home : auto);
+            App.addPolicy(autoOwner, match ? auto : home);
+        }
+    }
+
+    @Benchmark
+    public boolean hasActiveHomePolicy() {
+        return App.hasActiveHomePolicy(homeOwner);
+    }
+
+    @Benchmark
+    public boolean hasActiveAutoPolicy() {
+        return App.hasActiveAutoPolicy(autoOwner);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * The {@code AccountFact} enum lists the facts about a user's account that premiums depend on.
+ * Each fact is provided by one kind of policy and read by the rating of others; see
+ * {@link Policy#providedFact()} and {@link Policy#dependsOn(AccountFact)}. The {@link RepricingEngine} re-prices
+ * the dependent policies when a fact changes state.
+ */
+public enum AccountFact {
+    /**
+     * The user holds at least one active home policy, which earns auto policies the multi-policy discount.
+     */
+    ACTIVE_HOME_POLICY,
+
+    /**
+     * The user holds at least one active auto policy, which earns home policies the multi-policy discount.
+     */
+    ACTIVE_AUTO_POLICY;
+
+    /**
+     * Checks whether the fact currently holds for a user.
+     *
+     * @param user The user to check.
+     * @return {@code true} if the fact holds.
+     */
+    public boolean holds(User user) {
+        return count(user) > 0;
+    }
+
+    /**
+     * Counts the active policies of a user that provide the fact.
+     *
+     * @param user The user to check.
+     * @return The number of providing policies; the fact holds while it is positive.
+     */
+    public int count(User user) {
+        return this == ACTIVE_HOME_POLICY ? user.getActiveHomePolicyCount() : user.getActiveAutoPolicyCount();
+    }
+}
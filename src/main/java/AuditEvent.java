@@ -0,0 +1,83 @@
+/**
+ * The {@code AuditEvent} class is one entry of the {@link AuditLog}: what happened, when, to which user and policy.
+ * <p>
+ * Events live in the slots of the audit log's ring buffer and are reused once they have been written, so an
+ * {@link AuditSubscriber} must copy any values it wants to keep rather than hold on to the event itself.
+ */
+public class AuditEvent {
+    long timestampMillis;
+    AuditEventType type;
+    String username;
+    long policyId;
+    String policyType;
+    float premium;
+
+    AuditEvent() {
+    }
+
+    /**
+     * Fills this slot with a new event. Policy fields are cleared when no policy is involved.
+     */
+    void set(long timestampMillis, AuditEventType type, User user, Policy policy) {
+        this.timestampMillis = timestampMillis;
+        this.type = type;
+        this.username = user != null ? user.getUsername() : null;
+        this.policyId = policy != null ? policy.getPolicyId() : 0;
+        this.policyType = policy != null ? policy.getPolicyType() : null;
+        this.premium = policy != null ? policy.getTotalPremium() : 0;
+    }
+
+    /**
+     * Gets the time the event happened.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Gets the kind of event.
+     *
+     * @return The event type.
+     */
+    public AuditEventType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the user the event concerns.
+     *
+     * @return The username, or {@code null} if the event concerns a policy without an owner.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the identifier of the policy the event concerns.
+     *
+     * @return The policy identifier, or {@code 0} for account events.
+     */
+    public long getPolicyId() {
+        return policyId;
+    }
+
+    /**
+     * Gets the type of the policy the event concerns.
+     *
+     * @return The policy type (e.g., "Home"), or {@code null} for account events.
+     */
+    public String getPolicyType() {
+        return policyType;
+    }
+
+    /**
+     * Gets the premium of the policy at the time of the event.
+     *
+     * @return The total premium, or {@code 0} for account events.
+     */
+    public float getPremium() {
+        return premium;
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * The {@code AuditEventType} enum lists the kinds of events recorded by the {@link AuditLog}.
+ */
+public enum AuditEventType {
+    USER_REGISTERED,
+    USER_REMOVED,
+    POLICY_ADDED,
+    POLICY_CANCELED,
+    POLICY_REMOVED,
+    POLICY_RENEWED,
+    POLICY_REPRICED
+}
@@ -0,0 +1,261 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code AuditLog} class records account and policy events without making the code that causes them wait
+ * for any output.
+ * <p>
+ * The log follows {@link PolicyEvents}. Each event is copied into a preallocated slot of a ring buffer: a thread
+ * claims a slot with one atomic increment, fills it and publishes it, with no lock and no allocation. A single
+ * background writer drains the published events in batches, appends each batch to the log file (if any) with a
+ * single write, and hands every event to the registered {@link AuditSubscriber}s, such as the console.
+ * If the buffer is full, recording threads wait for the writer to catch up rather than dropping events.
+ */
+public class AuditLog implements PolicyEventListener, Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int BATCH_BUFFER_SIZE = 1 << 18;
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AuditEvent[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLongArray published;
+    private volatile long consumed;
+    private volatile boolean running = true;
+
+    private final FileChannel file;
+    private final List<AuditSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread writer;
+
+    /**
+     * Creates an audit log and starts its writer thread. Call {@link #start()} to begin recording policy events.
+     *
+     * @param path     The file events are appended to, or {@code null} to only notify subscribers.
+     * @param capacity The number of events the ring buffer holds; rounded up to a power of two.
+     * @throws IOException If the log file cannot be opened.
+     */
+    public AuditLog(Path path, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AuditEvent[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AuditEvent();
+            published.set(i, -1);
+        }
+        this.file = path == null ? null : FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = new Thread(this::drain, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Starts recording the events reported through {@link PolicyEvents}.
+     *
+     * @return This audit log.
+     */
+    public AuditLog start() {
+        PolicyEvents.addListener(this);
+        return this;
+    }
+
+    /**
+     * Adds a subscriber that is notified of every event recorded from now on.
+     *
+     * @param subscriber The subscriber to add.
+     */
+    public void addSubscriber(AuditSubscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Returns a subscriber that writes the console messages for policy cancellations, renewals and re-pricings.
+     *
+     * @param out The stream the messages are written to.
+     * @return The console subscriber.
+     */
+    public static AuditSubscriber consoleSubscriber(PrintStream out) {
+        return event -> {
+            if (event.getType() == AuditEventType.POLICY_CANCELED) {
+                out.println(event.getPolicyType() + " policy canceled. You will still be billed for the rest of the month.");
+            } else if (event.getType() == AuditEventType.POLICY_RENEWED) {
+                out.println(event.getPolicyType() + " policy renewed successfully.");
+            } else if (event.getType() == AuditEventType.POLICY_REPRICED) {
+                out.println(event.getPolicyType() + " policy premium updated to $" + event.getPremium()
+                        + " to reflect your other policies.");
+            }
+        };
+    }
+
+    /**
+     * Records an event. Returns as soon as the event is in the ring buffer.
+     *
+     * @param type   The kind of event.
+     * @param user   The user concerned, or {@code null}.
+     * @param policy The policy concerned, or {@code null} for account events.
+     */
+    public void record(AuditEventType type, User user, Policy policy) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= slots.length) {
+            // the buffer is full; wake the writer and give it the CPU until it frees this slot
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        int slot = (int) sequence & mask;
+        slots[slot].set(System.currentTimeMillis(), type, user, policy);
+        published.set(slot, sequence);
+    }
+
+    /**
+     * Stops recording, waits until every recorded event has been written and closes the log file.
+     *
+     * @throws IOException If the log file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        PolicyEvents.removeListener(this);
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    @Override
+    public void userRegistered(User user) {
+        record(AuditEventType.USER_REGISTERED, user, null);
+    }
+
+    @Override
+    public void userRemoved(User user) {
+        record(AuditEventType.USER_REMOVED, user, null);
+    }
+
+    @Override
+    public void policyAdded(User user, Policy policy) {
+        record(AuditEventType.POLICY_ADDED, user, policy);
+    }
+
+    @Override
+    public void policyCanceled(User user, Policy policy) {
+        record(AuditEventType.POLICY_CANCELED, user, policy);
+    }
+
+    @Override
+    public void policyRemoved(User user, Policy policy) {
+        record(AuditEventType.POLICY_REMOVED, user, policy);
+    }
+
+    @Override
+    public void policyRenewed(User user, Policy policy) {
+        record(AuditEventType.POLICY_RENEWED, user, policy);
+    }
+
+    @Override
+    public void policyRepriced(User user, Policy policy) {
+        record(AuditEventType.POLICY_REPRICED, user, policy);
+    }
+
+    /**
+     * The writer thread: collects the longest run of published events, formats them into one buffer,
+     * writes the buffer and notifies subscribers, then frees the slots. Runs until closed and drained.
+     */
+    private void drain() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        long next = 0;
+        while (true) {
+            long end = next;
+            while (published.get((int) end & mask) == end
+                    && end - next < slots.length
+                    && batch.remaining() >= MAX_LINE_LENGTH * 4) {
+                AuditEvent event = slots[(int) end & mask];
+                if (file != null) {
+                    format(event, line);
+                    encoder.encode(CharBuffer.wrap(line), batch, true);
+                    encoder.reset();
+                }
+                notifySubscribers(event);
+                end++;
+            }
+
+            if (end == next) {
+                if (!running && claimed.get() == next) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            write(batch);
+            next = end;
+            consumed = next;
+        }
+    }
+
+    private void write(ByteBuffer batch) {
+        if (file == null) {
+            return;
+        }
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                file.write(batch);
+            }
+        } catch (IOException e) {
+            System.err.println("Audit log write failed: " + e.getMessage());
+        }
+        batch.clear();
+    }
+
+    private void notifySubscribers(AuditEvent event) {
+        for (AuditSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onEvent(event);
+            } catch (RuntimeException e) {
+                // one failing subscriber must not stop the log
+                System.err.println("Audit subscriber failed: " + e);
+            }
+        }
+    }
+
+    private static void format(AuditEvent event, StringBuilder line) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(event.getTimestampMillis())).append(' ').append(event.getType());
+        if (event.getUsername() != null) {
+            line.append(" user=").append(event.getUsername());
+        }
+        if (event.getPolicyType() != null) {
+            line.append(" policy=").append(event.getPolicyId())
+                    .append(" type=").append(event.getPolicyType())
+                    .append(" premium=").append(event.getPremium());
+        }
+        if (line.length() > MAX_LINE_LENGTH - 1) {
+            line.setLength(MAX_LINE_LENGTH - 1);
+        }
+        line.append('\n');
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * The {@code AuditSubscriber} interface receives the events recorded by an {@link AuditLog}.
+ * Subscribers are called on the audit log's writer thread, in the order the events were recorded,
+ * so they never slow down the code that recorded the event.
+ */
+@FunctionalInterface
+public interface AuditSubscriber {
+
+    /**
+     * Called once for every recorded event. The event object is reused afterwards and must not be retained.
+     *
+     * @param event The recorded event.
+     */
+    void onEvent(AuditEvent event);
+}
@@ -1,39 +1,223 @@
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages user authentication and registration.
  * This class provides methods to authenticate existing users
- * and register new users using a simple in-memory user storage.
+ * and register new users using a concurrent in-memory {@link UserRegistry}.
+ * <p>
+ * Passwords are stored as salted PBKDF2 hashes (see {@link PasswordHasher}), so every login and registration costs
+ * milliseconds of CPU. That work runs on a dedicated pool of half the available cores, with a bounded number of
+ * requests waiting for it, so a login storm queues up behind the pool instead of starving quoting threads.
+ * {@link #login(String, String)} also issues a short-lived session token, which later requests present to
+ * {@link #authenticateToken(String)} instead of the password, skipping the hash.
  */
 public class AuthManager {
-    private static Map<String, User> users = new HashMap<>();
+    private static final int VERIFIER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int MAX_PENDING_VERIFICATIONS = 1024;
+
+    private static final LatencyHistogram authenticateLatency = Metrics.histogram("auth.authenticate");
+    private static final LatencyHistogram registerLatency = Metrics.histogram("auth.register");
+    private static final LongAdder loginFailures = Metrics.counter("auth.authenticate.failure");
+    private static final LongAdder duplicateRegistrations = Metrics.counter("auth.register.duplicate");
+    private static final LongAdder tokenFailures = Metrics.counter("auth.token.failure");
+
+    private static final Semaphore pendingVerifications = new Semaphore(MAX_PENDING_VERIFICATIONS);
+    private static final AtomicInteger verifierCount = new AtomicInteger();
+    private static final ExecutorService verifiers = Executors.newFixedThreadPool(VERIFIER_THREADS, task -> {
+        Thread thread = new Thread(task, "password-verifier-" + verifierCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final SessionTokens sessions = new SessionTokens();
+
+    private static volatile UserRegistry users = new UserRegistry();
 
     /**
      * Authenticates a user based on the provided username and password.
+     * The password is hashed on the verification pool; an unknown username takes as long as a wrong password.
      *
      * @param username The username of the user attempting to log in.
      * @param password The password provided for authentication.
      * @return The authenticated {@link User} object if credentials are valid, otherwise {@code null}.
      */
     public static User authenticate(String username, String password) {
+        long start = System.nanoTime();
         User user = users.get(username);
-        return (user != null && user.verifyLogin(username, password)) ? user : null;
+        boolean verified = onVerifier(() -> {
+            if (user == null) {
+                PasswordHasher.verifyNothing(password);
+                return false;
+            }
+            return user.verifyLogin(username, password);
+        });
+        authenticateLatency.recordSince(start);
+        if (!verified) {
+            loginFailures.increment();
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Authenticates a user by password and starts a session.
+     *
+     * @param username The username of the user attempting to log in.
+     * @param password The password provided for authentication.
+     * @return A session token for {@link #authenticateToken(String)}, or {@code null} if the credentials are invalid.
+     */
+    public static String login(String username, String password) {
+        User user = authenticate(username, password);
+        return user != null ? sessions.issue(user) : null;
+    }
+
+    /**
+     * Authenticates a request by the session token returned from {@link #login(String, String)}.
+     * No password is hashed.
+     *
+     * @param token The session token.
+     * @return The user the session belongs to, or {@code null} if the token is unknown, expired or logged out.
+     */
+    public static User authenticateToken(String token) {
+        User user = sessions.lookup(token);
+        if (user == null) {
+            tokenFailures.increment();
+        }
+        return user;
+    }
+
+    /**
+     * Ends a session started with {@link #login(String, String)}.
+     *
+     * @param token The session token.
+     * @return {@code true} if the session was live.
+     */
+    public static boolean logout(String token) {
+        return sessions.revoke(token);
     }
 
     /**
      * Registers a new user with the given username and password.
+     * Registration is atomic: if two sessions register the same username at once, only one succeeds.
      *
      * @param username The desired username for the new user.
      * @param password The password associated with the new user account.
      * @return {@code true} if registration is successful, {@code false} if the username already exists.
      */
     public static boolean registerUser(String username, String password) {
-        if (users.containsKey(username)) {
-            return false; // Username already exists
+        long start = System.nanoTime();
+        try {
+            if (users.contains(username)) {
+                duplicateRegistrations.increment();
+                return false; // Username already exists
+            }
+            User user = onVerifier(() -> new User(username, password));
+            if (!users.register(user)) {
+                duplicateRegistrations.increment();
+                return false;
+            }
+            PolicyEvents.userRegistered(user);
+            return true;
+        } finally {
+            registerLatency.recordSince(start);
         }
-        users.put(username, new User(username, password));
+    }
+
+    /**
+     * Registers a recovered user whose password is already hashed.
+     *
+     * @param user The user to register.
+     * @return {@code true} if the user was registered, {@code false} if the username already exists.
+     */
+    static boolean restoreUser(User user) {
+        if (!users.register(user)) {
+            return false;
+        }
+        PolicyEvents.userRegistered(user);
         return true;
     }
-}
 
+    /**
+     * Removes a user and all of the user's policies, e.g. after the account has been moved to another worker.
+     * The user's other policies are not re-priced on the way out.
+     *
+     * @param username The username of the user to remove.
+     * @return The removed user, or {@code null} if no user has that username.
+     */
+    static User removeUser(String username) {
+        User user = users.get(username);
+        if (user == null) {
+            return null;
+        }
+        RepricingEngine.withoutRepricing(() -> {
+            synchronized (user) {
+                for (int i = user.getPolicies().size() - 1; i >= 0; i--) {
+                    user.removePolicy(i);
+                }
+            }
+        });
+        if (!users.remove(user)) {
+            return null;
+        }
+        PolicyEvents.userRemoved(user);
+        return user;
+    }
+
+    /**
+     * Checks whether a username is already registered.
+     *
+     * @param username The username to check.
+     * @return {@code true} if the username is taken, {@code false} otherwise.
+     */
+    public static boolean isRegistered(String username) {
+        return users.contains(username);
+    }
+
+    /**
+     * Returns the registry holding all registered users.
+     *
+     * @return The active user registry.
+     */
+    public static UserRegistry getRegistry() {
+        return users;
+    }
+
+    /**
+     * Replaces the active user registry, e.g. with one bulk-loaded at startup.
+     *
+     * @param registry The registry to use from now on.
+     */
+    public static void useRegistry(UserRegistry registry) {
+        users = registry;
+    }
+
+    /**
+     * Runs password hashing on the verification pool and waits for the result. Callers block while
+     * {@link #MAX_PENDING_VERIFICATIONS} requests are already waiting.
+     */
+    private static <T> T onVerifier(Callable<T> hashing) {
+        try {
+            pendingVerifications.acquire();
+            try {
+                Future<T> result = verifiers.submit(hashing);
+                return result.get();
+            } finally {
+                pendingVerifications.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password verification", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -1,8 +1,12 @@
+import java.time.LocalDate;
+
 /**
  * Represents an auto insurance policy.
  * Extends the {@link Policy} class and calculates the premium based on driver age, accident history, and vehicle age.
  */
 public class AutoPolicy extends Policy {
+    private static final LatencyHistogram premiumLatency = Metrics.histogram("premium.calculate.auto");
+
     private final int driverAge;
     private final int accidentCount;
     private final Vehicle vehicle;
@@ -30,24 +34,50 @@ public class AutoPolicy extends Policy {
      */
     @Override
     public void calculatePremium(User user) {
-        float premium = basePremium;
+        rate(user, vehicle.getAge());
+    }
 
-        // Adjust premium based on driver age
-        premium *= driverAge < 25 ? 2.0 : 1.0;
+    /**
+     * Calculates the total premium with the vehicle's age as of the given date.
+     *
+     * @param user The user who owns the policy.
+     * @param asOf The date the policy is rated on.
+     */
+    @Override
+    public void calculatePremium(User user, LocalDate asOf) {
+        rate(user, vehicle.getAge(asOf));
+    }
 
-        // Adjust premium based on accident count
-        premium *= (accidentCount > 2) ? 2.5 : (accidentCount == 1) ? 1.25 : 1.0;
+    @Override
+    AccountFact providedFact() {
+        return AccountFact.ACTIVE_AUTO_POLICY;
+    }
 
-        // Adjust premium based on vehicle age
-        premium *= vehicle.getAge() > 10 ? 2.0 : vehicle.getAge() > 5 ? 1.5 : 1.0;
+    @Override
+    boolean dependsOn(AccountFact fact) {
+        return fact == AccountFact.ACTIVE_HOME_POLICY;
+    }
 
-        // Apply discount if the user has an active home policy
-        if (user != null && user.hasActiveHomePolicy()) {
-            premium *= 0.9;
-        }
+    private void rate(User user, int vehicleAge) {
+        long start = System.nanoTime();
+        totalPremium = computePremium(driverAge, accidentCount, vehicleAge,
+                user != null && user.hasActiveHomePolicy());
+        premiumLatency.recordSince(start);
+    }
 
-        // Apply a 15% tax
-        totalPremium = premium * 1.15f;
+    /**
+     * Computes an auto premium directly from rating inputs, without constructing a policy.
+     * This is the same rating logic used by {@link #calculatePremium(User)}: the installed {@link RatingRules}, or
+     * the active {@link RatingTables} if no rules are installed.
+     *
+     * @param driverAge     The age of the driver.
+     * @param accidentCount The number of accidents in the last 5 years.
+     * @param vehicleAge    The age of the vehicle in years.
+     * @param homeDiscount  Whether the owner holds an active home policy.
+     * @return The total premium including tax.
+     */
+    public static float computePremium(int driverAge, int accidentCount, int vehicleAge, boolean homeDiscount) {
+        return RatingRules.priceAuto(driverAge, accidentCount, vehicleAge, homeDiscount);
     }
 
     /**
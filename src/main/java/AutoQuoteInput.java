@@ -0,0 +1,49 @@
+/**
+ * The {@code AutoQuoteInput} class holds the rating inputs for a single auto insurance quote.
+ * It is a lightweight value used by {@link QuoteEngine} to price quotes in bulk without creating policies.
+ */
+public class AutoQuoteInput {
+    private final int driverAge;
+    private final int accidentCount;
+    private final int vehicleYear;
+
+    /**
+     * Constructs a new {@code AutoQuoteInput} with the specified rating inputs.
+     *
+     * @param driverAge     The age of the driver.
+     * @param accidentCount The number of accidents in the last 5 years.
+     * @param vehicleYear   The model year of the vehicle.
+     */
+    public AutoQuoteInput(int driverAge, int accidentCount, int vehicleYear) {
+        this.driverAge = driverAge;
+        this.accidentCount = accidentCount;
+        this.vehicleYear = vehicleYear;
+    }
+
+    /**
+     * Returns the age of the driver.
+     *
+     * @return The driver age.
+     */
+    public int getDriverAge() {
+        return driverAge;
+    }
+
+    /**
+     * Returns the number of accidents in the last 5 years.
+     *
+     * @return The accident count.
+     */
+    public int getAccidentCount() {
+        return accidentCount;
+    }
+
+    /**
+     * Returns the model year of the vehicle.
+     *
+     * @return The vehicle year.
+     */
+    public int getVehicleYear() {
+        return vehicleYear;
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code CommandClient} class drives an {@link InsuranceServer} serving the {@link CommandSession} protocol,
+ * sending many commands per request.
+ */
+public class CommandClient implements Closeable {
+    /**
+     * The number of commands {@link #main(String[])} sends per request.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connects to a command server.
+     *
+     * @param host The server host.
+     * @param port The server port.
+     * @throws IOException If the connection cannot be opened.
+     */
+    public CommandClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Sends commands as one request and waits for their responses.
+     *
+     * @param commands The command lines, without line breaks.
+     * @return One response line per command, in order.
+     * @throws IOException If the connection fails or the request is larger than
+     *                     {@link CommandSession#MAX_REQUEST_SIZE}.
+     */
+    public List<String> execute(List<String> commands) throws IOException {
+        byte[] request = (String.join("\n", commands) + "\n").getBytes(StandardCharsets.UTF_8);
+        if (request.length > CommandSession.MAX_REQUEST_SIZE) {
+            throw new IOException("Request of " + request.length + " bytes exceeds " + CommandSession.MAX_REQUEST_SIZE);
+        }
+        send(request, 0, request.length);
+        byte[] response = receive();
+        List<String> lines = new ArrayList<>(commands.size());
+        int start = 0;
+        for (int i = 0; i < response.length; i++) {
+            if (response[i] == '\n') {
+                lines.add(new String(response, start, i - start, StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Sends one request frame without waiting for its response, so several requests can be in flight.
+     *
+     * @param request The buffer holding the command lines.
+     * @param offset  The position of the first byte to send.
+     * @param length  The number of bytes to send.
+     * @throws IOException If the connection fails.
+     */
+    void send(byte[] request, int offset, int length) throws IOException {
+        out.writeInt(length);
+        out.write(request, offset, length);
+        out.flush();
+    }
+
+    /**
+     * Waits for the response frame to the oldest request whose response has not been received yet.
+     *
+     * @return The response lines, each ending with a line break.
+     * @throws IOException If the connection fails.
+     */
+    byte[] receive() throws IOException {
+        byte[] response = new byte[in.readInt()];
+        in.readFully(response);
+        return response;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Runs the commands read from standard input, one per line, in requests of {@link #DEFAULT_BATCH_SIZE}
+     * commands, and prints their responses. The throughput is reported on standard error.
+     *
+     * @param args {@code [host] [port]}. Defaults: {@code localhost} and {@link InsuranceServer#DEFAULT_PORT}.
+     * @throws IOException If the connection fails.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : InsuranceServer.DEFAULT_PORT;
+        BufferedReader script = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        long executed = 0;
+        try (CommandClient client = new CommandClient(host, port)) {
+            List<String> batch = new ArrayList<>(DEFAULT_BATCH_SIZE);
+            String command;
+            while ((command = script.readLine()) != null) {
+                if (!command.isBlank()) {
+                    batch.add(command);
+                }
+                if (batch.size() == DEFAULT_BATCH_SIZE) {
+                    executed += send(client, batch);
+                }
+            }
+            executed += send(client, batch);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.err.printf("%,d commands in %.2f s (%,.0f commands/sec)%n",
+                executed, elapsed / 1e9, executed * 1e9 / Math.max(elapsed, 1));
+    }
+
+    private static int send(CommandClient client, List<String> batch) throws IOException {
+        int count = batch.size();
+        if (count > 0) {
+            client.execute(batch).forEach(System.out::println);
+            batch.clear();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,731 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The {@code CommandSession} class serves the non-interactive command protocol, for scripted clients that drive
+ * many operations without the menus of {@link ConsoleSession}.
+ * <p>
+ * A request is a frame: a 4-byte big-endian length followed by that many bytes of UTF-8 text holding one command
+ * per line. Fields are separated by spaces, so text fields cannot contain spaces; blank lines are ignored. Every
+ * command gets exactly one response line, in order, and all lines of a request are returned together in one
+ * response frame of the same format. Responses start with {@code OK} or with {@code ERR} and a reason; an error
+ * only fails its own command. Clients may send further requests without waiting for responses.
+ * <pre>
+ * REGISTER &lt;username&gt; &lt;password&gt;   OK
+ * LOGIN &lt;username&gt; &lt;password&gt;      OK &lt;token&gt;
+ * LOGIN &lt;token&gt;                      OK &lt;token&gt;  (resumes a session, e.g. on a new connection)
+ * QUOTE_HOME &lt;homeValue&gt; &lt;homeAge&gt; &lt;heatingType&gt; &lt;location&gt; &lt;liabilityLimit&gt;
+ *                                    OK &lt;premium&gt;
+ * QUOTE_AUTO &lt;driverAge&gt; &lt;accidentCount&gt; &lt;vehicleYear&gt;
+ *                                    OK &lt;premium&gt;
+ * ADD_POLICY HOME &lt;homeAge&gt; &lt;dwellingType&gt; &lt;heatingType&gt; &lt;location&gt;
+ *                 &lt;homeValue&gt; &lt;liabilityLimit&gt;
+ * ADD_POLICY AUTO &lt;driverAge&gt; &lt;accidentCount&gt; &lt;make&gt; &lt;model&gt; &lt;vehicleYear&gt;
+ *                                    OK &lt;policyId&gt; &lt;premium&gt;
+ * LIST [HOME|AUTO] [ACTIVE|CANCELED] [AFTER &lt;cursor&gt;] [LIMIT &lt;count&gt;]
+ *                                    OK &lt;nextCursor&gt; &lt;count&gt; followed by one field per policy:
+ *                                    &lt;policyId&gt;,&lt;type&gt;,&lt;premium&gt;,&lt;active|canceled&gt;,&lt;endDate&gt;
+ * CANCEL &lt;policyId&gt;                  OK
+ * PORTFOLIO                          OK &lt;users&gt; &lt;activeHome&gt; &lt;activeAuto&gt;
+ *                                       &lt;homePremium&gt; &lt;autoPremium&gt;
+ * </pre>
+ * {@code LIST} returns one page of a {@link PolicyListing}, 100 policies unless limited otherwise (at most 1000).
+ * The next page is requested with {@code AFTER} and the returned cursor, which is 0 after the last page.
+ * Quotes need no login; the other commands act for the user of the session's last successful {@code LOGIN}, whose
+ * {@link SessionTokens session token} is checked on every command. Commands are parsed straight from the request
+ * buffer: numbers are decoded without creating strings, and each session reuses its buffers, so a command
+ * allocates little beyond the objects it creates. A session is not thread-safe.
+ * <p>
+ * {@code PORTFOLIO} totals all users of the process, see {@link PortfolioSummary}. A {@link ShardRouter} moves
+ * users between worker processes with three further admin commands, and operators count the policies of all users
+ * that match a query of the {@link PolicyIndex#shared() shared policy index} with a fourth. Admin commands are
+ * refused unless the session has first sent the admin secret, which is set with the {@code taylor.admin.secret}
+ * system property or {@link #setAdminSecret(String)}; without a secret they are disabled. The secret is compared
+ * in constant time.
+ * <pre>
+ * ADMIN &lt;secret&gt;                     OK  (allows the admin commands for the rest of the session)
+ * EXPORT &lt;limit&gt; &lt;self&gt; &lt;node&gt;...   OK &lt;count&gt; followed by &lt;user&gt; &lt;account&gt; for
+ *                                    at most {@code limit} users that the {@link ShardRing} of the nodes
+ *                                    assigns to another node than {@code self}
+ * ADOPT &lt;account&gt;                    OK &lt;user&gt;  (adds an exported user and the user's policies)
+ * DROP &lt;user&gt;                        OK  (removes a user and the user's policies)
+ * FIND [HOME|AUTO] [ACTIVE|CANCELED] [HEATING &lt;type&gt;] [LOCATION &lt;location&gt;] [DWELLING &lt;type&gt;]
+ *      [MAKE &lt;make&gt;] [HOME_VALUE &lt;min&gt; &lt;max&gt;] [HOME_AGE &lt;min&gt; &lt;max&gt;]
+ *      [DRIVER_AGE &lt;min&gt; &lt;max&gt;] [VEHICLE_YEAR &lt;min&gt; &lt;max&gt;]
+ *                                    OK &lt;count&gt;  (see {@link PolicyQuery})
+ * </pre>
+ * An exported account is the user's credential and policies as journal records, in unpadded URL-safe Base64. The
+ * {@code user} of these commands is the username's UTF-8 bytes in the same encoding, so that usernames with spaces
+ * or non-ASCII letters survive the ASCII responses.
+ */
+public class CommandSession {
+    /**
+     * The largest request frame accepted, in bytes.
+     */
+    public static final int MAX_REQUEST_SIZE = 16 << 20;
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_LIST_LIMIT = 100;
+    private static final int MAX_LIST_LIMIT = 1000;
+    private static final LatencyHistogram requestLatency = Metrics.histogram("command.request");
+
+    private static volatile String adminSecret = System.getProperty("taylor.admin.secret");
+
+    private static final byte[] REGISTER = ascii("REGISTER");
+    private static final byte[] LOGIN = ascii("LOGIN");
+    private static final byte[] QUOTE_HOME = ascii("QUOTE_HOME");
+    private static final byte[] QUOTE_AUTO = ascii("QUOTE_AUTO");
+    private static final byte[] ADD_POLICY = ascii("ADD_POLICY");
+    private static final byte[] LIST = ascii("LIST");
+    private static final byte[] CANCEL = ascii("CANCEL");
+    private static final byte[] PORTFOLIO = ascii("PORTFOLIO");
+    private static final byte[] ADMIN = ascii("ADMIN");
+    private static final byte[] EXPORT = ascii("EXPORT");
+    private static final byte[] ADOPT = ascii("ADOPT");
+    private static final byte[] DROP = ascii("DROP");
+    private static final byte[] FIND = ascii("FIND");
+    private static final byte[] HEATING = ascii("HEATING");
+    private static final byte[] LOCATION = ascii("LOCATION");
+    private static final byte[] DWELLING = ascii("DWELLING");
+    private static final byte[] MAKE = ascii("MAKE");
+    private static final byte[] HOME_VALUE = ascii("HOME_VALUE");
+    private static final byte[] HOME_AGE = ascii("HOME_AGE");
+    private static final byte[] DRIVER_AGE = ascii("DRIVER_AGE");
+    private static final byte[] VEHICLE_YEAR = ascii("VEHICLE_YEAR");
+    private static final byte[] HOME = ascii("HOME");
+    private static final byte[] AUTO = ascii("AUTO");
+    private static final byte[] ACTIVE = ascii("ACTIVE");
+    private static final byte[] CANCELED = ascii("CANCELED");
+    private static final byte[] AFTER = ascii("AFTER");
+    private static final byte[] LIMIT = ascii("LIMIT");
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private static final String[] HEATING_TYPES = {"oil", "wood", "other"};
+    private static final String[] LOCATIONS = {"urban", "rural"};
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final List<Policy> page = new ArrayList<>();
+    private ByteBuffer response = ByteBuffer.allocate(4096);
+    private byte[] text = new byte[64];
+    private String token;
+    private boolean admin;
+
+    private ByteBuffer request;
+    private int lineEnd;
+    private int tokenStart;
+    private int tokenEnd;
+
+    /**
+     * Sets the secret that allows a session the admin commands, replacing the {@code taylor.admin.secret} system
+     * property.
+     *
+     * @param secret The secret, without spaces, or {@code null} to disable the admin commands.
+     */
+    public static void setAdminSecret(String secret) {
+        if (secret != null && (secret.isEmpty() || secret.indexOf(' ') >= 0)) {
+            throw new IllegalArgumentException("Admin secret must be non-empty and without spaces");
+        }
+        adminSecret = secret;
+    }
+
+    /**
+     * Executes every command of one request.
+     *
+     * @param request The command lines, from its position to its limit. The position is moved to the limit.
+     * @return The response lines, from position to limit. The buffer is reused by the next call.
+     */
+    public ByteBuffer execute(ByteBuffer request) {
+        long start = System.nanoTime();
+        this.request = request;
+        response.clear();
+        while (request.hasRemaining()) {
+            int lineStart = request.position();
+            int next = lineStart;
+            while (next < request.limit() && request.get(next) != '\n') {
+                next++;
+            }
+            lineEnd = next > lineStart && request.get(next - 1) == '\r' ? next - 1 : next;
+            tokenEnd = lineStart;
+            request.position(Math.min(next + 1, request.limit()));
+            if (nextToken()) {
+                executeLine();
+            }
+        }
+        this.request = null;
+        requestLatency.recordSince(start);
+        return response.flip();
+    }
+
+    /**
+     * Serves request frames from a stream until it ends, writing a response frame for each. Responses to
+     * pipelined requests are sent together once no further request is waiting.
+     *
+     * @param in  The stream requests are read from.
+     * @param out The stream responses are written to.
+     * @throws IOException If the streams fail or a request frame is malformed.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        serveFrames(in, out, this::execute);
+    }
+
+    /**
+     * Serves request frames of the command protocol from a stream until it ends, as {@link #serve} does, passing
+     * each request to a handler.
+     */
+    static void serveFrames(InputStream in, OutputStream out, RequestHandler handler) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in, STREAM_BUFFER_SIZE));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE));
+        byte[] frame = new byte[STREAM_BUFFER_SIZE];
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < 0 || length > MAX_REQUEST_SIZE) {
+                    throw new IOException("Request frame of " + length + " bytes exceeds " + MAX_REQUEST_SIZE);
+                }
+                if (frame.length < length) {
+                    frame = new byte[Math.min(MAX_REQUEST_SIZE, Math.max(length, frame.length * 2))];
+                }
+                input.readFully(frame, 0, length);
+                ByteBuffer reply = handler.execute(ByteBuffer.wrap(frame, 0, length));
+                output.writeInt(reply.remaining());
+                output.write(reply.array(), reply.arrayOffset() + reply.position(), reply.remaining());
+                if (input.available() == 0) {
+                    output.flush();
+                }
+            }
+        } finally {
+            output.flush();
+        }
+    }
+
+    private void executeLine() {
+        line.setLength(0);
+        try {
+            if (tokenIs(LOGIN)) {
+                login();
+            } else if (tokenIs(REGISTER)) {
+                register();
+            } else if (tokenIs(QUOTE_HOME)) {
+                quoteHome();
+            } else if (tokenIs(QUOTE_AUTO)) {
+                quoteAuto();
+            } else if (tokenIs(ADD_POLICY)) {
+                addPolicy();
+            } else if (tokenIs(LIST)) {
+                list();
+            } else if (tokenIs(CANCEL)) {
+                cancel();
+            } else if (tokenIs(PORTFOLIO)) {
+                expectEnd();
+                line.append("OK ");
+                PortfolioSummary.of(AuthManager.getRegistry().users()).appendTo(line);
+            } else if (tokenIs(ADMIN)) {
+                admin();
+            } else if (tokenIs(EXPORT)) {
+                requireAdmin();
+                export();
+            } else if (tokenIs(ADOPT)) {
+                requireAdmin();
+                adopt();
+            } else if (tokenIs(DROP)) {
+                requireAdmin();
+                drop();
+            } else if (tokenIs(FIND)) {
+                requireAdmin();
+                find();
+            } else {
+                throw new IllegalArgumentException("unknown command");
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            line.setLength(0);
+            line.append("ERR ").append(e.getMessage());
+        }
+        writeLine();
+    }
+
+    private void login() {
+        String first = nextString();
+        String password = nextToken() ? string() : null;
+        expectEnd();
+        String issued = password == null
+                ? (AuthManager.authenticateToken(first) != null ? first : null)
+                : AuthManager.login(first, password);
+        if (issued == null) {
+            throw new IllegalArgumentException(password == null ? "invalid session" : "invalid credentials");
+        }
+        token = issued;
+        line.append("OK ").append(token);
+    }
+
+    private void register() {
+        String username = nextString();
+        String password = nextString();
+        expectEnd();
+        if (!AuthManager.registerUser(username, password)) {
+            throw new IllegalArgumentException("username taken");
+        }
+        line.append("OK");
+    }
+
+    private void quoteHome() {
+        float homeValue = nextFloat();
+        int homeAge = nextInt();
+        String heatingType = nextString(HEATING_TYPES);
+        String location = nextString(LOCATIONS);
+        float liabilityLimit = nextFloat();
+        expectEnd();
+        float premium = QuoteCache.shared().priceHome(
+                new HomeQuoteInput(homeValue, homeAge, heatingType, location, liabilityLimit));
+        line.append("OK ").append(premium);
+    }
+
+    private void quoteAuto() {
+        int driverAge = nextInt();
+        int accidentCount = nextInt();
+        int vehicleYear = nextInt();
+        expectEnd();
+        float premium = QuoteCache.shared().priceAuto(new AutoQuoteInput(driverAge, accidentCount, vehicleYear));
+        line.append("OK ").append(premium);
+    }
+
+    private void addPolicy() {
+        if (!nextToken()) {
+            throw new IllegalArgumentException("missing policy type");
+        }
+        Policy policy;
+        if (tokenIs(HOME)) {
+            int homeAge = nextInt();
+            String dwellingType = nextString();
+            String heatingType = nextString(HEATING_TYPES);
+            String location = nextString(LOCATIONS);
+            float homeValue = nextFloat();
+            float liabilityLimit = nextFloat();
+            expectEnd();
+            policy = PolicyManager.addHomePolicy(user(), homeAge, dwellingType, heatingType, location,
+                    homeValue, liabilityLimit);
+        } else if (tokenIs(AUTO)) {
+            int driverAge = nextInt();
+            int accidentCount = nextInt();
+            String make = nextString();
+            String model = nextString();
+            int vehicleYear = nextInt();
+            expectEnd();
+            policy = PolicyManager.addAutoPolicy(user(), driverAge, accidentCount,
+                    new Vehicle(make, model, vehicleYear));
+        } else {
+            throw new IllegalArgumentException("policy type must be HOME or AUTO");
+        }
+        line.append("OK ").append(policy.getPolicyId()).append(' ').append(policy.getTotalPremium());
+    }
+
+    private void list() {
+        PolicyListing listing = user().listPolicies().pageSize(DEFAULT_LIST_LIMIT);
+        long cursor = PolicyListing.NO_CURSOR;
+        while (nextToken()) {
+            if (tokenIs(HOME)) {
+                listing.home();
+            } else if (tokenIs(AUTO)) {
+                listing.auto();
+            } else if (tokenIs(ACTIVE)) {
+                listing.active();
+            } else if (tokenIs(CANCELED)) {
+                listing.canceled();
+            } else if (tokenIs(AFTER)) {
+                cursor = nextLong();
+            } else if (tokenIs(LIMIT)) {
+                int limit = nextInt();
+                if (limit < 1 || limit > MAX_LIST_LIMIT) {
+                    throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIST_LIMIT);
+                }
+                listing.pageSize(limit);
+            } else {
+                throw new IllegalArgumentException("unknown option");
+            }
+        }
+        long next = listing.nextPage(cursor, page);
+        line.append("OK ").append(next).append(' ').append(page.size());
+        for (Policy policy : page) {
+            line.append(' ').append(policy.getPolicyId())
+                    .append(',').append(policy.getPolicyType())
+                    .append(',').append(policy.getTotalPremium())
+                    .append(',').append(policy.isActive() ? "active" : "canceled")
+                    .append(',');
+            PolicyListing.appendDate(line, policy.getEndDate());
+        }
+        page.clear();
+    }
+
+    private void cancel() {
+        long policyId = nextLong();
+        expectEnd();
+        if (!PolicyManager.cancelPolicyById(user(), policyId)) {
+            throw new IllegalArgumentException("no such policy");
+        }
+        line.append("OK");
+    }
+
+    private void admin() {
+        String secret = nextString();
+        expectEnd();
+        String expected = adminSecret;
+        if (expected == null || expected.isEmpty()) {
+            throw new IllegalStateException("admin commands disabled");
+        }
+        if (!MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                expected.getBytes(StandardCharsets.UTF_8))) {
+            admin = false;
+            throw new IllegalArgumentException("invalid admin secret");
+        }
+        admin = true;
+        line.append("OK");
+    }
+
+    private void requireAdmin() {
+        if (!admin || adminSecret == null) {
+            throw new IllegalStateException("admin secret required");
+        }
+    }
+
+    private void export() {
+        int limit = nextInt();
+        String self = nextString();
+        List<String> nodes = new ArrayList<>();
+        while (nextToken()) {
+            nodes.add(string());
+        }
+        if (limit < 1 || nodes.isEmpty()) {
+            throw new IllegalArgumentException("usage: EXPORT <limit> <self> <node>...");
+        }
+        ShardRing ring = new ShardRing(nodes);
+        List<User> moving = new ArrayList<>();
+        for (User user : AuthManager.getRegistry().users()) {
+            if (!ring.nodeFor(user.getUsername()).equals(self)) {
+                moving.add(user);
+                if (moving.size() == limit) {
+                    break;
+                }
+            }
+        }
+        line.append("OK ").append(moving.size());
+        for (User user : moving) {
+            ByteBuffer account = BASE64.encode(PolicyJournal.exportUser(user));
+            line.append(' ').append(encodeUsername(user.getUsername())).append(' ');
+            while (account.hasRemaining()) {
+                line.append((char) account.get());
+            }
+        }
+    }
+
+    private void adopt() {
+        requireToken();
+        ByteBuffer encoded = request.slice(tokenStart, tokenEnd - tokenStart);
+        expectEnd();
+        User user;
+        try {
+            user = PolicyJournal.importUser(Base64.getUrlDecoder().decode(encoded));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad account");
+        }
+        if (user == null) {
+            throw new IllegalStateException("account removed while adopting");
+        }
+        line.append("OK ").append(encodeUsername(user.getUsername()));
+    }
+
+    private void drop() {
+        String username = decodeUsername(nextString());
+        expectEnd();
+        if (AuthManager.removeUser(username) == null) {
+            throw new IllegalArgumentException("no such user");
+        }
+        line.append("OK");
+    }
+
+    private void find() {
+        PolicyQuery query = PolicyIndex.shared().query();
+        while (nextToken()) {
+            if (tokenIs(HOME)) {
+                query.home();
+            } else if (tokenIs(AUTO)) {
+                query.auto();
+            } else if (tokenIs(ACTIVE)) {
+                query.active();
+            } else if (tokenIs(CANCELED)) {
+                query.canceled();
+            } else if (tokenIs(HEATING)) {
+                query.heatingType(nextString());
+            } else if (tokenIs(LOCATION)) {
+                query.location(nextString());
+            } else if (tokenIs(DWELLING)) {
+                query.dwellingType(nextString());
+            } else if (tokenIs(MAKE)) {
+                query.make(nextString());
+            } else if (tokenIs(HOME_VALUE)) {
+                query.homeValueBetween(nextFloat(), nextFloat());
+            } else if (tokenIs(HOME_AGE)) {
+                query.homeAgeBetween(nextInt(), nextInt());
+            } else if (tokenIs(DRIVER_AGE)) {
+                query.driverAgeBetween(nextInt(), nextInt());
+            } else if (tokenIs(VEHICLE_YEAR)) {
+                query.vehicleYearBetween(nextInt(), nextInt());
+            } else {
+                throw new IllegalArgumentException("unknown option");
+            }
+        }
+        line.append("OK ").append(query.count());
+    }
+
+    /**
+     * Encodes a username for the admin commands, see {@link #decodeUsername(String)}.
+     *
+     * @param username The username.
+     * @return The username's UTF-8 bytes in unpadded URL-safe Base64.
+     */
+    static String encodeUsername(String username) {
+        return BASE64.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a username of the admin commands, see {@link #encodeUsername(String)}.
+     *
+     * @param encoded The encoded username.
+     * @return The username.
+     * @throws IllegalArgumentException If the text is not valid Base64.
+     */
+    static String decodeUsername(String encoded) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad username");
+        }
+    }
+
+    /**
+     * Returns the user of the session, checking the session token and that the user has not been moved to
+     * another process since logging in.
+     */
+    private User user() {
+        User user = token != null ? AuthManager.authenticateToken(token) : null;
+        if (user != null && AuthManager.getRegistry().get(user.getUsername()) != user) {
+            user = null;
+        }
+        if (user == null) {
+            token = null;
+            throw new IllegalStateException("not logged in");
+        }
+        return user;
+    }
+
+    /**
+     * Appends the response line under construction to the response buffer, growing the buffer when needed.
+     * Responses are ASCII; anything else is replaced by {@code ?}.
+     */
+    private void writeLine() {
+        int length = line.length() + 1;
+        if (response.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(response.capacity() * 2, response.position() + length));
+            response.flip();
+            response = larger.put(response);
+        }
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            response.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        response.put((byte) '\n');
+    }
+
+    /**
+     * Moves to the next space-separated field of the current line.
+     *
+     * @return {@code false} if the line has no further field.
+     */
+    private boolean nextToken() {
+        int i = tokenEnd;
+        while (i < lineEnd && request.get(i) == ' ') {
+            i++;
+        }
+        tokenStart = i;
+        while (i < lineEnd && request.get(i) != ' ') {
+            i++;
+        }
+        tokenEnd = i;
+        return tokenStart < tokenEnd;
+    }
+
+    private void requireToken() {
+        if (!nextToken()) {
+            throw new IllegalArgumentException("missing argument");
+        }
+    }
+
+    private void expectEnd() {
+        if (nextToken()) {
+            throw new IllegalArgumentException("too many arguments");
+        }
+    }
+
+    private boolean tokenIs(byte[] name) {
+        if (tokenEnd - tokenStart != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (request.get(tokenStart + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextInt() {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw new IllegalArgumentException("number out of range");
+        }
+        return (int) value;
+    }
+
+    private long nextLong() {
+        requireToken();
+        int i = tokenStart;
+        boolean negative = request.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == tokenEnd || tokenEnd - i > 18) {
+            throw new IllegalArgumentException("bad number");
+        }
+        long value = 0;
+        for (; i < tokenEnd; i++) {
+            int digit = request.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("bad number");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number the way {@link Float#parseFloat(String)} does. Plain decimals with up to 15 digits
+     * are divided in {@code double} arithmetic, which is exact up to the final rounding; the rare results that
+     * could round differently to {@code float} through {@code double}, and any other notation, are parsed from a
+     * string instead.
+     */
+    private float nextFloat() {
+        requireToken();
+        int i = tokenStart;
+        boolean negative = request.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean plain = i < tokenEnd;
+        for (; i < tokenEnd && plain; i++) {
+            byte b = request.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            } else {
+                plain = false;
+            }
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (plain && digits > 0 && digits <= 15) {
+            double value = scale > 0 ? mantissa / Math.pow(10, scale) : mantissa;
+            // a double exactly halfway between two floats may have been rounded there from either side
+            boolean normal = value == 0 || value >= Float.MIN_NORMAL && value <= Float.MAX_VALUE;
+            if (normal && (Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) != 0x10000000L) {
+                return (float) (negative ? -value : value);
+            }
+        }
+        try {
+            return Float.parseFloat(string());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number");
+        }
+    }
+
+    private String nextString() {
+        requireToken();
+        return string();
+    }
+
+    /**
+     * Reads a text field, returning the matching constant instead of a new string when the field equals one of
+     * the given values, ignoring case.
+     */
+    private String nextString(String[] known) {
+        requireToken();
+        for (String value : known) {
+            if (tokenEqualsIgnoreCase(value)) {
+                return value;
+            }
+        }
+        return string();
+    }
+
+    private boolean tokenEqualsIgnoreCase(String value) {
+        if (tokenEnd - tokenStart != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            int b = request.get(tokenStart + i);
+            if (Character.toLowerCase(b) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string() {
+        int length = tokenEnd - tokenStart;
+        if (text.length < length) {
+            text = new byte[Math.max(length, text.length * 2)];
+        }
+        request.get(tokenStart, text, 0, length);
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The {@code RequestHandler} interface executes the commands of one request frame.
+     */
+    interface RequestHandler {
+        /**
+         * Executes the commands of one request.
+         *
+         * @param request The command lines, from its position to its limit.
+         * @return The response lines, from position to limit.
+         * @throws IOException If the request cannot be executed at all.
+         */
+        ByteBuffer execute(ByteBuffer request) throws IOException;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.PrintStream;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * The {@code ConsoleSession} class runs the interactive login, quote, policy and view flow for a single user.
+ * Each session owns its input, its output and its logged-in user, so many sessions can run at the same time,
+ * whether on the local console or on separate network connections.
+ */
+public class ConsoleSession implements Runnable {
+    private final Scanner scanner;
+    private final PrintStream out;
+    private User loggedInUser = null;
+    private boolean running = true;
+
+    /**
+     * Constructs a new session reading from the given scanner and writing to the given stream.
+     *
+     * @param scanner The {@code Scanner} the user's input is read from.
+     * @param out     The {@code PrintStream} menus and results are written to.
+     */
+    public ConsoleSession(Scanner scanner, PrintStream out) {
+        this.scanner = scanner;
+        this.out = out;
+    }
+
+    /**
+     * Runs the session until the user chooses to exit or the input ends.
+     * It continuously displays the login/signup menu and the main menu after authentication.
+     * Input that is not a number where one is expected returns the user to the current menu. Any other failure is
+     * logged to standard error and also returns the user to the menu, so one failed action does not end the session.
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                try {
+                    showLoginOrSignupMenu();
+                    showMainMenu();
+                } catch (InputMismatchException e) {
+                    if (scanner.hasNextLine()) {
+                        scanner.nextLine();
+                    }
+                    out.println("Invalid input. Please enter a number.");
+                } catch (NoSuchElementException e) {
+                    // input ended or the connection was closed; the session simply ends
+                    return;
+                } catch (RuntimeException e) {
+                    System.err.println("Console session action failed:");
+                    e.printStackTrace();
+                    out.println("Something went wrong. Please try again.");
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Displays the login or signup menu.
+     * Allows the user to log in, create an account, or exit the application.
+     */
+    private void showLoginOrSignupMenu() {
+        while (running && loggedInUser == null) {
+            out.println("\n--- Welcome to Taylor Insurance ---");
+            out.println("1. Login");
+            out.println("2. Create Account");
+            out.println("3. Exit");
+            out.print("Choose an option: ");
+
+            int choice = scanner.nextInt();
+            scanner.nextLine();
+
+            switch (choice) {
+                case 1 -> login();
+                case 2 -> createAccount();
+                case 3 -> {
+                    out.println("Goodbye!");
+                    running = false;
+                }
+                default -> out.println("Invalid choice. Please try again.");
+            }
+        }
+    }
+
+    /**
+     * Handles user login.
+     * Prompts the user for credentials and authenticates using {@link AuthManager}.
+     * If authentication is successful, the user is logged in.
+     */
+    private void login() {
+        out.println("\n--- Login ---");
+        out.print("Enter username: ");
+        String username = scanner.nextLine();
+        out.print("Enter password: ");
+        String password = scanner.nextLine();
+
+        loggedInUser = AuthManager.authenticate(username, password);
+        if (loggedInUser != null) {
+            out.println("\nLogin successful! Welcome, " + loggedInUser.getUsername() + "!\n");
+        } else {
+            out.println("Invalid credentials. Try again.");
+        }
+    }
+
+    /**
+     * Handles account creation.
+     * Prompts the user for a new username and password, then registers the user with {@link AuthManager}.
+     * If registration is successful, the user is logged in as the newly registered account.
+     */
+    private void createAccount() {
+        out.println("\n--- Create Account ---");
+        out.print("Choose a username: ");
+        String username = scanner.nextLine();
+
+        if (AuthManager.isRegistered(username)) {
+            out.println("Username already exists! Please choose a different username.");
+            return;
+        }
+
+        out.print("Choose a password: ");
+        String password = scanner.nextLine();
+
+        boolean registered = AuthManager.registerUser(username, password);
+        if (registered) {
+            // the password was hashed while registering; no need to hash it again to log in
+            loggedInUser = AuthManager.getRegistry().get(username);
+            out.println("Account created successfully! You are now logged in.");
+        } else {
+            out.println("Account creation failed. Please try again.");
+        }
+    }
+
+    /**
+     * Displays the main menu for logged-in users.
+     * Provides options to request a quote, start a new policy, view existing policies, log out, or exit.
+     */
+    private void showMainMenu() {
+        while (running && loggedInUser != null) {
+            out.println("\n--- Main Menu ---");
+            out.println("1. Request a Quote");
+            out.println("2. Start a New Policy");
+            out.println("3. View Current Policies");
+            out.println("4. Logout");
+            out.println("5. Exit");
+            out.print("Choose an option: ");
+
+            int choice = scanner.nextInt();
+            scanner.nextLine();
+
+            switch (choice) {
+                case 1 -> QuoteManager.requestQuote(scanner, out);
+                case 2 -> PolicyManager.startNewPolicy(loggedInUser, scanner, out);
+                case 3 -> PolicyManager.viewPolicies(loggedInUser, scanner, out);
+                case 4 -> {
+                    loggedInUser = null;
+                    out.println("Logged out successfully.");
+                }
+                case 5 -> {
+                    out.println("Exiting...");
+                    running = false;
+                }
+                default -> out.println("Invalid choice.");
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * The {@code Credential} class holds a salted password hash and the parameters it was derived with.
+ * It never contains the password itself. Instances are immutable and created by {@link PasswordHasher}.
+ */
+public class Credential {
+    private final int iterations;
+    private final byte[] salt;
+    private final byte[] hash;
+
+    /**
+     * Constructs a credential from stored values, e.g. when recovering accounts.
+     * The arrays are not copied and must not be modified afterwards.
+     *
+     * @param iterations The PBKDF2 iteration count the hash was derived with.
+     * @param salt       The random salt.
+     * @param hash       The derived key.
+     */
+    Credential(int iterations, byte[] salt, byte[] hash) {
+        this.iterations = iterations;
+        this.salt = salt;
+        this.hash = hash;
+    }
+
+    /**
+     * Gets the PBKDF2 iteration count the hash was derived with.
+     *
+     * @return The iteration count.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    byte[] salt() {
+        return salt;
+    }
+
+    byte[] hash() {
+        return hash;
+    }
+}
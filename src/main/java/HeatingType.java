@@ -0,0 +1,26 @@
+/**
+ * The {@code HeatingType} enum lists the heating types recognized by home insurance rating.
+ * Free-text heating types entered by users are normalized to one of these values once, when a policy is built.
+ */
+public enum HeatingType {
+    OIL,
+    WOOD,
+    OTHER;
+
+    /**
+     * Normalizes a free-text heating type. Matching is case-insensitive; anything other than
+     * oil or wood is rated as {@link #OTHER}.
+     *
+     * @param heatingType The heating type as entered (e.g., "Oil", "wood", "electric").
+     * @return The normalized heating type.
+     */
+    public static HeatingType fromString(String heatingType) {
+        if (heatingType.equalsIgnoreCase("oil")) {
+            return OIL;
+        }
+        if (heatingType.equalsIgnoreCase("wood")) {
+            return WOOD;
+        }
+        return OTHER;
+    }
+}
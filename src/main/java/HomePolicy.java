@@ -4,10 +4,14 @@
  * heating type, location, home value, and liability limit.
  */
 public class HomePolicy extends Policy {
+    private static final LatencyHistogram premiumLatency = Metrics.histogram("premium.calculate.home");
+
     private final int homeAge;
     private final String dwellingType;
     private final String heatingType;
     private final String location;
+    private final HeatingType ratedHeatingType;
+    private final LocationType ratedLocation;
     private final float homeValue;
     private final float liabilityLimit;
 
@@ -27,6 +31,8 @@ public class HomePolicy extends Policy {
         this.dwellingType = dwellingType;
         this.heatingType = heatingType;
         this.location = location;
+        this.ratedHeatingType = HeatingType.fromString(heatingType);
+        this.ratedLocation = LocationType.fromString(location);
         this.homeValue = homeValue;
         this.liabilityLimit = liabilityLimit;
     }
@@ -67,6 +73,24 @@ public class HomePolicy extends Policy {
         return location;
     }
 
+    /**
+     * Gets the heating type as normalized for rating.
+     *
+     * @return The normalized heating type.
+     */
+    public HeatingType getRatedHeatingType() {
+        return ratedHeatingType;
+    }
+
+    /**
+     * Gets the location as normalized for rating.
+     *
+     * @return The normalized location.
+     */
+    public LocationType getRatedLocation() {
+        return ratedLocation;
+    }
+
     /**
      * Gets the estimated value of the home.
      *
@@ -94,32 +118,56 @@ public class HomePolicy extends Policy {
      */
     @Override
     public void calculatePremium(User user) {
-        float premium = basePremium;
-
-        if (homeValue > 250000) {
-            premium += (homeValue - 250000) * 0.002f;
-        }
-
-        premium *= (liabilityLimit == 2000000) ? 1.25 : 1.0;
-
-        premium *= (homeAge > 50) ? 1.5 : (homeAge > 25) ? 1.25 : 1.0;
+        long start = System.nanoTime();
+        totalPremium = computePremium(homeValue, homeAge, ratedHeatingType, ratedLocation, liabilityLimit,
+                user != null && user.hasActiveAutoPolicy());
+        premiumLatency.recordSince(start);
+    }
 
-        premium *= heatingType.equalsIgnoreCase("oil") ? 2.0 :
-                heatingType.equalsIgnoreCase("wood") ? 1.25 : 1.0;
+    @Override
+    AccountFact providedFact() {
+        return AccountFact.ACTIVE_HOME_POLICY;
+    }
 
-        premium *= location.equalsIgnoreCase("rural") ? 1.15 : 1.0;
+    @Override
+    boolean dependsOn(AccountFact fact) {
+        return fact == AccountFact.ACTIVE_AUTO_POLICY;
+    }
 
-        // Apply discount if the user has an active auto policy
-        if (user != null && user.hasActiveAutoPolicy()) {
-            premium *= 0.9;
-        }
+    /**
+     * Computes a home premium directly from rating inputs, without constructing a policy.
+     * The heating type and location are normalized on every call; prefer
+     * {@link #computePremium(float, int, HeatingType, LocationType, float, boolean)} on hot paths.
+     *
+     * @param homeValue      The estimated value of the home.
+     * @param homeAge        The age of the home in years.
+     * @param heatingType    The type of heating used in the home.
+     * @param location       The location of the home (urban/rural).
+     * @param liabilityLimit The liability coverage limit.
+     * @param autoDiscount   Whether the owner holds an active auto policy.
+     * @return The total premium including tax.
+     */
+    public static float computePremium(float homeValue, int homeAge, String heatingType, String location,
+                                       float liabilityLimit, boolean autoDiscount) {
+        return computePremium(homeValue, homeAge, HeatingType.fromString(heatingType), LocationType.fromString(location),
+                liabilityLimit, autoDiscount);
+    }
 
-        // 15% tax
-        totalPremium = premium * 1.15f;
+    /**
+     * Computes a home premium from normalized rating inputs using the installed {@link RatingRules}, or the active
+     * {@link RatingTables} if no rules are installed. This is the same rating logic used by
+     * {@link #calculatePremium(User)}.
+     *
+     * @param homeValue      The estimated value of the home.
+     * @param homeAge        The age of the home in years.
+     * @param heatingType    The normalized heating type.
+     * @param location       The normalized location.
+     * @param liabilityLimit The liability coverage limit.
+     * @param autoDiscount   Whether the owner holds an active auto policy.
+     * @return The total premium including tax.
+     */
+    public static float computePremium(float homeValue, int homeAge, HeatingType heatingType, LocationType location,
+                                       float liabilityLimit, boolean autoDiscount) {
+        return RatingRules.priceHome(homeValue, homeAge, heatingType, location, liabilityLimit, autoDiscount);
     }
 }
-
-
-
-
-
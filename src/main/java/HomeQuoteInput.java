@@ -0,0 +1,95 @@
+/**
+ * The {@code HomeQuoteInput} class holds the rating inputs for a single home insurance quote.
+ * It is a lightweight value used by {@link QuoteEngine} to price quotes in bulk without creating policies.
+ */
+public class HomeQuoteInput {
+    private final float homeValue;
+    private final int homeAge;
+    private final String heatingType;
+    private final String location;
+    private final HeatingType ratedHeatingType;
+    private final LocationType ratedLocation;
+    private final float liabilityLimit;
+
+    /**
+     * Constructs a new {@code HomeQuoteInput} with the specified rating inputs.
+     *
+     * @param homeValue      The estimated value of the home.
+     * @param homeAge        The age of the home in years.
+     * @param heatingType    The type of heating used in the home (e.g., oil, wood, other).
+     * @param location       The location of the home (urban/rural).
+     * @param liabilityLimit The liability coverage limit.
+     */
+    public HomeQuoteInput(float homeValue, int homeAge, String heatingType, String location, float liabilityLimit) {
+        this.homeValue = homeValue;
+        this.homeAge = homeAge;
+        this.heatingType = heatingType;
+        this.location = location;
+        this.ratedHeatingType = HeatingType.fromString(heatingType);
+        this.ratedLocation = LocationType.fromString(location);
+        this.liabilityLimit = liabilityLimit;
+    }
+
+    /**
+     * Returns the estimated value of the home.
+     *
+     * @return The home value.
+     */
+    public float getHomeValue() {
+        return homeValue;
+    }
+
+    /**
+     * Returns the age of the home.
+     *
+     * @return The home age in years.
+     */
+    public int getHomeAge() {
+        return homeAge;
+    }
+
+    /**
+     * Returns the type of heating used in the home.
+     *
+     * @return The heating type.
+     */
+    public String getHeatingType() {
+        return heatingType;
+    }
+
+    /**
+     * Returns the location of the home.
+     *
+     * @return The home location.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the heating type as normalized for rating.
+     *
+     * @return The normalized heating type.
+     */
+    public HeatingType getRatedHeatingType() {
+        return ratedHeatingType;
+    }
+
+    /**
+     * Returns the location as normalized for rating.
+     *
+     * @return The normalized location.
+     */
+    public LocationType getRatedLocation() {
+        return ratedLocation;
+    }
+
+    /**
+     * Returns the liability coverage limit.
+     *
+     * @return The liability limit.
+     */
+    public float getLiabilityLimit() {
+        return liabilityLimit;
+    }
+}
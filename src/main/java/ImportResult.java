@@ -0,0 +1,89 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code ImportResult} class summarizes a bulk policy import run by {@link PolicyImporter}.
+ */
+public class ImportResult {
+    private final long rowsRead;
+    private final long policiesImported;
+    private final long rowsRejected;
+    private final List<String> rejections;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs an import summary.
+     *
+     * @param rowsRead         The number of data rows read, excluding blank lines and the header.
+     * @param policiesImported The number of policies added to their owners.
+     * @param rowsRejected     The number of rows that failed parsing or validation.
+     * @param rejections       Descriptions of the first rejected rows.
+     * @param elapsedNanos     The wall-clock duration of the import in nanoseconds.
+     */
+    public ImportResult(long rowsRead, long policiesImported, long rowsRejected, List<String> rejections,
+                        long elapsedNanos) {
+        this.rowsRead = rowsRead;
+        this.policiesImported = policiesImported;
+        this.rowsRejected = rowsRejected;
+        this.rejections = Collections.unmodifiableList(rejections);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of data rows read from the input.
+     *
+     * @return The row count.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Gets the number of policies that were priced and added to their owners.
+     *
+     * @return The imported policy count.
+     */
+    public long getPoliciesImported() {
+        return policiesImported;
+    }
+
+    /**
+     * Gets the number of rows that were skipped because they could not be parsed or failed validation.
+     *
+     * @return The rejected row count.
+     */
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * Gets descriptions of rejected rows, each prefixed with its line number. Only the first
+     * {@link PolicyImporter#MAX_REPORTED_REJECTIONS} rejections are kept.
+     *
+     * @return The rejection descriptions.
+     */
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Gets the wall-clock duration of the import.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns a one-line summary of the import.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("Imported %d of %d rows (%d rejected) in %.2f s (%.0f rows/s)",
+                policiesImported, rowsRead, rowsRejected, seconds, seconds > 0 ? rowsRead / seconds : 0);
+    }
+}
@@ -1,133 +1,152 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.LocalTime;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@code InsuranceConsoleApp} class represents a command-line insurance management application.
  * It provides users with options to log in, create an account, request quotes, start policies, and view existing policies.
+ * <p>
+ * By default a single session runs on the local console. With {@code --server [port]} the application instead
+ * serves many concurrent sessions over TCP using {@link InsuranceServer}; adding {@code --commands} serves the
+ * non-interactive {@link CommandSession} protocol instead of the menus, on the loopback interface unless
+ * {@code --bind <address>} names another local address to listen on. With {@code --data <directory>} all
+ * accounts and policies are recovered from, and journaled to, a {@link PolicyJournal} in that directory.
+ * With {@code --import <file>} the policies in a CSV file are added with {@link PolicyImporter} before the
+ * application starts. With {@code --renew-daily <HH:mm>} a {@link RenewalScheduler} renews expiring policies
+ * every day at that time. With {@code --metrics-port <port>} the application's {@link Metrics} are served for
+ * scraping at {@code /metrics} on that port. With {@code --audit-log <file>} every account and policy event is
+ * appended to that file by an {@link AuditLog}; on the console, the same log also prints policy messages.
+ * With {@code --export-snapshot <file>} the loaded book is written as a {@link PolicySnapshot} for other
+ * processes to map, and the application exits. With {@code --rating-rules <file>} new premiums are computed by the
+ * {@link RatingRules} in that file instead of the rating tables; how they would change the recovered book is
+ * printed first. Once accounts are recovered, a {@link RepricingEngine} keeps premiums current as users add and
+ * cancel policies.
  */
 public class InsuranceConsoleApp {
-    private static final Scanner scanner = new Scanner(System.in);
-    private static User loggedInUser = null;
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 10;
 
     /**
      * The entry point of the application.
-     * It continuously displays the login/signup menu and the main menu after authentication.
      *
-     * @param args Command-line arguments (not used).
+     * @param args Command-line arguments: {@code [--data <directory>] [--import <file>] [--renew-daily <HH:mm>]
+     *             [--metrics-port <port>] [--audit-log <file>] [--export-snapshot <file>]
+     *             [--rating-rules <file>] [--server [port] [--commands] [--bind <address>]]}.
+     * @throws IOException If the data directory cannot be used, the import or rating rules file cannot be read,
+     *                     or server mode cannot open its listening socket.
      */
-    public static void main(String[] args) {
-        while (true) {
-            showLoginOrSignupMenu();
-            showMainMenu();
-        }
-    }
-
-    /**
-     * Displays the login or signup menu.
-     * Allows the user to log in, create an account, or exit the application.
-     */
-    private static void showLoginOrSignupMenu() {
-        while (loggedInUser == null) {
-            System.out.println("\n--- Welcome to Taylor Insurance ---");
-            System.out.println("1. Login");
-            System.out.println("2. Create Account");
-            System.out.println("3. Exit");
-            System.out.print("Choose an option: ");
-
-            int choice = scanner.nextInt();
-            scanner.nextLine();
-
-            switch (choice) {
-                case 1 -> login();
-                case 2 -> createAccount();
-                case 3 -> {
-                    System.out.println("Goodbye!");
-                    System.exit(0);
+    public static void main(String[] args) throws IOException {
+        Path dataDirectory = null;
+        Path importFile = null;
+        LocalTime renewalTime = null;
+        int metricsPort = -1;
+        Path auditFile = null;
+        Path snapshotFile = null;
+        Path rulesFile = null;
+        int serverPort = -1;
+        boolean commandProtocol = false;
+        InetAddress bindAddress = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--data" -> dataDirectory = Path.of(args[++i]);
+                case "--import" -> importFile = Path.of(args[++i]);
+                case "--renew-daily" -> renewalTime = LocalTime.parse(args[++i]);
+                case "--metrics-port" -> metricsPort = Integer.parseInt(args[++i]);
+                case "--audit-log" -> auditFile = Path.of(args[++i]);
+                case "--export-snapshot" -> snapshotFile = Path.of(args[++i]);
+                case "--rating-rules" -> rulesFile = Path.of(args[++i]);
+                case "--commands" -> commandProtocol = true;
+                case "--bind" -> bindAddress = InetAddress.getByName(args[++i]);
+                case "--server" -> serverPort = i + 1 < args.length && !args[i + 1].startsWith("--")
+                        ? Integer.parseInt(args[++i]) : InsuranceServer.DEFAULT_PORT;
+                default -> {
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.err.println("Usage: InsuranceConsoleApp [--data <directory>] [--import <file>] [--renew-daily <HH:mm>] "
+                            + "[--metrics-port <port>] [--audit-log <file>] [--export-snapshot <file>] "
+                            + "[--rating-rules <file>] [--server [port] [--commands] [--bind <address>]]");
+                    return;
                 }
-                default -> System.out.println("Invalid choice. Please try again.");
             }
         }
-    }
-
-    /**
-     * Handles user login.
-     * Prompts the user for credentials and authenticates using {@link AuthManager}.
-     * If authentication is successful, the user is logged in.
-     */
-    private static void login() {
-        System.out.println("\n--- Login ---");
-        System.out.print("Enter username: ");
-        String username = scanner.nextLine();
-        System.out.print("Enter password: ");
-        String password = scanner.nextLine();
-
-        loggedInUser = AuthManager.authenticate(username, password);
-        if (loggedInUser != null) {
-            System.out.println("\nLogin successful! Welcome, " + loggedInUser.getUsername() + "!\n");
-        } else {
-            System.out.println("Invalid credentials. Try again.");
-        }
-    }
-
-    /**
-     * Handles account creation.
-     * Prompts the user for a new username and password, then registers the user with {@link AuthManager}.
-     * If registration is successful, the user is logged in.
-     */
-    private static void createAccount() {
-        System.out.println("\n--- Create Account ---");
-        System.out.print("Choose a username: ");
-        String username = scanner.nextLine();
 
-        if (AuthManager.authenticate(username, "") != null) {
-            System.out.println("Username already exists! Please choose a different username.");
-            return;
+        PolicyJournal journal = null;
+        if (dataDirectory != null) {
+            long start = System.nanoTime();
+            journal = PolicyJournal.open(dataDirectory);
+            journal.startPeriodicSnapshots(SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            System.out.printf("Recovered %d accounts in %d ms%n",
+                    AuthManager.getRegistry().size(), (System.nanoTime() - start) / 1_000_000);
         }
 
-        System.out.print("Choose a password: ");
-        String password = scanner.nextLine();
-
-        boolean registered = AuthManager.registerUser(username, password);
-        if (registered) {
-            loggedInUser = new User(username, password);
-            System.out.println("Account created successfully! You are now logged in.");
-        } else {
-            System.out.println("Account creation failed. Please try again.");
+        if (rulesFile != null) {
+            RatingRules rules = RatingRules.load(rulesFile);
+            System.out.println("Rating rules " + rulesFile + " compared with the current premiums:");
+            System.out.println(rules.compare(AuthManager.getRegistry().users()));
+            RatingRules.install(rules);
         }
-    }
-
-    /**
-     * Displays the main menu for logged-in users.
-     * Provides options to request a quote, start a new policy, view existing policies, log out, or exit.
-     */
-    private static void showMainMenu() {
-        while (loggedInUser != null) {
-            System.out.println("\n--- Main Menu ---");
-            System.out.println("1. Request a Quote");
-            System.out.println("2. Start a New Policy");
-            System.out.println("3. View Current Policies");
-            System.out.println("4. Logout");
-            System.out.println("5. Exit");
-            System.out.print("Choose an option: ");
 
-            int choice = scanner.nextInt();
-            scanner.nextLine();
-
-            switch (choice) {
-                case 1 -> QuoteManager.requestQuote(scanner);
-                case 2 -> PolicyManager.startNewPolicy(loggedInUser, scanner);
-                case 3 -> PolicyManager.viewPolicies(loggedInUser, scanner);
-                case 4 -> {
-                    loggedInUser = null;
-                    System.out.println("Logged out successfully.");
+        // after recovery, so journaled premiums are kept; before the import, so imported policies re-price siblings
+        RepricingEngine repricing = new RepricingEngine().start();
+        RenewalScheduler renewals = null;
+        HttpServer metricsEndpoint = null;
+        AuditLog auditLog = null;
+        try {
+            if (auditFile != null || serverPort < 0) {
+                auditLog = new AuditLog(auditFile, AuditLog.DEFAULT_CAPACITY).start();
+                if (serverPort < 0) {
+                    auditLog.addSubscriber(AuditLog.consoleSubscriber(System.out));
+                }
+            }
+            if (metricsPort >= 0) {
+                metricsEndpoint = Metrics.startHttpEndpoint(metricsPort);
+            }
+            if (importFile != null) {
+                ImportResult result = new PolicyImporter().importFile(importFile);
+                System.out.println(result);
+                result.getRejections().forEach(rejection -> System.out.println("  " + rejection));
+            }
+            if (snapshotFile != null) {
+                long start = System.nanoTime();
+                long policies = PolicySnapshot.write(snapshotFile);
+                System.out.printf("Exported %d policies to %s in %d ms%n",
+                        policies, snapshotFile, (System.nanoTime() - start) / 1_000_000);
+                return;
+            }
+            if (renewalTime != null) {
+                renewals = new RenewalScheduler().start();
+                renewals.startDaily(renewalTime);
+            }
+            if (serverPort >= 0) {
+                if (bindAddress == null && commandProtocol) {
+                    bindAddress = InetAddress.getLoopbackAddress();
                 }
-                case 5 -> {
-                    System.out.println("Exiting...");
-                    System.exit(0);
+                try (InsuranceServer server = new InsuranceServer(serverPort, InsuranceServer.DEFAULT_MAX_SESSIONS,
+                        commandProtocol, bindAddress)) {
+                    System.out.println("Taylor Insurance " + (commandProtocol ? "command " : "")
+                            + "server listening on port " + server.getPort());
+                    server.serve();
                 }
-                default -> System.out.println("Invalid choice.");
+            } else {
+                new ConsoleSession(new Scanner(System.in), System.out).run();
+            }
+        } finally {
+            if (auditLog != null) {
+                auditLog.close();
+            }
+            if (metricsEndpoint != null) {
+                metricsEndpoint.stop(0);
+            }
+            if (renewals != null) {
+                renewals.close();
+            }
+            repricing.close();
+            if (journal != null) {
+                journal.close();
             }
         }
     }
 }
-
-
@@ -0,0 +1,237 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code InsuranceServer} class serves the interactive insurance menus to many users at once over TCP.
+ * Alternatively it serves the non-interactive command protocol of {@link CommandSession} to scripted clients.
+ * <p>
+ * Each accepted connection runs its own {@link ConsoleSession} (or {@link CommandSession}) on a virtual thread,
+ * so blocking on a slow client ties up no platform thread. Per-session memory is bounded by small fixed-size I/O
+ * buffers, and the number of concurrent sessions is capped; further connections wait in the accept backlog until a
+ * session ends. Sessions that stay idle longer than the idle timeout are closed.
+ * <p>
+ * The menus are served on all interfaces. The command protocol is meant for the {@link ShardRouter} and local
+ * scripts, so unless another address is given it is served on the loopback interface only.
+ */
+public class InsuranceServer implements Closeable {
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_MAX_SESSIONS = 20_000;
+
+    private static final int ACCEPT_BACKLOG = 4096;
+    private static final int IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final int OUTPUT_BUFFER_SIZE = 1024;
+    private static final long ACCEPT_RETRY_DELAY_MILLIS = 50;
+
+    private final ServerSocket serverSocket;
+    private final Semaphore sessionPermits;
+    private final SessionHandler handler;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    /**
+     * Creates a server listening on the given port with the default session limit.
+     *
+     * @param port The TCP port to listen on, or 0 to pick a free port.
+     * @throws IOException If the port cannot be opened.
+     */
+    public InsuranceServer(int port) throws IOException {
+        this(port, DEFAULT_MAX_SESSIONS);
+    }
+
+    /**
+     * Creates a server listening on the given port.
+     *
+     * @param port        The TCP port to listen on, or 0 to pick a free port.
+     * @param maxSessions The maximum number of sessions served at the same time.
+     * @throws IOException If the port cannot be opened.
+     */
+    public InsuranceServer(int port, int maxSessions) throws IOException {
+        this(port, maxSessions, false);
+    }
+
+    /**
+     * Creates a server listening on the given port, serving either the menus or the command protocol.
+     *
+     * @param port            The TCP port to listen on, or 0 to pick a free port.
+     * @param maxSessions     The maximum number of sessions served at the same time.
+     * @param commandProtocol {@code true} to serve the {@link CommandSession} protocol instead of the menus.
+     * @throws IOException If the port cannot be opened.
+     */
+    public InsuranceServer(int port, int maxSessions, boolean commandProtocol) throws IOException {
+        this(port, maxSessions, commandProtocol, commandProtocol ? InetAddress.getLoopbackAddress() : null);
+    }
+
+    /**
+     * Creates a server listening on the given port and address, serving either the menus or the command protocol.
+     *
+     * @param port            The TCP port to listen on, or 0 to pick a free port.
+     * @param maxSessions     The maximum number of sessions served at the same time.
+     * @param commandProtocol {@code true} to serve the {@link CommandSession} protocol instead of the menus.
+     * @param bindAddress     The local address to listen on, or {@code null} for all interfaces.
+     * @throws IOException If the port cannot be opened.
+     */
+    public InsuranceServer(int port, int maxSessions, boolean commandProtocol, InetAddress bindAddress)
+            throws IOException {
+        this(port, maxSessions, bindAddress, commandProtocol ? (in, out) -> new CommandSession().serve(in, out) : null);
+    }
+
+    /**
+     * Creates a server listening on the given port, serving each connection with a handler.
+     *
+     * @param port        The TCP port to listen on, or 0 to pick a free port.
+     * @param maxSessions The maximum number of sessions served at the same time.
+     * @param bindAddress The local address to listen on, or {@code null} for all interfaces.
+     * @param handler     The handler serving each connection, or {@code null} to serve the menus.
+     * @throws IOException If the port cannot be opened.
+     */
+    InsuranceServer(int port, int maxSessions, InetAddress bindAddress, SessionHandler handler) throws IOException {
+        this.serverSocket = new ServerSocket(port, ACCEPT_BACKLOG, bindAddress);
+        this.sessionPermits = new Semaphore(maxSessions);
+        this.handler = handler;
+    }
+
+    /**
+     * Accepts connections and starts a session for each one until the server is closed.
+     * Failed accepts (e.g., when the process is out of file descriptors) are retried after a short pause.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            sessionPermits.acquireUninterruptibly();
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                sessionPermits.release();
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                // typically out of file descriptors; back off instead of spinning or giving up
+                System.err.println("Accept failed, retrying: " + e.getMessage());
+                pauseAfterFailedAccept();
+                continue;
+            }
+            sessions.execute(() -> runSession(socket));
+        }
+    }
+
+    /**
+     * Starts accepting connections on a background virtual thread.
+     *
+     * @return The thread running the accept loop.
+     */
+    public Thread start() {
+        return Thread.ofVirtual().name("insurance-server-accept").start(this::serve);
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of sessions currently connected.
+     *
+     * @return The active session count.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Stops accepting connections and ends all running sessions.
+     *
+     * @throws IOException If the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private static void pauseAfterFailedAccept() {
+        try {
+            Thread.sleep(ACCEPT_RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (socket) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            if (handler != null) {
+                handler.serve(socket.getInputStream(), socket.getOutputStream());
+                return;
+            }
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE),
+                    false, StandardCharsets.UTF_8);
+            Scanner scanner = new Scanner(new FlushBeforeReadInputStream(socket.getInputStream(), out),
+                    StandardCharsets.UTF_8);
+            new ConsoleSession(scanner, out).run();
+        } catch (IOException e) {
+            // the client went away; nothing more to do for this session
+        } finally {
+            activeSessions.decrementAndGet();
+            sessionPermits.release();
+        }
+    }
+
+    /**
+     * The {@code SessionHandler} interface serves one connection until it ends.
+     */
+    interface SessionHandler {
+        /**
+         * Serves a connection.
+         *
+         * @param in  The stream from the client.
+         * @param out The stream to the client.
+         * @throws IOException If the connection fails.
+         */
+        void serve(InputStream in, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Flushes pending output before blocking on input, so a prompt always reaches the client
+     * before the session waits for the client's answer.
+     */
+    private static class FlushBeforeReadInputStream extends FilterInputStream {
+        private final PrintStream out;
+
+        FlushBeforeReadInputStream(InputStream in, PrintStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            out.flush();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            out.flush();
+            return super.read(b, off, len);
+        }
+    }
+}
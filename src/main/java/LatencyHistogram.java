@@ -0,0 +1,162 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code LatencyHistogram} class records a distribution of durations with bounded relative error, in the
+ * manner of an HdrHistogram.
+ * <p>
+ * Values are counted in log-linear buckets: every power-of-two range is split into 16 equal sub-buckets, so any
+ * recorded value is reported within about 6% of its true value, across the whole range of a {@code long}, in a
+ * fixed array of counters. Recording never locks and never allocates.
+ * <p>
+ * Counters are striped: each thread records into one of several copies of the buckets, picked by its thread id,
+ * and the copies are only added up when the histogram is read. A recording is two atomic additions on counters
+ * that other threads rarely touch, and a read of the maximum, so threads recording in parallel, e.g. pricing a
+ * renewal batch, do not contend on shared cache lines. The count is derived from the buckets when read.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // each stripe holds its buckets followed by its total, and starts on a cache line of its own
+    private static final int TOTAL = BUCKETS;
+    private static final int STRIPE_LENGTH = BUCKETS + 8;
+    private static final int STRIPES = Math.min(64,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE_LENGTH);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int stripe = stripe() * STRIPE_LENGTH;
+        counts.getAndIncrement(stripe + bucketOf(value));
+        counts.getAndAdd(stripe + TOTAL, value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the given start time.
+     *
+     * @param startNanos A start time taken from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                count += counts.get(stripe * STRIPE_LENGTH + bucket);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded durations.
+     *
+     * @return The total in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            total += counts.get(stripe * STRIPE_LENGTH + TOTAL);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return The maximum in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the mean of the recorded durations.
+     *
+     * @return The mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getTotalNanos() / count;
+    }
+
+    /**
+     * Returns the duration at the given percentile: the upper end of the bucket holding it, capped at the
+     * maximum recorded value. Recording may continue concurrently, so the result reflects a moment during the call.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The duration in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long bucketCount = counts.get(stripe * STRIPE_LENGTH + bucket);
+                merged[bucket] += bucketCount;
+                count += bucketCount;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += merged[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(bucket), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Picks the stripe of the current thread, spreading consecutive thread ids over the stripes.
+     */
+    private static int stripe() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & (STRIPES - 1);
+    }
+
+    /**
+     * Maps a value to its bucket. Values below 16 have a bucket each; above that, the position of the highest set
+     * bit selects the power-of-two range and the next four bits the sub-bucket within it.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
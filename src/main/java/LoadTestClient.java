@@ -0,0 +1,158 @@
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code LoadTestClient} class drives many concurrent sessions against an {@link InsuranceServer}
+ * and reports quote latency percentiles.
+ * <p>
+ * Every session connects, creates its own account and waits until all sessions are logged in,
+ * so the server holds the full number of sessions at once. Each session then requests a series of auto quotes,
+ * and the round-trip time of every quote is recorded.
+ * <p>
+ * Each account costs one password hash. At the default {@link PasswordHasher#DEFAULT_ITERATIONS} the registrations
+ * alone would take minutes, so an embedded server hashes with {@link #PASSWORD_ITERATIONS} unless the
+ * {@code taylor.password.iterations} system property is set. Start a remote server with
+ * {@code -Dtaylor.password.iterations=1000} to measure the same thing.
+ */
+public class LoadTestClient {
+    /**
+     * The PBKDF2 iteration count of the accounts created against an embedded server.
+     */
+    public static final int PASSWORD_ITERATIONS = 1000;
+
+    private static final byte[] PROMPT = "Choose an option: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MAIN_MENU = "--- Main Menu ---".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] QUOTE_RESULT = "Estimated Auto Insurance Premium".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] QUOTE_REQUEST = "1\n2\n30\n0\nHonda\nCivic\n2018\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EXIT = "5\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Runs the load test.
+     *
+     * @param args {@code host port sessions quotesPerSession}. Use the host {@code embedded} to start a server
+     *             in this process on a free port. Defaults: {@code embedded 0 10000 10}.
+     *             An embedded server hashes passwords with {@link #PASSWORD_ITERATIONS} iterations.
+     * @throws Exception If the embedded server cannot be started or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "embedded";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int quotesPerSession = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        InsuranceServer server = null;
+        if (host.equals("embedded")) {
+            if (System.getProperty("taylor.password.iterations") == null) {
+                PasswordHasher.setIterations(PASSWORD_ITERATIONS);
+            }
+            server = new InsuranceServer(port, sessions);
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        try {
+            run(host, port, sessions, quotesPerSession);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(String host, int port, int sessions, int quotesPerSession) throws InterruptedException {
+        long[] latencies = new long[sessions * quotesPerSession];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch loggedIn = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        long runId = System.currentTimeMillis();
+
+        long start;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                String username = "load-" + runId + "-" + i;
+                clients.execute(() -> {
+                    boolean counted = false;
+                    try (Socket socket = new Socket(host, port)) {
+                        socket.setTcpNoDelay(true);
+                        InputStream in = new BufferedInputStream(socket.getInputStream(), 512);
+                        OutputStream out = socket.getOutputStream();
+
+                        expect(in, PROMPT);
+                        out.write(("2\n" + username + "\nsecret\n").getBytes(StandardCharsets.UTF_8));
+                        expect(in, MAIN_MENU);
+                        expect(in, PROMPT);
+
+                        loggedIn.countDown();
+                        counted = true;
+                        go.await();
+
+                        for (int q = 0; q < quotesPerSession; q++) {
+                            long sent = System.nanoTime();
+                            out.write(QUOTE_REQUEST);
+                            expect(in, QUOTE_RESULT);
+                            expect(in, PROMPT);
+                            latencies[recorded.getAndIncrement()] = System.nanoTime() - sent;
+                        }
+                        out.write(EXIT);
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (!counted) {
+                            loggedIn.countDown();
+                        }
+                    }
+                });
+            }
+
+            loggedIn.await();
+            System.out.printf("%,d sessions logged in (%,d failed)%n", sessions - failed.get(), failed.get());
+            start = System.nanoTime();
+            go.countDown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int count = recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("Quotes: %,d in %.2f s (%,.0f quotes/sec)%n",
+                count, elapsed / 1e9, count * 1e9 / Math.max(elapsed, 1));
+        if (count > 0) {
+            System.out.printf("Latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms%n",
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[count - 1] / 1e6);
+        }
+        System.out.printf("Failed sessions: %,d%n", failed.get());
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    /**
+     * Reads from the stream until the given marker has been seen.
+     */
+    private static void expect(InputStream in, byte[] marker) throws IOException {
+        int matched = 0;
+        while (matched < marker.length) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed while waiting for server output");
+            }
+            matched = b == marker[matched] ? matched + 1 : (b == marker[0] ? 1 : 0);
+        }
+    }
+}
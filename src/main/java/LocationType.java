@@ -0,0 +1,19 @@
+/**
+ * The {@code LocationType} enum lists the home locations recognized by home insurance rating.
+ * Free-text locations entered by users are normalized to one of these values once, when a policy is built.
+ */
+public enum LocationType {
+    URBAN,
+    RURAL;
+
+    /**
+     * Normalizes a free-text location. Matching is case-insensitive; anything other than
+     * rural is rated as {@link #URBAN}.
+     *
+     * @param location The location as entered (e.g., "Rural", "urban").
+     * @return The normalized location.
+     */
+    public static LocationType fromString(String location) {
+        return location.equalsIgnoreCase("rural") ? RURAL : URBAN;
+    }
+}
@@ -0,0 +1,101 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code Metrics} class is the registry of the application's counters and latency histograms.
+ * <p>
+ * Metrics are created once by name, typically into static fields of the instrumented class, and updated from
+ * then on without any lookup, lock or allocation. Names are dot-separated and end in the policy type where a
+ * per-type breakdown applies, e.g. {@code premium.calculate.home}. All metrics can be rendered in the
+ * Prometheus text format and served over HTTP for scraping.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name The dot-separated metric name.
+     * @return The counter.
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Returns the latency histogram with the given name, creating it on first use.
+     *
+     * @param name The dot-separated metric name.
+     * @return The histogram.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format. Counters become {@code _total} counters,
+     * histograms become summaries in seconds with their 50th, 90th, 99th and 99.9th percentiles.
+     *
+     * @return The rendered metrics.
+     */
+    public static String render() {
+        StringBuilder text = new StringBuilder(4096);
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            String name = exportName(counter.getKey()) + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = exportName(entry.getKey()) + "_seconds";
+            LatencyHistogram histogram = entry.getValue();
+            text.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            text.append(name).append("_max ").append(seconds(histogram.getMaxNanos())).append('\n');
+            text.append(name).append("_sum ").append(seconds(histogram.getTotalNanos())).append('\n');
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Serves {@link #render()} at {@code /metrics} on the given port, on a background thread.
+     *
+     * @param port The TCP port to listen on, or 0 to pick a free port.
+     * @return The running HTTP server; call {@link HttpServer#stop(int)} to shut it down.
+     * @throws IOException If the port cannot be opened.
+     */
+    public static HttpServer startHttpEndpoint(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String exportName(String name) {
+        return "taylor_" + name.replace('.', '_');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
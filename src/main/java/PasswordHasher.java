@@ -0,0 +1,96 @@
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * The {@code PasswordHasher} class derives and checks password hashes with PBKDF2-HMAC-SHA256 and a random
+ * 16-byte salt per password.
+ * <p>
+ * The iteration count of new hashes defaults to {@link #DEFAULT_ITERATIONS} and can be set with the
+ * {@code taylor.password.iterations} system property or {@link #setIterations(int)}. Every credential remembers
+ * its own count, so existing hashes stay verifiable when the count changes. Hashes are compared in constant time.
+ * Hashing is deliberately expensive (milliseconds of CPU); {@link AuthManager} runs it on a bounded pool.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 210_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom random = new SecureRandom();
+
+    private static volatile int iterations = Integer.getInteger("taylor.password.iterations", DEFAULT_ITERATIONS);
+
+    // initialized after the iteration count, which it is hashed with
+    private static final Credential DUMMY = hash("not a password");
+
+    /**
+     * Hashes a password with a new random salt and the current iteration count.
+     *
+     * @param password The password to hash.
+     * @return The credential to store instead of the password.
+     */
+    public static Credential hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int count = iterations;
+        return new Credential(count, salt, derive(password, salt, count));
+    }
+
+    /**
+     * Checks a password against a stored credential. The derived hash is compared in constant time,
+     * so the time taken does not reveal how much of it matched.
+     *
+     * @param password   The password to check.
+     * @param credential The stored credential.
+     * @return {@code true} if the password matches the credential.
+     */
+    public static boolean verify(String password, Credential credential) {
+        byte[] derived = derive(password, credential.salt(), credential.getIterations());
+        return MessageDigest.isEqual(derived, credential.hash());
+    }
+
+    /**
+     * Spends the same time as checking a password without checking anything, so that a login for an unknown
+     * username takes as long as one with a wrong password.
+     *
+     * @param password The password that was supplied.
+     */
+    public static void verifyNothing(String password) {
+        verify(password, DUMMY);
+    }
+
+    /**
+     * Sets the iteration count used for new hashes.
+     *
+     * @param count The PBKDF2 iteration count; must be positive.
+     */
+    public static void setIterations(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Iteration count must be positive: " + count);
+        }
+        iterations = count;
+    }
+
+    /**
+     * Gets the iteration count used for new hashes.
+     *
+     * @return The PBKDF2 iteration count.
+     */
+    public static int getIterations() {
+        return iterations;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int count) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, count, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code Policy} class represents a generic insurance policy.
@@ -8,16 +9,21 @@ import java.time.LocalDate;
  * This class is abstract and should be extended by specific policy types (e.g., AutoPolicy, HomePolicy).
  */
 public abstract class Policy {
+    private static final AtomicLong policyIdSequence = new AtomicLong();
+
+    protected long policyId;
     protected String policyType;
     protected float basePremium;
     protected float totalPremium;
     protected LocalDate startDate;
     protected LocalDate endDate;
     protected boolean isActive;
+    protected User owner;
 
     /**
      * Constructs a new policy with the specified type and base premium.
-     * The policy is set to active by default and has a duration of one year.
+     * The policy is set to active by default and has a duration of one year, starting today according to the
+     * {@link RatingClock}.
      *
      * @param policyType  The type of policy (e.g., "Auto", "Home").
      * @param basePremium The base premium amount before adjustments.
@@ -25,8 +31,9 @@ public abstract class Policy {
     public Policy(String policyType, float basePremium) {
         this.policyType = policyType;
         this.basePremium = basePremium;
-        this.startDate = LocalDate.now();
-        this.endDate = startDate.plusYears(1);
+        RatingClock clock = RatingClock.current();
+        this.startDate = clock.today();
+        this.endDate = clock.oneYearAfter(startDate);
         this.isActive = true;
     }
 
@@ -38,23 +45,143 @@ public abstract class Policy {
      */
     public abstract void calculatePremium(User user);
 
+    /**
+     * Calculates the total premium as of the given date instead of today, e.g. when renewing a batch of policies
+     * or backtesting. Policies whose rating does not depend on the date price exactly as
+     * {@link #calculatePremium(User)}.
+     *
+     * @param user The user associated with the policy, used for discount calculations.
+     * @param asOf The date the policy is rated on.
+     */
+    public void calculatePremium(User user, LocalDate asOf) {
+        calculatePremium(user);
+    }
+
+    /**
+     * Returns the account fact this policy makes true while it is active.
+     *
+     * @return The provided fact, or {@code null} if the policy provides none.
+     */
+    AccountFact providedFact() {
+        return null;
+    }
+
+    /**
+     * Checks whether the premium of this policy depends on an account fact, so that it must be re-priced when
+     * the fact changes state.
+     *
+     * @param fact The account fact.
+     * @return {@code true} if {@link #calculatePremium(User)} reads the fact.
+     */
+    boolean dependsOn(AccountFact fact) {
+        return false;
+    }
+
     /**
      * Renews the policy by updating the start and end dates.
-     * The policy remains active for another year.
+     * The policy remains active for another year. The renewal is reported through {@link PolicyEvents},
+     * e.g. to the {@link AuditLog} and its console subscriber.
      */
     public void renewPolicy() {
-        this.startDate = LocalDate.now();
-        this.endDate = startDate.plusYears(1);
-        System.out.println(policyType + " policy renewed successfully.");
+        renew(RatingClock.current().today());
     }
 
     /**
      * Cancels the policy, setting it to inactive.
-     * A message is displayed informing the user about billing implications.
+     * The owning user's active policy counts are updated, and the cancellation is reported through
+     * {@link PolicyEvents}, e.g. to the {@link AuditLog}, whose console subscriber informs the user
+     * about billing implications.
      */
     public void cancelPolicy() {
+        cancel();
+    }
+
+    /**
+     * Starts a new one-year term on the given date.
+     *
+     * @param newStartDate The first day of the new term.
+     */
+    void renew(LocalDate newStartDate) {
+        this.startDate = newStartDate;
+        this.endDate = newStartDate.plusYears(1);
+        PolicyEvents.policyRenewed(owner, this);
+    }
+
+    /**
+     * Sets the policy inactive. Canceling an inactive policy has no effect.
+     */
+    void cancel() {
+        User user = owner;
+        if (user == null) {
+            deactivate(null);
+        } else {
+            // two threads canceling the same policy must not both count it as deactivated
+            synchronized (user) {
+                deactivate(user);
+            }
+        }
+    }
+
+    private void deactivate(User user) {
+        if (!isActive) {
+            return;
+        }
         this.isActive = false;
-        System.out.println(policyType + " policy canceled. You will still be billed for the rest of the month.");
+        if (user != null) {
+            user.policyDeactivated(this);
+        }
+        PolicyEvents.policyCanceled(user, this);
+    }
+
+    /**
+     * Gets the unique identifier of the policy. Policies receive an identifier when first added to a user.
+     *
+     * @return The policy identifier, or {@code 0} if the policy has not been added to a user yet.
+     */
+    public long getPolicyId() {
+        return policyId;
+    }
+
+    /**
+     * Gets the first day of the current policy term.
+     *
+     * @return The start date.
+     */
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Gets the day the current policy term ends.
+     *
+     * @return The end date.
+     */
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Gets the user owning the policy.
+     *
+     * @return The owner, or {@code null} if the policy has not been added to a user.
+     */
+    public User getOwner() {
+        return owner;
+    }
+
+    /**
+     * Assigns the next free policy identifier.
+     */
+    static long nextPolicyId() {
+        return policyIdSequence.incrementAndGet();
+    }
+
+    /**
+     * Makes sure identifiers handed out from now on are greater than the given one,
+     * e.g. after policies with stored identifiers have been restored.
+     */
+    static void reservePolicyIds(long usedId) {
+        policyIdSequence.accumulateAndGet(usedId, Math::max);
     }
 
     /**
@@ -0,0 +1,70 @@
+/**
+ * The {@code PolicyEventListener} interface receives notifications when accounts and policies change.
+ * Listeners are registered with {@link PolicyEvents} and are called synchronously, on the thread that made
+ * the change, after the change has been applied. Every method has an empty default implementation.
+ */
+public interface PolicyEventListener {
+
+    /**
+     * Called after a new user has been registered.
+     *
+     * @param user The registered user.
+     */
+    default void userRegistered(User user) {
+    }
+
+    /**
+     * Called after a user has been unregistered, e.g. because the account moved to another worker. The user's
+     * policies have been removed before, each with {@link #policyRemoved(User, Policy)}.
+     *
+     * @param user The removed user.
+     */
+    default void userRemoved(User user) {
+    }
+
+    /**
+     * Called after a policy has been added to a user's list of policies.
+     *
+     * @param user   The user the policy was added to.
+     * @param policy The added policy.
+     */
+    default void policyAdded(User user, Policy policy) {
+    }
+
+    /**
+     * Called after an active policy has been canceled.
+     *
+     * @param user   The user owning the policy, or {@code null} if the policy has no owner.
+     * @param policy The canceled policy.
+     */
+    default void policyCanceled(User user, Policy policy) {
+    }
+
+    /**
+     * Called after a policy has been removed from a user's list of policies.
+     *
+     * @param user   The user the policy was removed from.
+     * @param policy The removed policy.
+     */
+    default void policyRemoved(User user, Policy policy) {
+    }
+
+    /**
+     * Called after a policy has been renewed for another term.
+     *
+     * @param user   The user owning the policy, or {@code null} if the policy has no owner.
+     * @param policy The renewed policy.
+     */
+    default void policyRenewed(User user, Policy policy) {
+    }
+
+    /**
+     * Called after the premium of an active policy has changed because a fact about its owner's account changed,
+     * e.g. the owner's first home policy made an auto policy eligible for the multi-policy discount.
+     *
+     * @param user   The user owning the policy.
+     * @param policy The re-priced policy, already carrying its new premium.
+     */
+    default void policyRepriced(User user, Policy policy) {
+    }
+}
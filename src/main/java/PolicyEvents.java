@@ -0,0 +1,70 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@code PolicyEvents} class dispatches account and policy changes to registered {@link PolicyEventListener}s.
+ * Listeners can be added and removed at any time; dispatch iterates a snapshot of the listener list without locking.
+ */
+public class PolicyEvents {
+    private static final List<PolicyEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener to be notified of all subsequent changes.
+     *
+     * @param listener The listener to add.
+     */
+    public static void addListener(PolicyEventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously added listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public static void removeListener(PolicyEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    static void userRegistered(User user) {
+        for (PolicyEventListener listener : listeners) {
+            listener.userRegistered(user);
+        }
+    }
+
+    static void userRemoved(User user) {
+        for (PolicyEventListener listener : listeners) {
+            listener.userRemoved(user);
+        }
+    }
+
+    static void policyAdded(User user, Policy policy) {
+        for (PolicyEventListener listener : listeners) {
+            listener.policyAdded(user, policy);
+        }
+    }
+
+    static void policyCanceled(User user, Policy policy) {
+        for (PolicyEventListener listener : listeners) {
+            listener.policyCanceled(user, policy);
+        }
+    }
+
+    static void policyRemoved(User user, Policy policy) {
+        for (PolicyEventListener listener : listeners) {
+            listener.policyRemoved(user, policy);
+        }
+    }
+
+    static void policyRenewed(User user, Policy policy) {
+        for (PolicyEventListener listener : listeners) {
+            listener.policyRenewed(user, policy);
+        }
+    }
+
+    static void policyRepriced(User user, Policy policy) {
+        for (PolicyEventListener listener : listeners) {
+            listener.policyRepriced(user, policy);
+        }
+    }
+}
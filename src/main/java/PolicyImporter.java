@@ -0,0 +1,551 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code PolicyImporter} class loads a book of business from a CSV file, creating and pricing one policy per row
+ * and adding it to its (already registered) owner.
+ * <p>
+ * Each row describes one policy; the first field selects its type:
+ * <pre>
+ * home,&lt;username&gt;,&lt;homeAge&gt;,&lt;dwellingType&gt;,&lt;heatingType&gt;,&lt;location&gt;,&lt;homeValue&gt;,&lt;liabilityLimit&gt;
+ * auto,&lt;username&gt;,&lt;driverAge&gt;,&lt;accidentCount&gt;,&lt;make&gt;,&lt;model&gt;,&lt;year&gt;
+ * </pre>
+ * Fields may not contain commas and are not quoted. Blank lines are skipped, as is a first line starting with
+ * {@code type}. Rows that cannot be parsed or fail validation are counted and reported, not imported.
+ * <p>
+ * The import runs as a pipeline of five stages connected by bounded queues, so a slow stage holds back the stages
+ * before it and memory use does not grow with the size of the file: a reader fills a small pool of fixed-size
+ * buffers from a {@link FileChannel}, a parser decodes fields straight from the bytes, a validator resolves owners
+ * and builds policies, a pricer rates each batch in parallel, and an inserter adds the policies to their owners
+ * in file order. Because policies are added in file order, multi-policy discounts come out exactly as if the rows
+ * had been entered one at a time through {@link PolicyManager#startNewPolicy}.
+ */
+public class PolicyImporter {
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int MAX_FIELDS = 8;
+    private static final int STAGES = 5;
+    private static final float LOW_LIABILITY_LIMIT = 1_000_000f;
+    private static final float HIGH_LIABILITY_LIMIT = 2_000_000f;
+    private static final int FIRST_MODEL_YEAR = 1886;
+    private static final byte TYPE_HOME = 1;
+    private static final byte TYPE_AUTO = 2;
+    private static final Chunk END_OF_CHUNKS = new Chunk(new byte[0]);
+    private static final Batch END_OF_BATCHES = new Batch();
+
+    private final UserRegistry registry;
+
+    /**
+     * Creates an importer that adds policies to the users registered with {@link AuthManager}.
+     */
+    public PolicyImporter() {
+        this(AuthManager.getRegistry());
+    }
+
+    /**
+     * Creates an importer that adds policies to the users of the given registry.
+     *
+     * @param registry The registry used to look up policy owners.
+     */
+    public PolicyImporter(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Imports every policy in the given CSV file. The call returns once the whole file has been processed.
+     *
+     * @param file The CSV file to import.
+     * @return A summary of the import, including the rows that were rejected.
+     * @throws IOException If the file cannot be read or contains a line longer than the read buffer.
+     */
+    public ImportResult importFile(Path file) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 3);
+        for (int i = 0; i < QUEUE_CAPACITY + 3; i++) {
+            freeChunks.add(new Chunk(new byte[CHUNK_SIZE]));
+        }
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> priced = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Inserter inserter = new Inserter(priced);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService stages = Executors.newFixedThreadPool(STAGES,
+                task -> new Thread(task, "policy-import-" + threadCount.incrementAndGet()));
+        try {
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+            completion.submit(() -> read(file, freeChunks, chunks));
+            completion.submit(() -> parse(chunks, freeChunks, parsed));
+            completion.submit(stage(parsed, validated, this::validate));
+            completion.submit(stage(validated, priced, PolicyImporter::price));
+            completion.submit(inserter);
+            for (int i = 0; i < STAGES; i++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Import of " + file + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import of " + file + " was interrupted");
+        } finally {
+            // a failed stage leaves its neighbours blocked on a queue; interrupting them ends the import
+            stages.shutdownNow();
+        }
+        return new ImportResult(inserter.rowsRead, inserter.imported, inserter.rejected, inserter.rejections,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Reader stage: fills buffers from the file, cutting each chunk after its last complete line.
+     * The partial line at the end of a buffer is carried over to the start of the next one.
+     */
+    private static Void read(Path file, BlockingQueue<Chunk> freeChunks, BlockingQueue<Chunk> chunks)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Chunk chunk = freeChunks.take();
+            int carried = 0;
+            long line = 1;
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk.data, carried, chunk.data.length - carried);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        endOfFile = true;
+                        break;
+                    }
+                }
+                int filled = buffer.position();
+                int end = endOfFile ? filled : lastLineEnd(chunk.data, filled);
+                if (end < 0) {
+                    throw new IOException("Line " + line + " of " + file + " is longer than " + CHUNK_SIZE + " bytes");
+                }
+                chunk.length = end;
+                chunk.firstLine = line;
+                line += countLines(chunk.data, end);
+
+                Chunk next = endOfFile ? null : freeChunks.take();
+                carried = filled - end;
+                if (next != null) {
+                    System.arraycopy(chunk.data, end, next.data, 0, carried);
+                }
+                chunks.put(chunk);
+                chunk = next;
+            }
+        }
+        chunks.put(END_OF_CHUNKS);
+        return null;
+    }
+
+    /**
+     * Parser stage: splits chunks into lines and decodes each line's fields in place, returning every buffer
+     * to the pool as soon as it has been parsed.
+     */
+    private static Void parse(BlockingQueue<Chunk> chunks, BlockingQueue<Chunk> freeChunks, BlockingQueue<Batch> parsed)
+            throws InterruptedException {
+        int[] fieldStarts = new int[MAX_FIELDS];
+        int[] fieldEnds = new int[MAX_FIELDS];
+        AttributeStrings strings = new AttributeStrings();
+        Batch batch = new Batch();
+        for (Chunk chunk = chunks.take(); chunk != END_OF_CHUNKS; chunk = chunks.take()) {
+            byte[] data = chunk.data;
+            long line = chunk.firstLine;
+            int lineStart = 0;
+            while (lineStart < chunk.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < chunk.length && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                Row row = parseLine(data, lineStart, lineEnd, line, fieldStarts, fieldEnds, strings);
+                if (row != null) {
+                    batch.rows[batch.count++] = row;
+                    if (batch.count == BATCH_SIZE) {
+                        parsed.put(batch);
+                        batch = new Batch();
+                    }
+                }
+                lineStart = lineEnd + 1;
+                line++;
+            }
+            freeChunks.put(chunk);
+        }
+        if (batch.count > 0) {
+            parsed.put(batch);
+        }
+        parsed.put(END_OF_BATCHES);
+        return null;
+    }
+
+    /**
+     * Decodes one line into a row, or returns {@code null} for blank lines and the header.
+     */
+    private static Row parseLine(byte[] data, int start, int end, long line, int[] fieldStarts, int[] fieldEnds,
+                                 AttributeStrings strings) {
+        int fields = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || data[i] == ',') {
+                if (fields == MAX_FIELDS) {
+                    return Row.rejected(line, "too many fields");
+                }
+                // trim surrounding blanks and a Windows line ending
+                int from = fieldStart;
+                int to = i;
+                while (from < to && data[from] == ' ') {
+                    from++;
+                }
+                while (to > from && (data[to - 1] == ' ' || data[to - 1] == '\r')) {
+                    to--;
+                }
+                fieldStarts[fields] = from;
+                fieldEnds[fields++] = to;
+                fieldStart = i + 1;
+            }
+        }
+        if (fields == 1 && fieldStarts[0] == fieldEnds[0]) {
+            return null;
+        }
+        if (line == 1 && equalsIgnoreCase(data, fieldStarts[0], fieldEnds[0], "type")) {
+            return null;
+        }
+
+        Row row = new Row(line);
+        try {
+            if (equalsIgnoreCase(data, fieldStarts[0], fieldEnds[0], "home")) {
+                if (fields != 8) {
+                    return Row.rejected(line, "home rows need 8 fields but found " + fields);
+                }
+                row.type = TYPE_HOME;
+                row.age = parseInt(data, fieldStarts[2], fieldEnds[2]);
+                row.text1 = strings.get(data, fieldStarts[3], fieldEnds[3]);
+                row.text2 = strings.get(data, fieldStarts[4], fieldEnds[4]);
+                row.text3 = strings.get(data, fieldStarts[5], fieldEnds[5]);
+                row.homeValue = parseFloat(data, fieldStarts[6], fieldEnds[6]);
+                row.liabilityLimit = parseFloat(data, fieldStarts[7], fieldEnds[7]);
+            } else if (equalsIgnoreCase(data, fieldStarts[0], fieldEnds[0], "auto")) {
+                if (fields != 7) {
+                    return Row.rejected(line, "auto rows need 7 fields but found " + fields);
+                }
+                row.type = TYPE_AUTO;
+                row.age = parseInt(data, fieldStarts[2], fieldEnds[2]);
+                row.accidentCount = parseInt(data, fieldStarts[3], fieldEnds[3]);
+                row.text1 = strings.get(data, fieldStarts[4], fieldEnds[4]);
+                row.text2 = strings.get(data, fieldStarts[5], fieldEnds[5]);
+                row.vehicleYear = parseInt(data, fieldStarts[6], fieldEnds[6]);
+            } else {
+                return Row.rejected(line, "unknown policy type '"
+                        + new String(data, fieldStarts[0], fieldEnds[0] - fieldStarts[0], StandardCharsets.UTF_8) + "'");
+            }
+        } catch (NumberFormatException e) {
+            return Row.rejected(line, "invalid number: " + e.getMessage());
+        }
+        row.username = new String(data, fieldStarts[1], fieldEnds[1] - fieldStarts[1], StandardCharsets.UTF_8);
+        return row;
+    }
+
+    /**
+     * Validator stage: resolves the owner of each row, checks the rating inputs and builds the policy.
+     */
+    private void validate(Batch batch) {
+        int currentYear = RatingClock.current().currentYear();
+        for (int i = 0; i < batch.count; i++) {
+            Row row = batch.rows[i];
+            if (row.rejection != null) {
+                continue;
+            }
+            row.owner = registry.get(row.username);
+            if (row.owner == null) {
+                row.rejection = "unknown user '" + row.username + "'";
+            } else if (row.type == TYPE_HOME) {
+                if (row.age < 0) {
+                    row.rejection = "home age must not be negative";
+                } else if (!(row.homeValue > 0)) {
+                    row.rejection = "home value must be positive";
+                } else if (row.liabilityLimit != LOW_LIABILITY_LIMIT && row.liabilityLimit != HIGH_LIABILITY_LIMIT) {
+                    row.rejection = "liability limit must be 1000000 or 2000000";
+                } else if (row.text1.isEmpty() || row.text2.isEmpty() || row.text3.isEmpty()) {
+                    row.rejection = "dwelling type, heating type and location are required";
+                } else {
+                    row.policy = new HomePolicy(row.age, row.text1, row.text2, row.text3, row.homeValue,
+                            row.liabilityLimit);
+                }
+            } else {
+                if (row.age < 0) {
+                    row.rejection = "driver age must not be negative";
+                } else if (row.accidentCount < 0) {
+                    row.rejection = "accident count must not be negative";
+                } else if (row.vehicleYear < FIRST_MODEL_YEAR || row.vehicleYear > currentYear + 1) {
+                    row.rejection = "vehicle year " + row.vehicleYear + " is out of range";
+                } else if (row.text1.isEmpty() || row.text2.isEmpty()) {
+                    row.rejection = "vehicle make and model are required";
+                } else {
+                    row.policy = new AutoPolicy(row.age, row.accidentCount,
+                            new Vehicle(row.text1, row.text2, row.vehicleYear));
+                }
+            }
+        }
+    }
+
+    /**
+     * Pricer stage: rates every policy of the batch in parallel. Both the regular and the multi-policy premium are
+     * computed, because which one applies depends on the policies added to the owner before this one.
+     */
+    private static void price(Batch batch) {
+        IntStream.range(0, batch.count).parallel().forEach(i -> {
+            Row row = batch.rows[i];
+            if (row.policy instanceof HomePolicy home) {
+                row.premium = HomePolicy.computePremium(home.getHomeValue(), home.getHomeAge(),
+                        home.getRatedHeatingType(), home.getRatedLocation(), home.getLiabilityLimit(), false);
+                row.discountedPremium = HomePolicy.computePremium(home.getHomeValue(), home.getHomeAge(),
+                        home.getRatedHeatingType(), home.getRatedLocation(), home.getLiabilityLimit(), true);
+            } else if (row.policy instanceof AutoPolicy auto) {
+                int vehicleAge = auto.getVehicle().getAge();
+                row.premium = AutoPolicy.computePremium(auto.getDriverAge(), auto.getAccidentCount(), vehicleAge, false);
+                row.discountedPremium = AutoPolicy.computePremium(auto.getDriverAge(), auto.getAccidentCount(),
+                        vehicleAge, true);
+            }
+        });
+    }
+
+    /**
+     * Wraps a per-batch transformation into a stage that forwards batches until the end marker.
+     */
+    private static Callable<Void> stage(BlockingQueue<Batch> in, BlockingQueue<Batch> out, BatchStep step) {
+        return () -> {
+            for (Batch batch = in.take(); batch != END_OF_BATCHES; batch = in.take()) {
+                step.apply(batch);
+                out.put(batch);
+            }
+            out.put(END_OF_BATCHES);
+            return null;
+        };
+    }
+
+    private static int lastLineEnd(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int countLines(byte[] data, int length) {
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] data, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(data[from + i]) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseInt(byte[] data, int from, int to) {
+        boolean negative = from < to && data[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 9) {
+            throw new NumberFormatException(ascii(data, from, to));
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(ascii(data, from, to));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number. Plain integers up to 2^24 are converted directly, since every such value is exactly
+     * representable as a float; anything else (fractions, exponents, larger values) goes through
+     * {@link Float#parseFloat}, so the result always matches it.
+     */
+    private static float parseFloat(byte[] data, int from, int to) {
+        if (from == to || to - from > 8) {
+            return Float.parseFloat(ascii(data, from, to));
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Float.parseFloat(ascii(data, from, to));
+            }
+            value = value * 10 + digit;
+        }
+        return value <= 1 << 24 ? value : Float.parseFloat(ascii(data, from, to));
+    }
+
+    private static String ascii(byte[] data, int from, int to) {
+        return new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A per-batch processing step of the pipeline.
+     */
+    @FunctionalInterface
+    private interface BatchStep {
+        void apply(Batch batch);
+    }
+
+    /**
+     * A pooled read buffer holding whole lines of the input file.
+     */
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        long firstLine;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * A group of consecutive rows passed between stages as one unit.
+     */
+    private static final class Batch {
+        final Row[] rows = new Row[BATCH_SIZE];
+        int count;
+    }
+
+    /**
+     * One input line as it moves through the pipeline. The three text fields hold the dwelling type, heating type
+     * and location of a home row, or the make and model of an auto row.
+     */
+    private static final class Row {
+        final long line;
+        byte type;
+        String username;
+        int age;
+        int accidentCount;
+        int vehicleYear;
+        float homeValue;
+        float liabilityLimit;
+        String text1;
+        String text2;
+        String text3;
+        String rejection;
+        User owner;
+        Policy policy;
+        float premium;
+        float discountedPremium;
+
+        Row(long line) {
+            this.line = line;
+        }
+
+        static Row rejected(long line, String reason) {
+            Row row = new Row(line);
+            row.rejection = reason;
+            return row;
+        }
+    }
+
+    /**
+     * Inserter stage: adds the priced policies to their owners in file order and keeps the import tallies.
+     */
+    private static final class Inserter implements Callable<Void> {
+        private final BlockingQueue<Batch> priced;
+        private final List<String> rejections = new ArrayList<>();
+        private long rowsRead;
+        private long imported;
+        private long rejected;
+
+        Inserter(BlockingQueue<Batch> priced) {
+            this.priced = priced;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            for (Batch batch = priced.take(); batch != END_OF_BATCHES; batch = priced.take()) {
+                Batch current = batch;
+                // siblings affected by the batch, e.g. autos discounted by a newly imported home, are re-priced once
+                RepricingEngine.inTransaction(() -> insert(current));
+            }
+            return null;
+        }
+
+        private void insert(Batch batch) {
+            rowsRead += batch.count;
+            for (int i = 0; i < batch.count; i++) {
+                Row row = batch.rows[i];
+                if (row.rejection != null) {
+                    rejected++;
+                    if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                        rejections.add("line " + row.line + ": " + row.rejection);
+                    }
+                    continue;
+                }
+                boolean discounted = row.type == TYPE_HOME
+                        ? row.owner.hasActiveAutoPolicy() : row.owner.hasActiveHomePolicy();
+                row.policy.totalPremium = discounted ? row.discountedPremium : row.premium;
+                row.owner.addPolicy(row.policy);
+                imported++;
+            }
+        }
+    }
+
+    /**
+     * Interns the short, highly repetitive attribute strings of the input (dwelling and heating types, locations,
+     * makes and models), so a large import does not keep millions of equal strings and creating them needs no
+     * allocation once the cache is warm. Colliding values simply replace each other.
+     */
+    private static final class AttributeStrings {
+        private static final int SLOTS = 4096;
+
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+
+        String get(byte[] data, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + data[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+            byte[] key = keys[slot];
+            if (key != null && Arrays.equals(key, 0, key.length, data, from, to)) {
+                return values[slot];
+            }
+            keys[slot] = Arrays.copyOfRange(data, from, to);
+            values[slot] = new String(data, from, to - from, StandardCharsets.UTF_8);
+            return values[slot];
+        }
+    }
+}
@@ -0,0 +1,403 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code PolicyIndex} class maintains secondary indexes over all policies so portfolio questions such as
+ * "all active rural oil-heated homes over 50 years old" are answered without visiting every user.
+ * <p>
+ * Every indexed policy gets a row number. Categorical attributes (policy type, active flag, heating type, location,
+ * dwelling type and vehicle make) have one bitmap of rows per value; numeric attributes (home value, home age,
+ * driver age and vehicle year) have a sorted map from value to rows. A {@link PolicyQuery} intersects the bitmaps
+ * and the rows of the requested value ranges. Text values are matched case-insensitively.
+ * <p>
+ * The index follows {@link PolicyEvents}, so it stays current as policies are added, canceled and removed.
+ * A removed policy is cleared from every bitmap and value map, and its row number is reused by the next policy
+ * added, so the index grows with the most policies held at once rather than with every policy ever added.
+ * {@link #shared()} is the index over the registered users that the {@code FIND} command of
+ * {@link CommandSession} queries.
+ */
+public class PolicyIndex implements PolicyEventListener {
+    private static PolicyIndex shared;
+
+    private final UserRegistry registry;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Policy> rows = new ArrayList<>();
+    private final Map<Policy, Integer> rowOf = new IdentityHashMap<>();
+
+    private final BitSet live = new BitSet();
+    private final BitSet free = new BitSet();
+    private final BitSet active = new BitSet();
+    private final BitSet home = new BitSet();
+    private final BitSet auto = new BitSet();
+    private final Map<String, BitSet> heatingTypes = new HashMap<>();
+    private final Map<String, BitSet> locations = new HashMap<>();
+    private final Map<String, BitSet> dwellingTypes = new HashMap<>();
+    private final Map<String, BitSet> makes = new HashMap<>();
+
+    private final TreeMap<Float, RowList> homeValues = new TreeMap<>();
+    private final TreeMap<Integer, RowList> homeAges = new TreeMap<>();
+    private final TreeMap<Integer, RowList> driverAges = new TreeMap<>();
+    private final TreeMap<Integer, RowList> vehicleYears = new TreeMap<>();
+
+    /**
+     * Creates an index over the policies of the users registered with {@link AuthManager}.
+     */
+    public PolicyIndex() {
+        this(AuthManager.getRegistry());
+    }
+
+    /**
+     * Creates an index over the policies of the users of the given registry.
+     * Call {@link #start()} to index the existing policies and begin following policy changes.
+     *
+     * @param registry The registry whose users' policies are indexed.
+     */
+    public PolicyIndex(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns the index over the users registered with {@link AuthManager}, starting it on first use.
+     *
+     * @return The shared index.
+     */
+    public static synchronized PolicyIndex shared() {
+        if (shared == null) {
+            shared = new PolicyIndex().start();
+        }
+        return shared;
+    }
+
+    /**
+     * Starts following policy changes and indexes the policies every registered user already holds.
+     *
+     * @return This index.
+     */
+    public PolicyIndex start() {
+        PolicyEvents.addListener(this);
+        for (User user : registry.users()) {
+            // copied before taking the index lock: a thread changing the user holds the user's monitor while
+            // this index handles the change, so taking them in the other order could deadlock
+            List<Policy> policies = user.copyPolicies();
+            lock.writeLock().lock();
+            try {
+                for (Policy policy : policies) {
+                    add(policy);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Stops following policy changes. The index keeps answering queries as of that moment.
+     */
+    public void stop() {
+        PolicyEvents.removeListener(this);
+    }
+
+    /**
+     * Starts a new query matching every indexed policy. Narrow it with the methods of {@link PolicyQuery}.
+     *
+     * @return The new query.
+     */
+    public PolicyQuery query() {
+        return new PolicyQuery(this);
+    }
+
+    /**
+     * Returns the number of policies currently indexed, excluding removed policies.
+     *
+     * @return The indexed policy count.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void policyAdded(User user, Policy policy) {
+        lock.writeLock().lock();
+        try {
+            add(policy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void policyCanceled(User user, Policy policy) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowOf.get(policy);
+            if (row != null) {
+                active.clear(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void policyRemoved(User user, Policy policy) {
+        lock.writeLock().lock();
+        try {
+            remove(policy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the policies matching every criterion, in row order.
+     */
+    List<Policy> list(List<Criterion> criteria) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(criteria);
+            List<Policy> policies = new ArrayList<>(matches.cardinality());
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                policies.add(rows.get(row));
+            }
+            return policies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of policies matching every criterion.
+     */
+    int count(List<Criterion> criteria) {
+        lock.readLock().lock();
+        try {
+            return match(criteria).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void restrictToType(BitSet result, boolean homePolicies) {
+        result.and(homePolicies ? home : auto);
+    }
+
+    void restrictToActive(BitSet result, boolean activePolicies) {
+        if (activePolicies) {
+            result.and(active);
+        } else {
+            result.andNot(active);
+        }
+    }
+
+    void restrictToHeatingType(BitSet result, String heatingType) {
+        restrict(result, heatingTypes, heatingType);
+    }
+
+    void restrictToLocation(BitSet result, String location) {
+        restrict(result, locations, location);
+    }
+
+    void restrictToDwellingType(BitSet result, String dwellingType) {
+        restrict(result, dwellingTypes, dwellingType);
+    }
+
+    void restrictToMake(BitSet result, String make) {
+        restrict(result, makes, make);
+    }
+
+    void restrictToHomeValues(BitSet result, float min, float max) {
+        restrict(result, min <= max ? homeValues.subMap(min, true, max, true) : new TreeMap<>());
+    }
+
+    void restrictToHomeAges(BitSet result, int min, int max) {
+        restrict(result, min <= max ? homeAges.subMap(min, true, max, true) : new TreeMap<>());
+    }
+
+    void restrictToDriverAges(BitSet result, int min, int max) {
+        restrict(result, min <= max ? driverAges.subMap(min, true, max, true) : new TreeMap<>());
+    }
+
+    void restrictToVehicleYears(BitSet result, int min, int max) {
+        restrict(result, min <= max ? vehicleYears.subMap(min, true, max, true) : new TreeMap<>());
+    }
+
+    /**
+     * Intersects the rows of every criterion, starting from all indexed policies. Callers hold the read lock.
+     */
+    private BitSet match(List<Criterion> criteria) {
+        BitSet result = (BitSet) live.clone();
+        for (Criterion criterion : criteria) {
+            if (result.isEmpty()) {
+                break;
+            }
+            criterion.restrict(this, result);
+        }
+        return result;
+    }
+
+    private void add(Policy policy) {
+        if (rowOf.containsKey(policy)) {
+            return;
+        }
+        int row = free.nextSetBit(0);
+        if (row < 0) {
+            row = rows.size();
+            rows.add(policy);
+        } else {
+            free.clear(row);
+            rows.set(row, policy);
+        }
+        rowOf.put(policy, row);
+        live.set(row);
+        if (policy.isActive()) {
+            active.set(row);
+        }
+        if (policy instanceof HomePolicy homePolicy) {
+            home.set(row);
+            bitmap(heatingTypes, homePolicy.getHeatingType()).set(row);
+            bitmap(locations, homePolicy.getLocation()).set(row);
+            bitmap(dwellingTypes, homePolicy.getDwellingType()).set(row);
+            homeValues.computeIfAbsent(homePolicy.getHomeValue(), value -> new RowList()).add(row);
+            homeAges.computeIfAbsent(homePolicy.getHomeAge(), value -> new RowList()).add(row);
+        } else if (policy instanceof AutoPolicy autoPolicy) {
+            auto.set(row);
+            bitmap(makes, autoPolicy.getVehicle().getMake()).set(row);
+            driverAges.computeIfAbsent(autoPolicy.getDriverAge(), value -> new RowList()).add(row);
+            vehicleYears.computeIfAbsent(autoPolicy.getVehicle().getYear(), value -> new RowList()).add(row);
+        }
+    }
+
+    /**
+     * Clears a removed policy's row from every bitmap and value map and makes the row free for reuse.
+     */
+    private void remove(Policy policy) {
+        Integer row = rowOf.remove(policy);
+        if (row == null) {
+            return;
+        }
+        live.clear(row);
+        active.clear(row);
+        if (policy instanceof HomePolicy homePolicy) {
+            home.clear(row);
+            clear(heatingTypes, homePolicy.getHeatingType(), row);
+            clear(locations, homePolicy.getLocation(), row);
+            clear(dwellingTypes, homePolicy.getDwellingType(), row);
+            clear(homeValues, homePolicy.getHomeValue(), row);
+            clear(homeAges, homePolicy.getHomeAge(), row);
+        } else if (policy instanceof AutoPolicy autoPolicy) {
+            auto.clear(row);
+            clear(makes, autoPolicy.getVehicle().getMake(), row);
+            clear(driverAges, autoPolicy.getDriverAge(), row);
+            clear(vehicleYears, autoPolicy.getVehicle().getYear(), row);
+        }
+        rows.set(row, null);
+        free.set(row);
+    }
+
+    private static void clear(Map<String, BitSet> index, String value, int row) {
+        String key = normalize(value);
+        BitSet bitmap = index.get(key);
+        if (bitmap != null) {
+            bitmap.clear(row);
+            if (bitmap.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static <K> void clear(Map<K, RowList> index, K value, int row) {
+        RowList rowList = index.get(value);
+        if (rowList != null && rowList.remove(row) && rowList.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private static BitSet bitmap(Map<String, BitSet> index, String value) {
+        return index.computeIfAbsent(normalize(value), key -> new BitSet());
+    }
+
+    private static void restrict(BitSet result, Map<String, BitSet> index, String value) {
+        BitSet matches = index.get(normalize(value));
+        if (matches == null) {
+            result.clear();
+        } else {
+            result.and(matches);
+        }
+    }
+
+    private static void restrict(BitSet result, NavigableMap<?, RowList> range) {
+        BitSet matches = new BitSet();
+        for (RowList rowList : range.values()) {
+            rowList.setAll(matches);
+        }
+        result.and(matches);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One condition of a {@link PolicyQuery}, applied by clearing the rows it does not match.
+     */
+    @FunctionalInterface
+    interface Criterion {
+        void restrict(PolicyIndex index, BitSet result);
+    }
+
+    /**
+     * The rows holding one value of a numeric attribute, as a growable array.
+     */
+    private static final class RowList {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        /**
+         * Removes a row, moving the last row into its place.
+         *
+         * @return {@code false} if the row was not in the list.
+         */
+        boolean remove(int row) {
+            for (int i = 0; i < size; i++) {
+                if (rows[i] == row) {
+                    rows[i] = rows[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void setAll(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(rows[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,870 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code PolicyJournal} class makes users and policies survive a restart.
+ * <p>
+ * Every registration (with the salted password hash, never the password) and removal of a user, and every policy
+ * addition, cancellation, removal, renewal and re-pricing is appended as a checksummed record to a write-ahead log
+ * held in memory-mapped files. Appends only copy bytes into the mapping; a background committer flushes everything
+ * appended since its last pass to disk in one batch (group commit). Callers that need durability can wait for the
+ * batch containing their record with {@link #sync()}, or open the journal in synchronous mode, where every append
+ * waits for its batch.
+ * <p>
+ * {@link #snapshot()} starts a new log generation and writes the full state as a compacted snapshot, after which
+ * older logs are deleted, so recovery time stays bounded by the snapshot size plus one log generation.
+ * {@link #open(Path)} recovers by loading the latest snapshot and replaying the newer logs. Replay is idempotent,
+ * so records that are also reflected in the snapshot are harmless.
+ */
+public class PolicyJournal implements PolicyEventListener, Closeable {
+    private static final int SEGMENT_SIZE = 64 << 20;
+    private static final int MAX_RECORD_SIZE = 64 << 10;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int PADDING = -1;
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 5;
+
+    private static final byte REGISTER = 1;
+    private static final byte ADD_HOME = 2;
+    private static final byte ADD_AUTO = 3;
+    private static final byte CANCEL = 4;
+    private static final byte REMOVE = 5;
+    private static final byte RENEW = 6;
+    private static final byte REGISTER_HASHED = 7;
+    private static final byte REPRICE = 8;
+    private static final byte UNREGISTER = 9;
+
+    private static final Pattern LOG_FILE = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final Path directory;
+    private final boolean synchronousCommit;
+    private final long commitIntervalMillis;
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final CRC32C checksum = new CRC32C();
+    private final Object snapshotLock = new Object();
+    private final Thread committer;
+    private ScheduledExecutorService snapshotScheduler;
+
+    // guarded by this
+    private long generation;
+    private LogFile log;
+    private long forcedPosition;
+    private long appendedBytes;
+    private long durableBytes;
+    private boolean closed;
+
+    private PolicyJournal(Path directory, long generation, LogFile log, boolean synchronousCommit,
+                          long commitIntervalMillis) {
+        this.directory = directory;
+        this.generation = generation;
+        this.log = log;
+        this.forcedPosition = log.position;
+        this.synchronousCommit = synchronousCommit;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.committer = new Thread(this::commitLoop, "policy-journal-committer");
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Recovers all users and policies stored in the given directory and starts journaling new changes there.
+     * Appends are group-committed asynchronously.
+     *
+     * @param directory The directory holding the journal and snapshots; created if missing.
+     * @return The open journal.
+     * @throws IOException If the journal cannot be read or created.
+     */
+    public static PolicyJournal open(Path directory) throws IOException {
+        return open(directory, false, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Recovers all users and policies stored in the given directory and starts journaling new changes there.
+     * Recovered users are registered with {@link AuthManager}, and restored policies are added to their users.
+     *
+     * @param directory            The directory holding the journal and snapshots; created if missing.
+     * @param synchronousCommit    Whether each append waits until its batch has been flushed to disk.
+     * @param commitIntervalMillis The longest time an appended record waits before its batch is flushed.
+     * @return The open journal.
+     * @throws IOException If the journal cannot be read or created.
+     */
+    public static PolicyJournal open(Path directory, boolean synchronousCommit, long commitIntervalMillis)
+            throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = generations(directory, SNAPSHOT_FILE);
+        TreeMap<Long, Path> logs = generations(directory, LOG_FILE);
+
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        long generation = snapshotGeneration;
+        StringTable strings = new StringTable();
+        if (!snapshots.isEmpty()) {
+            try (LogFile snapshot = LogFile.open(snapshots.lastEntry().getValue())) {
+                // a snapshot is loaded into empty state and holds each policy once, so duplicates need no check
+                snapshot.replay(record -> apply(record, strings, false));
+            }
+        }
+
+        LogFile current = null;
+        for (var entry : logs.tailMap(snapshotGeneration, true).entrySet()) {
+            if (current != null) {
+                current.close();
+            }
+            current = LogFile.open(entry.getValue());
+            current.replay(record -> apply(record, strings, true));
+            generation = entry.getKey();
+        }
+        if (current == null) {
+            current = LogFile.open(logPath(directory, generation));
+        }
+        deleteOlderThan(directory, snapshotGeneration);
+
+        PolicyJournal journal = new PolicyJournal(directory, generation, current, synchronousCommit, commitIntervalMillis);
+        journal.committer.start();
+        PolicyEvents.addListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void userRegistered(User user) {
+        synchronized (this) {
+            ByteBuffer record = begin(REGISTER_HASHED, user.getUsername());
+            putCredential(record, user.getCredential());
+            append();
+        }
+    }
+
+    @Override
+    public void userRemoved(User user) {
+        synchronized (this) {
+            begin(UNREGISTER, user.getUsername());
+            append();
+        }
+    }
+
+    @Override
+    public void policyAdded(User user, Policy policy) {
+        synchronized (this) {
+            encodePolicy(scratch, user, policy);
+            append();
+        }
+    }
+
+    @Override
+    public void policyCanceled(User user, Policy policy) {
+        if (user == null) {
+            return;
+        }
+        synchronized (this) {
+            begin(CANCEL, user.getUsername()).putLong(policy.getPolicyId());
+            append();
+        }
+    }
+
+    @Override
+    public void policyRemoved(User user, Policy policy) {
+        synchronized (this) {
+            begin(REMOVE, user.getUsername()).putLong(policy.getPolicyId());
+            append();
+        }
+    }
+
+    @Override
+    public void policyRenewed(User user, Policy policy) {
+        if (user == null) {
+            return;
+        }
+        synchronized (this) {
+            begin(RENEW, user.getUsername())
+                    .putLong(policy.getPolicyId())
+                    .putLong(policy.startDate.toEpochDay())
+                    .putLong(policy.endDate.toEpochDay())
+                    .putFloat(policy.getTotalPremium());
+            append();
+        }
+    }
+
+    @Override
+    public void policyRepriced(User user, Policy policy) {
+        synchronized (this) {
+            begin(REPRICE, user.getUsername())
+                    .putLong(policy.getPolicyId())
+                    .putFloat(policy.getTotalPremium());
+            append();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been flushed to disk.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public synchronized void sync() throws InterruptedException {
+        awaitDurable(appendedBytes);
+    }
+
+    /**
+     * Writes a compacted snapshot of all registered users and their policies, then deletes the logs and snapshots
+     * it supersedes. Changes made while the snapshot is written go to a new log generation.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long snapshotGeneration = rotate();
+
+            Path temporary = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+            Files.deleteIfExists(temporary);
+            ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+            CRC32C snapshotChecksum = new CRC32C();
+            try (LogFile snapshot = LogFile.open(temporary)) {
+                for (User user : AuthManager.getRegistry().users()) {
+                    record.clear();
+                    record.put(REGISTER_HASHED);
+                    putString(record, user.getUsername());
+                    putCredential(record, user.getCredential());
+                    snapshot.append(record, snapshotChecksum);
+
+                    for (Policy policy : user.copyPolicies()) {
+                        encodePolicy(record, user, policy);
+                        snapshot.append(record, snapshotChecksum);
+                    }
+                }
+                snapshot.force(0, snapshot.position);
+            }
+            Files.move(temporary, directory.resolve("snapshot-" + snapshotGeneration + ".bin"),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            deleteOlderThan(directory, snapshotGeneration);
+        }
+    }
+
+    /**
+     * Writes a snapshot at a fixed interval on a background thread.
+     *
+     * @param interval The time between snapshots.
+     * @param unit     The unit of the interval.
+     */
+    public synchronized void startPeriodicSnapshots(long interval, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "policy-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Policy snapshot failed: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops journaling, flushes all appended records to disk and releases the log file.
+     *
+     * @throws IOException If the log cannot be flushed or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        PolicyEvents.removeListener(this);
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            scheduler = snapshotScheduler;
+            notifyAll();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            log.force(forcedPosition, log.position);
+            durableBytes = appendedBytes;
+            log.close();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Starts a new log generation and returns its number. Everything in the old generation is flushed first.
+     */
+    private synchronized long rotate() throws IOException {
+        log.force(forcedPosition, log.position);
+        log.close();
+        generation++;
+        log = LogFile.open(logPath(directory, generation));
+        forcedPosition = 0;
+        durableBytes = appendedBytes;
+        notifyAll();
+        return generation;
+    }
+
+    private ByteBuffer begin(byte type, String username) {
+        scratch.clear();
+        scratch.put(type);
+        putString(scratch, username);
+        return scratch;
+    }
+
+    /**
+     * Appends the record in the scratch buffer to the log. Must be called while holding the journal lock.
+     */
+    private void append() {
+        if (closed) {
+            return;
+        }
+        long before = log.position;
+        log.append(scratch, checksum);
+        appendedBytes += log.position - before;
+        if (synchronousCommit) {
+            notifyAll();
+            try {
+                awaitDurable(appendedBytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void awaitDurable(long target) throws InterruptedException {
+        while (durableBytes < target && !closed) {
+            notifyAll();
+            wait();
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            LogFile target;
+            long from;
+            long to;
+            long appended;
+            synchronized (this) {
+                while (!closed && appendedBytes == durableBytes) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                try {
+                    // let more appends join this batch
+                    wait(commitIntervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                target = log;
+                from = forcedPosition;
+                to = log.position;
+                appended = appendedBytes;
+            }
+
+            target.force(from, to);
+
+            synchronized (this) {
+                if (target == log) {
+                    forcedPosition = Math.max(forcedPosition, to);
+                    durableBytes = Math.max(durableBytes, appended);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private static void encodePolicy(ByteBuffer record, User user, Policy policy) {
+        record.clear();
+        record.put(policy instanceof HomePolicy ? ADD_HOME : ADD_AUTO);
+        putString(record, user.getUsername());
+        record.putLong(policy.getPolicyId())
+                .put((byte) (policy.isActive() ? 1 : 0))
+                .putFloat(policy.getTotalPremium())
+                .putLong(policy.startDate.toEpochDay())
+                .putLong(policy.endDate.toEpochDay());
+        if (policy instanceof HomePolicy home) {
+            record.putInt(home.getHomeAge());
+            putString(record, home.getDwellingType());
+            putString(record, home.getHeatingType());
+            putString(record, home.getLocation());
+            record.putFloat(home.getHomeValue()).putFloat(home.getLiabilityLimit());
+        } else if (policy instanceof AutoPolicy auto) {
+            Vehicle vehicle = auto.getVehicle();
+            record.putInt(auto.getDriverAge()).putInt(auto.getAccidentCount());
+            putString(record, vehicle.getMake());
+            putString(record, vehicle.getModel());
+            record.putInt(vehicle.getYear());
+        }
+    }
+
+    /**
+     * Applies one recovered record to the in-memory state. When {@code checkDuplicates} is set,
+     * applying a record twice has no further effect.
+     */
+    private static void apply(ByteBuffer record, StringTable strings, boolean checkDuplicates) {
+        byte type = record.get();
+        String username = getString(record);
+        if (type == REGISTER_HASHED) {
+            AuthManager.restoreUser(new User(username, getCredential(record)));
+            return;
+        }
+        if (type == UNREGISTER) {
+            AuthManager.removeUser(username);
+            return;
+        }
+        if (type == REGISTER) {
+            // journals written before passwords were hashed; hash while loading unless the user is known already
+            String password = getString(record);
+            if (!AuthManager.isRegistered(username)) {
+                AuthManager.restoreUser(new User(username, password));
+            }
+            return;
+        }
+
+        User user = AuthManager.getRegistry().get(username);
+        if (user == null) {
+            return;
+        }
+        // the index must still be valid when the record is applied, e.g. while a session changes the user
+        synchronized (user) {
+            long policyId = record.getLong();
+            boolean adding = type == ADD_HOME || type == ADD_AUTO;
+            int index = adding && !checkDuplicates ? -1 : user.indexOfPolicy(policyId);
+            switch (type) {
+                case ADD_HOME, ADD_AUTO -> {
+                    if (index >= 0) {
+                        return;
+                    }
+                    boolean active = record.get() != 0;
+                    float premium = record.getFloat();
+                    LocalDate startDate = LocalDate.ofEpochDay(record.getLong());
+                    LocalDate endDate = LocalDate.ofEpochDay(record.getLong());
+                    Policy policy;
+                    if (type == ADD_HOME) {
+                        int homeAge = record.getInt();
+                        String dwellingType = strings.get(record);
+                        String heatingType = strings.get(record);
+                        String location = strings.get(record);
+                        policy = new HomePolicy(homeAge, dwellingType, heatingType, location,
+                                record.getFloat(), record.getFloat());
+                    } else {
+                        int driverAge = record.getInt();
+                        int accidentCount = record.getInt();
+                        String make = strings.get(record);
+                        String model = strings.get(record);
+                        policy = new AutoPolicy(driverAge, accidentCount, new Vehicle(make, model, record.getInt()));
+                    }
+                    policy.policyId = policyId;
+                    policy.totalPremium = premium;
+                    policy.startDate = startDate;
+                    policy.endDate = endDate;
+                    policy.isActive = active;
+                    Policy.reservePolicyIds(policyId);
+                    user.addPolicy(policy);
+                }
+                case CANCEL -> {
+                    if (index >= 0) {
+                        user.getPolicies().get(index).cancel();
+                    }
+                }
+                case REMOVE -> {
+                    if (index >= 0) {
+                        user.removePolicy(index);
+                    }
+                }
+                case RENEW -> {
+                    if (index >= 0) {
+                        Policy policy = user.getPolicies().get(index);
+                        LocalDate startDate = LocalDate.ofEpochDay(record.getLong());
+                        record.getLong(); // the end date always follows from the start date
+                        policy.totalPremium = record.getFloat();
+                        policy.renew(startDate);
+                    }
+                }
+                case REPRICE -> {
+                    if (index >= 0) {
+                        user.getPolicies().get(index).totalPremium = record.getFloat();
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown journal record type: " + type);
+            }
+        }
+    }
+
+    /**
+     * Encodes a user's account and policies as a sequence of journal records, each preceded by its length,
+     * e.g. to move the user to another process with {@link #importUser(ByteBuffer)}.
+     *
+     * @param user The user to encode.
+     * @return The encoded account, from position 0 to the limit.
+     */
+    static ByteBuffer exportUser(User user) {
+        ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        List<Policy> policies = user.copyPolicies();
+        ByteBuffer out = ByteBuffer.allocate(256 * (1 + policies.size()));
+        record.put(REGISTER_HASHED);
+        putString(record, user.getUsername());
+        putCredential(record, user.getCredential());
+        out = putRecord(out, record);
+        for (Policy policy : policies) {
+            encodePolicy(record, user, policy);
+            out = putRecord(out, record);
+        }
+        return out.flip();
+    }
+
+    /**
+     * Registers a user encoded by {@link #exportUser(User)} and adds the user's policies with their identifiers,
+     * premiums and terms unchanged. Importing a user that is already registered only adds the policies it lacks.
+     * Listeners are notified as for any registration and addition, so the journal of this process records them.
+     * Policies are not re-priced, since their premiums already reflect the user's other policies.
+     *
+     * @param encoded The encoded account, from its position to its limit.
+     * @return The imported user, or {@code null} if the user was removed again while being imported.
+     * @throws IllegalArgumentException If the account is malformed; nothing is imported then.
+     */
+    static User importUser(ByteBuffer encoded) {
+        String username = checkAccount(encoded);
+        StringTable strings = new StringTable();
+        // the premiums were priced with the user's other policies already, so re-pricing would change nothing
+        RepricingEngine.withoutRepricing(() -> {
+            while (encoded.hasRemaining()) {
+                int length = encoded.getInt();
+                ByteBuffer record = encoded.slice(encoded.position(), length);
+                encoded.position(encoded.position() + length);
+                apply(record, strings, true);
+            }
+        });
+        return AuthManager.getRegistry().get(username);
+    }
+
+    /**
+     * Checks that an encoded account holds nothing but what {@link #exportUser(User)} writes: a registration
+     * followed by policy additions, all for the same username, each record complete and filling its length.
+     *
+     * @return The username of the account.
+     * @throws IllegalArgumentException If the account is malformed.
+     */
+    private static String checkAccount(ByteBuffer encoded) {
+        ByteBuffer records = encoded.duplicate();
+        String username = null;
+        try {
+            while (records.hasRemaining()) {
+                int length = records.getInt();
+                if (length < 1 || length > Math.min(MAX_RECORD_SIZE, records.remaining())) {
+                    throw new IllegalArgumentException("Bad record length: " + length);
+                }
+                ByteBuffer record = records.slice(records.position(), length);
+                records.position(records.position() + length);
+                byte type = record.get();
+                String recordUsername = getString(record);
+                if (username == null) {
+                    if (type != REGISTER_HASHED) {
+                        throw new IllegalArgumentException("Account does not start with a registration");
+                    }
+                    Credential credential = getCredential(record);
+                    if (credential.getIterations() < 1 || credential.salt().length == 0
+                            || credential.hash().length == 0) {
+                        throw new IllegalArgumentException("Bad credential");
+                    }
+                    username = recordUsername;
+                } else if (!recordUsername.equals(username)) {
+                    throw new IllegalArgumentException("Record for another user: " + recordUsername);
+                } else if (type == ADD_HOME || type == ADD_AUTO) {
+                    checkPolicy(record, type);
+                } else {
+                    throw new IllegalArgumentException("Unexpected record type: " + type);
+                }
+                if (record.hasRemaining()) {
+                    throw new IllegalArgumentException("Record longer than its fields");
+                }
+            }
+        } catch (BufferUnderflowException | DateTimeException e) {
+            throw new IllegalArgumentException("Truncated account", e);
+        }
+        if (username == null) {
+            throw new IllegalArgumentException("Empty account");
+        }
+        return username;
+    }
+
+    private static void checkPolicy(ByteBuffer record, byte type) {
+        if (record.getLong() <= 0) {
+            throw new IllegalArgumentException("Bad policy identifier");
+        }
+        record.get();
+        record.getFloat();
+        LocalDate.ofEpochDay(record.getLong());
+        LocalDate.ofEpochDay(record.getLong());
+        record.getInt();
+        if (type == ADD_HOME) {
+            getString(record);
+            getString(record);
+            getString(record);
+            record.getFloat();
+            record.getFloat();
+        } else {
+            record.getInt();
+            getString(record);
+            getString(record);
+            record.getInt();
+        }
+    }
+
+    private static ByteBuffer putRecord(ByteBuffer out, ByteBuffer record) {
+        record.flip();
+        if (out.remaining() < Integer.BYTES + record.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + Integer.BYTES
+                    + record.remaining()));
+            out = larger.put(out.flip());
+        }
+        out.putInt(record.remaining()).put(record);
+        record.clear();
+        return out;
+    }
+
+    private static void putString(ByteBuffer record, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Value too long to journal: " + bytes.length + " bytes");
+        }
+        record.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static void putCredential(ByteBuffer record, Credential credential) {
+        record.putInt(credential.getIterations());
+        record.put((byte) credential.salt().length).put(credential.salt());
+        record.put((byte) credential.hash().length).put(credential.hash());
+    }
+
+    private static Credential getCredential(ByteBuffer record) {
+        int iterations = record.getInt();
+        byte[] salt = new byte[record.get() & 0xFF];
+        record.get(salt);
+        byte[] hash = new byte[record.get() & 0xFF];
+        record.get(hash);
+        return new Credential(iterations, salt, hash);
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Path logPath(Path directory, long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private static TreeMap<Long, Path> generations(Path directory, Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.forEach(path -> {
+                Matcher matcher = pattern.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        }
+        return files;
+    }
+
+    private static void deleteOlderThan(Path directory, long generation) throws IOException {
+        for (Pattern pattern : new Pattern[]{LOG_FILE, SNAPSHOT_FILE}) {
+            for (Path path : generations(directory, pattern).headMap(generation, false).values()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) entries::iterator) {
+                if (path.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * A log file made of fixed-size memory-mapped segments holding length- and checksum-framed records.
+     * A record never spans two segments; the unused tail of a segment is marked as padding.
+     */
+    private static final class LogFile implements Closeable {
+        private final FileChannel channel;
+        // appended to by the writer while the committer forces earlier segments
+        private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+        private long position;
+
+        private LogFile(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        static LogFile open(Path path) throws IOException {
+            return new LogFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE));
+        }
+
+        /**
+         * Appends the record between position zero and the current position of the given buffer.
+         */
+        void append(ByteBuffer record, CRC32C checksum) {
+            int length = record.position();
+            int frameSize = FRAME_HEADER_SIZE + length;
+            int offset = (int) (position % SEGMENT_SIZE);
+            if (offset + frameSize > SEGMENT_SIZE) {
+                if (SEGMENT_SIZE - offset >= Integer.BYTES) {
+                    segment(position).putInt(offset, PADDING);
+                }
+                position += SEGMENT_SIZE - offset;
+                offset = 0;
+            }
+
+            checksum.reset();
+            checksum.update(record.array(), 0, length);
+            MappedByteBuffer segment = segment(position);
+            segment.put(offset + FRAME_HEADER_SIZE, record.array(), 0, length);
+            segment.putInt(offset + Integer.BYTES, (int) checksum.getValue());
+            // the length goes last, so a partially written frame reads as the end of the log
+            segment.putInt(offset, length);
+            position += frameSize;
+        }
+
+        /**
+         * Reads every intact record from the start of the file, stopping at the first empty or damaged frame,
+         * and leaves the append position right after the last intact record.
+         */
+        void replay(Consumer<ByteBuffer> sink) throws IOException {
+            long size = channel.size();
+            CRC32C checksum = new CRC32C();
+            position = 0;
+            while (position < size) {
+                int offset = (int) (position % SEGMENT_SIZE);
+                if (SEGMENT_SIZE - offset < FRAME_HEADER_SIZE) {
+                    position += SEGMENT_SIZE - offset;
+                    continue;
+                }
+                MappedByteBuffer segment = segment(position);
+                int length = segment.getInt(offset);
+                if (length == PADDING) {
+                    position += SEGMENT_SIZE - offset;
+                    continue;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE || offset + FRAME_HEADER_SIZE + length > SEGMENT_SIZE) {
+                    break;
+                }
+                ByteBuffer record = segment.slice(offset + FRAME_HEADER_SIZE, length);
+                checksum.reset();
+                checksum.update(record.duplicate());
+                if ((int) checksum.getValue() != segment.getInt(offset + Integer.BYTES)) {
+                    break;
+                }
+                sink.accept(record);
+                position += FRAME_HEADER_SIZE + length;
+            }
+        }
+
+        void force(long from, long to) {
+            for (long start = from; start < to; ) {
+                int index = (int) (start / SEGMENT_SIZE);
+                int offset = (int) (start % SEGMENT_SIZE);
+                long segmentEnd = (long) (index + 1) * SEGMENT_SIZE;
+                long end = Math.min(to, segmentEnd);
+                segments.get(index).force(offset, (int) (end - start));
+                start = end;
+            }
+        }
+
+        private MappedByteBuffer segment(long at) {
+            int index = (int) (at / SEGMENT_SIZE);
+            try {
+                while (segments.size() <= index) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                            (long) segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map journal segment " + index, e);
+            }
+            return segments.get(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Deduplicates the small set of attribute values (heating types, locations, vehicle makes and models)
+     * repeated across millions of recovered policies, so each distinct value is decoded and stored only once.
+     * A value is looked up by hashing its encoded bytes in place; colliding values simply replace each other.
+     */
+    private static final class StringTable {
+        private static final int SLOTS = 4096;
+
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+
+        String get(ByteBuffer record) {
+            int length = record.getShort() & 0xFFFF;
+            int start = record.position();
+            int hash = length;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + record.get(start + i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+
+            byte[] key = keys[slot];
+            if (key != null && key.length == length && matches(record, start, key)) {
+                record.position(start + length);
+                return values[slot];
+            }
+
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            keys[slot] = bytes;
+            values[slot] = value;
+            return value;
+        }
+
+        private static boolean matches(ByteBuffer record, int start, byte[] key) {
+            for (int i = 0; i < key.length; i++) {
+                if (record.get(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
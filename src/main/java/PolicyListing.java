@@ -0,0 +1,169 @@
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The {@code PolicyListing} class pages through one user's policies. A new listing returns every policy, a page of
+ * {@link #DEFAULT_PAGE_SIZE} at a time; each method narrows it further and returns the same listing:
+ * <pre>
+ * long cursor = PolicyListing.NO_CURSOR;
+ * do {
+ *     cursor = user.listPolicies().auto().active().pageSize(100).nextPage(cursor, page);
+ *     ...
+ * } while (cursor != PolicyListing.NO_CURSOR);
+ * </pre>
+ * A cursor is the identifier of the last policy returned, and the next page starts after that policy, so
+ * policies added, canceled or removed between pages never shift later pages: no policy is skipped or returned
+ * twice. Pages are found by binary search, since a user's policies are kept in ascending identifier order.
+ * Nothing is copied except the policies of the page itself.
+ */
+public class PolicyListing {
+    /**
+     * The number of policies per page unless {@link #pageSize(int)} says otherwise.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * The cursor of the first page, also returned when no page follows.
+     */
+    public static final long NO_CURSOR = 0;
+
+    private final User user;
+    private Boolean home;
+    private Boolean active;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    PolicyListing(User user) {
+        this.user = user;
+    }
+
+    /**
+     * Lists home policies only.
+     *
+     * @return This listing.
+     */
+    public PolicyListing home() {
+        home = true;
+        return this;
+    }
+
+    /**
+     * Lists auto policies only.
+     *
+     * @return This listing.
+     */
+    public PolicyListing auto() {
+        home = false;
+        return this;
+    }
+
+    /**
+     * Lists active policies only.
+     *
+     * @return This listing.
+     */
+    public PolicyListing active() {
+        active = true;
+        return this;
+    }
+
+    /**
+     * Lists canceled policies only.
+     *
+     * @return This listing.
+     */
+    public PolicyListing canceled() {
+        active = false;
+        return this;
+    }
+
+    /**
+     * Sets the largest number of policies per page.
+     *
+     * @param pageSize The page size, at least 1.
+     * @return This listing.
+     * @throws IllegalArgumentException If the page size is not positive.
+     */
+    public PolicyListing pageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Fetches the page following a cursor.
+     *
+     * @param cursor The cursor returned with the previous page, or {@link #NO_CURSOR} for the first page.
+     * @param page   The list receiving the page's policies, in order; it is cleared first, so one list can be
+     *               reused for every page.
+     * @return The cursor of the next page, or {@link #NO_CURSOR} if this is the last page.
+     */
+    public long nextPage(long cursor, List<Policy> page) {
+        page.clear();
+        synchronized (user) {
+            List<Policy> policies = user.getPolicies();
+            for (int i = firstAfter(policies, cursor); i < policies.size(); i++) {
+                Policy policy = policies.get(i);
+                if (!matches(policy)) {
+                    continue;
+                }
+                if (page.size() == pageSize) {
+                    return page.get(pageSize - 1).getPolicyId();
+                }
+                page.add(policy);
+            }
+        }
+        return NO_CURSOR;
+    }
+
+    private boolean matches(Policy policy) {
+        return (home == null || home == policy instanceof HomePolicy)
+                && (active == null || active == policy.isActive());
+    }
+
+    /**
+     * Finds the position of the first policy whose identifier is greater than the cursor.
+     */
+    private static int firstAfter(List<Policy> policies, long cursor) {
+        int low = 0;
+        int high = policies.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (policies.get(middle).getPolicyId() <= cursor) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Appends a date in ISO format, as {@link LocalDate#toString()} does for four-digit years, without creating a
+     * string.
+     */
+    static void appendDate(StringBuilder out, LocalDate date) {
+        out.append(date.getYear()).append('-');
+        appendTwoDigits(out, date.getMonthValue());
+        out.append('-');
+        appendTwoDigits(out, date.getDayOfMonth());
+    }
+
+    /**
+     * Appends an amount rounded half up to two decimals, as {@code String.format("%.2f", amount)} does in an
+     * English locale, without creating a string. Multiplying a {@code float} by 100 is exact in {@code double}.
+     */
+    static void appendAmount(StringBuilder out, float amount) {
+        long cents = Math.round(Math.abs((double) amount) * 100);
+        if (amount < 0 && cents != 0) {
+            out.append('-');
+        }
+        out.append(cents / 100).append('.');
+        appendTwoDigits(out, (int) (cents % 100));
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
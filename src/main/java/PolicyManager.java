@@ -1,10 +1,18 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The PolicyManager class handles the creation and management of insurance policies.
  * It allows users to start new policies, calculate premiums, and view or cancel existing policies.
  */
 public class PolicyManager {
+    private static final LatencyHistogram createHomeLatency = Metrics.histogram("policy.create.home");
+    private static final LatencyHistogram createAutoLatency = Metrics.histogram("policy.create.auto");
+    private static final LatencyHistogram viewLatency = Metrics.histogram("policy.view");
+    private static final LongAdder cancellations = Metrics.counter("policy.cancel");
 
     /**
      * Starts a new insurance policy for a user.
@@ -12,77 +20,71 @@ public class PolicyManager {
      *
      * @param user The user creating the policy.
      * @param scanner The scanner used to read input from the user.
+     * @param out The stream the prompts and results are written to.
      */
-    public static void startNewPolicy(User user, Scanner scanner) {
-        System.out.println("\n--- Start a New Policy ---");
-        System.out.println("1. Home Insurance");
-        System.out.println("2. Auto Insurance");
-        System.out.println("3. Back");
-        System.out.print("Choose an option: ");
+    public static void startNewPolicy(User user, Scanner scanner, PrintStream out) {
+        out.println("\n--- Start a New Policy ---");
+        out.println("1. Home Insurance");
+        out.println("2. Auto Insurance");
+        out.println("3. Back");
+        out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
         scanner.nextLine();
 
         if (choice == 1) {
-            System.out.print("Enter home age (in years): ");
+            out.print("Enter home age (in years): ");
             int homeAge = scanner.nextInt();
             scanner.nextLine();
 
-            System.out.print("Enter dwelling type(townhouse, apartment, etc): ");
+            out.print("Enter dwelling type(townhouse, apartment, etc): ");
             String dwellingType = scanner.nextLine();
 
-            System.out.print("Enter heating type (oil, wood, or other) : ");
+            out.print("Enter heating type (oil, wood, or other) : ");
             String heatingType = scanner.nextLine();
 
-            System.out.print("Enter location (urban/rural): ");
+            out.print("Enter location (urban/rural): ");
             String location = scanner.nextLine();
 
-            System.out.print("Enter home value: ");
+            out.print("Enter home value: ");
             float homeValue = scanner.nextFloat();
             scanner.nextLine();
 
-            System.out.print("Enter liability limit ($1M or $2M): ");
+            out.print("Enter liability limit ($1M or $2M): ");
             String liabilityInput = scanner.nextLine().trim();
 
             // set liability limit based on user input
             float liabilityLimit = liabilityInput.equalsIgnoreCase("$2M") || liabilityInput.equals("2M") ? 2_000_000f : 1_000_000f;
 
-            // create HomePolicy and add it to the user's policies
-            HomePolicy policy = new HomePolicy(homeAge, dwellingType, heatingType, location, homeValue, liabilityLimit);
-            user.addPolicy(policy);
-            policy.calculatePremium(user);
-            System.out.println("Home policy created successfully!");
+            addHomePolicy(user, homeAge, dwellingType, heatingType, location, homeValue, liabilityLimit);
+            out.println("Home policy created successfully!");
         }
         else if (choice == 2) {
-            System.out.println("Enter model year of your car: ");
+            out.println("Enter model year of your car: ");
             int year = scanner.nextInt();
             scanner.nextLine();
 
-            System.out.println("Enter vehicle make: ");
+            out.println("Enter vehicle make: ");
             String make = scanner.next();
 
-            System.out.println("Enter vehicle model: ");
+            out.println("Enter vehicle model: ");
             String model = scanner.next();
 
-            System.out.println("Enter driver's age: ");
+            out.println("Enter driver's age: ");
             int driverAge = scanner.nextInt();
             scanner.nextLine();
 
-            System.out.println("How many accidents in the last 5 years: ");
+            out.println("How many accidents in the last 5 years: ");
             int accidentCount = scanner.nextInt();
             scanner.nextLine();
 
-            // create Vehicle and AutoPolicy instances, then add it to the user's policies
-            Vehicle vehicle = new Vehicle(make, model, year);
-            AutoPolicy autoPolicy = new AutoPolicy(driverAge, accidentCount, vehicle);
-            user.addPolicy(autoPolicy);
-            autoPolicy.calculatePremium(user);
-            System.out.println("Auto policy created successfully!");
+            addAutoPolicy(user, driverAge, accidentCount, new Vehicle(make, model, year));
+            out.println("Auto policy created successfully!");
         } else if (choice == 3) {
-            System.out.println("Returning to the main menu.");
+            out.println("Returning to the main menu.");
         }
         else {
-            System.out.println("Invalid choice, please try again.");
+            out.println("Invalid choice, please try again.");
         }
     }
 
@@ -90,105 +92,209 @@ public class PolicyManager {
      * Calculates a home insurance premium based on user input.
      *
      * @param scanner The scanner used to read input from the user.
+     * @param out The stream the prompts and results are written to.
      * @return The calculated home insurance premium.
      */
-    public static float calculateHomePremium(Scanner scanner) {
-        System.out.println("\n--- Home Insurance Quote ---");
-        System.out.print("Enter home value: ");
+    public static float calculateHomePremium(Scanner scanner, PrintStream out) {
+        out.println("\n--- Home Insurance Quote ---");
+        out.print("Enter home value: ");
         float homeValue = scanner.nextFloat();
-        System.out.print("Enter home age (in years): ");
+        out.print("Enter home age (in years): ");
         int homeAge = scanner.nextInt();
         scanner.nextLine();
-        System.out.print("Enter heating type (oil/wood/other): ");
+        out.print("Enter heating type (oil/wood/other): ");
         String heatingType = scanner.nextLine();
-        System.out.print("Enter location (urban/rural): ");
+        out.print("Enter location (urban/rural): ");
         String location = scanner.nextLine();
-        System.out.print("Enter liability limit (1000000 or 2000000): ");
+        out.print("Enter liability limit (1000000 or 2000000): ");
         float liabilityLimit = scanner.nextFloat();
 
-        // creates a temporary HomePolicy object to calculate the quote
-        HomePolicy tempPolicy = new HomePolicy(homeAge, "standalone", heatingType, location, homeValue, liabilityLimit);
-        tempPolicy.calculatePremium(null);
-
-        return tempPolicy.getTotalPremium();
+        // equivalent quotes are answered from the quote cache instead of being priced again
+        return QuoteCache.shared().priceHome(new HomeQuoteInput(homeValue, homeAge, heatingType, location, liabilityLimit));
     }
 
     /**
      * Calculates an auto insurance premium based on user input.
      *
      * @param scanner The scanner used to read input from the user.
+     * @param out The stream the prompts and results are written to.
      * @return The calculated auto insurance premium.
      */
-    public static float calculateAutoPremium(Scanner scanner) {
-        System.out.println("\n--- Auto Insurance Quote ---");
-        System.out.print("Enter driver age: ");
+    public static float calculateAutoPremium(Scanner scanner, PrintStream out) {
+        out.println("\n--- Auto Insurance Quote ---");
+        out.print("Enter driver age: ");
         int driverAge = scanner.nextInt();
-        System.out.print("Enter number of accidents in last 5 years: ");
+        out.print("Enter number of accidents in last 5 years: ");
         int accidentCount = scanner.nextInt();
         scanner.nextLine();
-        System.out.print("Enter vehicle make: ");
+        out.print("Enter vehicle make: ");
         String make = scanner.nextLine();
-        System.out.print("Enter vehicle model: ");
+        out.print("Enter vehicle model: ");
         String model = scanner.nextLine();
-        System.out.print("Enter vehicle year: ");
+        out.print("Enter vehicle year: ");
         int year = scanner.nextInt();
 
-        // creates a temporary AutoPolicy object to calculate the quote
-        AutoPolicy tempPolicy = new AutoPolicy(driverAge, accidentCount, new Vehicle(make, model, year));
-        tempPolicy.calculatePremium(null);
-
-        return tempPolicy.getTotalPremium();
+        // equivalent quotes are answered from the quote cache instead of being priced again
+        return QuoteCache.shared().priceAuto(new AutoQuoteInput(driverAge, accidentCount, year));
     }
 
     /**
-     * Displays a list of the user's current policies and allows them to cancel one.
+     * Displays the user's policies a page at a time and allows them to cancel one.
+     * Each page is rendered into one reused buffer; the user can move on to the next page or go back.
      *
      * @param user The user whose policies will be displayed.
      * @param scanner The scanner used to read input from the user.
+     * @param out The stream the prompts and results are written to.
      */
-    public static void viewPolicies(User user, Scanner scanner) {
-        System.out.println("\n--- Your Policies ---");
-        if (user.getPolicies().isEmpty()) {
-            System.out.println("You have no active policies.");
+    public static void viewPolicies(User user, Scanner scanner, PrintStream out) {
+        out.println("\n--- Your Policies ---");
+        PolicyListing listing = user.listPolicies();
+        List<Policy> page = new ArrayList<>(PolicyListing.DEFAULT_PAGE_SIZE);
+        StringBuilder text = new StringBuilder(4096);
+        long cursor = listing.nextPage(PolicyListing.NO_CURSOR, page);
+        if (page.isEmpty()) {
+            out.println("You have no active policies.");
             return;
         }
 
-        // display each policy's details
-        for (int i = 0; i < user.getPolicies().size(); i++) {
-            Policy policy = user.getPolicies().get(i);
-
-            System.out.println("\n" + (i + 1) + ". " + policy.getPolicyType() + " Policy");
-            System.out.println("   - Premium: $" + String.format("%.2f", policy.getTotalPremium()));
-            System.out.println("   - Start Date: " + policy.startDate);
-            System.out.println("   - End Date: " + policy.endDate);
-            System.out.println("   - Status: " + (policy.isActive() ? "Active" : "Canceled"));
-            System.out.println("------------------------------------------------------------------------------");
-
-            if (policy instanceof AutoPolicy autoPolicy) {
-                Vehicle vehicle = autoPolicy.getVehicle();
-                System.out.println("   - Vehicle: " + vehicle.getMake() + " " + vehicle.getModel() + " (" + vehicle.getYear() + ")");
-                System.out.println("   - Driver Age: " + autoPolicy.getDriverAge());
-                System.out.println("   - Accidents in Last 5 Years: " + autoPolicy.getAccidentCount());
-            } else if (policy instanceof HomePolicy homePolicy) {
-                System.out.println("   - Home Value: $" + homePolicy.getHomeValue());
-                System.out.println("   - Home Age: " + homePolicy.getHomeAge() + " years");
-                System.out.println("   - Location: " + homePolicy.getLocation());
-                System.out.println("   - Heating Type: " + homePolicy.getHeatingType());
-                System.out.println("   - Liability Limit: $" + homePolicy.getLiabilityLimit());
+        while (true) {
+            // render the page; rendering is timed, waiting for the selection is not
+            long start = System.nanoTime();
+            text.setLength(0);
+            for (int i = 0; i < page.size(); i++) {
+                appendPolicy(text, i + 1, page.get(i));
+            }
+            int nextChoice = cursor != PolicyListing.NO_CURSOR ? page.size() + 1 : -1;
+            if (nextChoice > 0) {
+                text.append('\n').append(nextChoice).append(". Next page");
             }
+            text.append('\n').append(page.size() + (nextChoice > 0 ? 2 : 1)).append(". Back\n");
+            text.append(nextChoice > 0 ? "Select a policy to cancel, or choose 'Next page' or 'Back': "
+                    : "Select a policy to cancel, or choose 'Back': ");
+            out.append(text);
+            viewLatency.recordSince(start);
+            int choice = scanner.nextInt();
+            scanner.nextLine();
+
+            if (choice > 0 && choice <= page.size()) {
+                // find the policy by its identifier; earlier positions may have changed since the page was shown
+                if (cancelPolicyById(user, page.get(choice - 1).getPolicyId())) {
+                    out.println("Policy removed successfully.");
+                }
+                return;
+            }
+            if (choice != nextChoice) {
+                return;
+            }
+            cursor = listing.nextPage(cursor, page);
         }
+    }
 
-        System.out.println("\n" + (user.getPolicies().size() + 1) + ". Back");
-        System.out.print("Select a policy to cancel, or choose 'Back': ");
-        int choice = scanner.nextInt();
-        scanner.nextLine();
+    /**
+     * Appends the numbered description of one policy, as shown by {@link #viewPolicies(User, Scanner, PrintStream)}.
+     */
+    private static void appendPolicy(StringBuilder text, int number, Policy policy) {
+        text.append('\n').append(number).append(". ").append(policy.getPolicyType()).append(" Policy\n");
+        text.append("   - Premium: $");
+        PolicyListing.appendAmount(text, policy.getTotalPremium());
+        text.append("\n   - Start Date: ");
+        PolicyListing.appendDate(text, policy.getStartDate());
+        text.append("\n   - End Date: ");
+        PolicyListing.appendDate(text, policy.getEndDate());
+        text.append("\n   - Status: ").append(policy.isActive() ? "Active" : "Canceled");
+        text.append("\n------------------------------------------------------------------------------\n");
+
+        if (policy instanceof AutoPolicy autoPolicy) {
+            Vehicle vehicle = autoPolicy.getVehicle();
+            text.append("   - Vehicle: ").append(vehicle.getMake()).append(' ').append(vehicle.getModel())
+                    .append(" (").append(vehicle.getYear()).append(")\n");
+            text.append("   - Driver Age: ").append(autoPolicy.getDriverAge()).append('\n');
+            text.append("   - Accidents in Last 5 Years: ").append(autoPolicy.getAccidentCount()).append('\n');
+        } else if (policy instanceof HomePolicy homePolicy) {
+            text.append("   - Home Value: $").append(homePolicy.getHomeValue()).append('\n');
+            text.append("   - Home Age: ").append(homePolicy.getHomeAge()).append(" years\n");
+            text.append("   - Location: ").append(homePolicy.getLocation()).append('\n');
+            text.append("   - Heating Type: ").append(homePolicy.getHeatingType()).append('\n');
+            text.append("   - Liability Limit: $").append(homePolicy.getLiabilityLimit()).append('\n');
+        }
+    }
 
-        if (choice > 0 && choice <= user.getPolicies().size()) {
-            Policy policyToCancel = user.getPolicies().get(choice - 1);
-            policyToCancel.cancelPolicy();
+    /**
+     * Creates a home policy, prices it for the user and adds it to the user's policies.
+     *
+     * @param user           The user creating the policy.
+     * @param homeAge        The age of the home in years.
+     * @param dwellingType   The type of dwelling (e.g., townhouse, apartment).
+     * @param heatingType    The type of heating used in the home.
+     * @param location       The location of the home (urban/rural).
+     * @param homeValue      The estimated value of the home.
+     * @param liabilityLimit The liability coverage limit.
+     * @return The added policy.
+     */
+    public static HomePolicy addHomePolicy(User user, int homeAge, String dwellingType, String heatingType,
+                                           String location, float homeValue, float liabilityLimit) {
+        long start = System.nanoTime();
+        HomePolicy policy = new HomePolicy(homeAge, dwellingType, heatingType, location, homeValue, liabilityLimit);
+        policy.calculatePremium(user);
+        user.addPolicy(policy);
+        createHomeLatency.recordSince(start);
+        return policy;
+    }
+
+    /**
+     * Creates an auto policy, prices it for the user and adds it to the user's policies.
+     *
+     * @param user          The user creating the policy.
+     * @param driverAge     The age of the driver.
+     * @param accidentCount The number of accidents in the last 5 years.
+     * @param vehicle       The insured vehicle.
+     * @return The added policy.
+     */
+    public static AutoPolicy addAutoPolicy(User user, int driverAge, int accidentCount, Vehicle vehicle) {
+        long start = System.nanoTime();
+        AutoPolicy policy = new AutoPolicy(driverAge, accidentCount, vehicle);
+        policy.calculatePremium(user);
+        user.addPolicy(policy);
+        createAutoLatency.recordSince(start);
+        return policy;
+    }
+
+    /**
+     * Cancels one of the user's policies and removes it from the user's list, re-pricing the user's other
+     * policies once.
+     *
+     * @param user  The user owning the policy.
+     * @param index The position of the policy in the list returned by {@link User#getPolicies()}.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public static void cancelPolicy(User user, int index) {
+        synchronized (user) {
+            Policy policy = user.getPolicies().get(index);
+            RepricingEngine.inTransaction(() -> {
+                policy.cancelPolicy();
+                user.removePolicy(index);
+            });
+        }
+        cancellations.increment();
+    }
 
-            user.getPolicies().remove(choice - 1);
-            System.out.println("Policy removed successfully.");
+    /**
+     * Cancels the user's policy with the given identifier, as {@link #cancelPolicy(User, int)} does. The policy is
+     * looked up and canceled in one step, so a concurrent change to the user's other policies cannot make this
+     * cancel a different policy.
+     *
+     * @param user     The user owning the policy.
+     * @param policyId The identifier of the policy.
+     * @return {@code true} if the policy was canceled, {@code false} if the user has no policy with that identifier.
+     */
+    public static boolean cancelPolicyById(User user, long policyId) {
+        synchronized (user) {
+            int index = user.indexOfPolicy(policyId);
+            if (index < 0) {
+                return false;
+            }
+            cancelPolicy(user, index);
+            return true;
         }
     }
 }
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code PolicyQuery} class describes a search over a {@link PolicyIndex}. A new query matches every indexed
+ * policy; each method narrows it further and returns the same query, so conditions can be chained:
+ * <pre>
+ * index.query().home().active().location("rural").heatingType("oil").homeAgeBetween(51, Integer.MAX_VALUE).list();
+ * </pre>
+ * Conditions are only evaluated by {@link #list()} or {@link #count()}, together and against one consistent
+ * state of the index.
+ */
+public class PolicyQuery {
+    private final PolicyIndex index;
+    private final List<PolicyIndex.Criterion> criteria = new ArrayList<>();
+
+    PolicyQuery(PolicyIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Matches home policies only.
+     *
+     * @return This query.
+     */
+    public PolicyQuery home() {
+        criteria.add((index, result) -> index.restrictToType(result, true));
+        return this;
+    }
+
+    /**
+     * Matches auto policies only.
+     *
+     * @return This query.
+     */
+    public PolicyQuery auto() {
+        criteria.add((index, result) -> index.restrictToType(result, false));
+        return this;
+    }
+
+    /**
+     * Matches active policies only.
+     *
+     * @return This query.
+     */
+    public PolicyQuery active() {
+        criteria.add((index, result) -> index.restrictToActive(result, true));
+        return this;
+    }
+
+    /**
+     * Matches canceled policies only.
+     *
+     * @return This query.
+     */
+    public PolicyQuery canceled() {
+        criteria.add((index, result) -> index.restrictToActive(result, false));
+        return this;
+    }
+
+    /**
+     * Matches home policies with the given heating type.
+     *
+     * @param heatingType The heating type as entered on the policy (e.g., "oil").
+     * @return This query.
+     */
+    public PolicyQuery heatingType(String heatingType) {
+        criteria.add((index, result) -> index.restrictToHeatingType(result, heatingType));
+        return this;
+    }
+
+    /**
+     * Matches home policies in the given location.
+     *
+     * @param location The location (e.g., "rural").
+     * @return This query.
+     */
+    public PolicyQuery location(String location) {
+        criteria.add((index, result) -> index.restrictToLocation(result, location));
+        return this;
+    }
+
+    /**
+     * Matches home policies with the given dwelling type.
+     *
+     * @param dwellingType The dwelling type (e.g., "condo").
+     * @return This query.
+     */
+    public PolicyQuery dwellingType(String dwellingType) {
+        criteria.add((index, result) -> index.restrictToDwellingType(result, dwellingType));
+        return this;
+    }
+
+    /**
+     * Matches auto policies for vehicles of the given make.
+     *
+     * @param make The vehicle make (e.g., "Toyota").
+     * @return This query.
+     */
+    public PolicyQuery make(String make) {
+        criteria.add((index, result) -> index.restrictToMake(result, make));
+        return this;
+    }
+
+    /**
+     * Matches home policies whose home value lies in the given range.
+     *
+     * @param min The lowest home value to match, inclusive.
+     * @param max The highest home value to match, inclusive.
+     * @return This query.
+     */
+    public PolicyQuery homeValueBetween(float min, float max) {
+        criteria.add((index, result) -> index.restrictToHomeValues(result, min, max));
+        return this;
+    }
+
+    /**
+     * Matches home policies whose home age lies in the given range.
+     *
+     * @param min The lowest home age to match, inclusive.
+     * @param max The highest home age to match, inclusive.
+     * @return This query.
+     */
+    public PolicyQuery homeAgeBetween(int min, int max) {
+        criteria.add((index, result) -> index.restrictToHomeAges(result, min, max));
+        return this;
+    }
+
+    /**
+     * Matches auto policies whose driver age lies in the given range.
+     *
+     * @param min The lowest driver age to match, inclusive.
+     * @param max The highest driver age to match, inclusive.
+     * @return This query.
+     */
+    public PolicyQuery driverAgeBetween(int min, int max) {
+        criteria.add((index, result) -> index.restrictToDriverAges(result, min, max));
+        return this;
+    }
+
+    /**
+     * Matches auto policies whose vehicle model year lies in the given range.
+     *
+     * @param min The earliest model year to match, inclusive.
+     * @param max The latest model year to match, inclusive.
+     * @return This query.
+     */
+    public PolicyQuery vehicleYearBetween(int min, int max) {
+        criteria.add((index, result) -> index.restrictToVehicleYears(result, min, max));
+        return this;
+    }
+
+    /**
+     * Runs the query and returns the matching policies in the order they were indexed.
+     *
+     * @return The matching policies.
+     */
+    public List<Policy> list() {
+        return index.list(criteria);
+    }
+
+    /**
+     * Runs the query and returns the number of matching policies.
+     *
+     * @return The match count.
+     */
+    public int count() {
+        return index.count(criteria);
+    }
+}
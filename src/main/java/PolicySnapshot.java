@@ -0,0 +1,436 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.LongStream;
+
+/**
+ * The {@code PolicySnapshot} class is a read-only, fixed-layout binary image of every user and policy, meant to be
+ * memory-mapped and shared by many processes.
+ * <p>
+ * {@link #write(Path, UserRegistry)} stores users and policies as fixed-size little-endian records, with every
+ * string replaced by an index into a string table. {@link #open(Path)} maps the file read-only and checks its
+ * header, which takes milliseconds whatever the size of the book. Fields are then read in place through
+ * {@link UserView} and {@link PolicyView} flyweights; no {@link User} or {@link Policy} objects are built.
+ * Since the mapping is read-only, every process mapping the same file shares one copy of it in the page cache.
+ * <p>
+ * File layout (offsets in bytes, all sections aligned to 64):
+ * <pre>
+ * header   (64)   magic, version, user count, policy count, policy offset, string count,
+ *                 string offset table offset, string data offset
+ * users    (32 each)  first policy index, policy count, username string, active home count, active auto count
+ * policies (64 each)  id, owner index, kind, active, start and end epoch day, total and base premium, then
+ *                     home: age, dwelling, heating, location, value, liability limit, rated heating and location
+ *                     auto: driver age, accident count, make, model, vehicle year
+ * strings  (8 each)   start offset of each string in the string data, plus the end of the data
+ * string data         UTF-8 bytes
+ * </pre>
+ * The file is mapped in segments of 1 GB, so books larger than 2 GB are supported; records never cross a
+ * segment boundary.
+ */
+public class PolicySnapshot {
+    static final int USER_SIZE = 32;
+    static final int POLICY_SIZE = 64;
+    static final byte HOME = 1;
+    static final byte AUTO = 2;
+
+    private static final long MAGIC = 0x5441594C534E4150L; // "TAYLSNAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SECTION_ALIGNMENT = 64;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int PRICING_BATCH = 1 << 16;
+
+    private final MappedByteBuffer[] segments;
+    private final long userCount;
+    private final long policyCount;
+    private final long policiesOffset;
+    private final long stringCount;
+    private final long stringOffsetsOffset;
+    private final long stringDataOffset;
+
+    private PolicySnapshot(MappedByteBuffer[] segments) throws IOException {
+        this.segments = segments;
+        if (segments.length == 0 || segments[0].limit() < HEADER_SIZE || getLong(0) != MAGIC) {
+            throw new IOException("Not a policy snapshot");
+        }
+        if (getInt(8) != VERSION) {
+            throw new IOException("Unsupported policy snapshot version " + getInt(8));
+        }
+        userCount = getLong(16);
+        policyCount = getLong(24);
+        policiesOffset = getLong(32);
+        stringCount = getLong(40);
+        stringOffsetsOffset = getLong(48);
+        stringDataOffset = getLong(56);
+        long size = (long) (segments.length - 1) * (1L << SEGMENT_SHIFT) + segments[segments.length - 1].limit();
+        if (stringOffsetsOffset + 8 * (stringCount + 1) > size || stringDataOffset > size
+                || stringDataOffset + getLong(stringOffsetsOffset + 8 * stringCount) > size
+                || policiesOffset + policyCount * POLICY_SIZE > stringOffsetsOffset) {
+            throw new IOException("Policy snapshot is truncated");
+        }
+    }
+
+    /**
+     * Writes a snapshot of the users registered with {@link AuthManager}.
+     *
+     * @param file The snapshot file to write; it is replaced atomically.
+     * @return The number of policies written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long write(Path file) throws IOException {
+        return write(file, AuthManager.getRegistry());
+    }
+
+    /**
+     * Writes a snapshot of the users of a registry and their policies.
+     * The file is written under a temporary name and moved into place when complete, so readers never map
+     * a partly written snapshot.
+     *
+     * @param file     The snapshot file to write; it is replaced atomically.
+     * @param registry The registry to write.
+     * @return The number of policies written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long write(Path file, UserRegistry registry) throws IOException {
+        List<User> users = new ArrayList<>(registry.users());
+        long policiesOffset = align(HEADER_SIZE + (long) users.size() * USER_SIZE);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long policyCount = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SectionWriter userSection = new SectionWriter(channel, HEADER_SIZE);
+            SectionWriter policySection = new SectionWriter(channel, policiesOffset);
+            StringTable strings = new StringTable();
+            for (int userIndex = 0; userIndex < users.size(); userIndex++) {
+                User user = users.get(userIndex);
+                List<Policy> policies = user.copyPolicies();
+                int activeHome = 0;
+                int activeAuto = 0;
+                for (Policy policy : policies) {
+                    if (policy.isActive()) {
+                        if (policy instanceof HomePolicy) {
+                            activeHome++;
+                        } else if (policy instanceof AutoPolicy) {
+                            activeAuto++;
+                        }
+                    }
+                }
+                userSection.reserve(USER_SIZE)
+                        .putLong(policyCount)
+                        .putInt(policies.size())
+                        .putInt(strings.add(user.getUsername(), false))
+                        .putInt(activeHome)
+                        .putInt(activeAuto)
+                        .putLong(0);
+                for (Policy policy : policies) {
+                    encodePolicy(policySection.reserve(POLICY_SIZE), policy, userIndex, strings);
+                    policyCount++;
+                }
+            }
+            userSection.flush();
+            policySection.flush();
+
+            long stringOffsetsOffset = align(policySection.position());
+            long stringDataOffset = align(stringOffsetsOffset + 8L * (strings.size() + 1));
+            SectionWriter offsetSection = new SectionWriter(channel, stringOffsetsOffset);
+            SectionWriter dataSection = new SectionWriter(channel, stringDataOffset);
+            long dataSize = 0;
+            for (String value : strings.values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                offsetSection.reserve(8).putLong(dataSize);
+                dataSection.put(bytes);
+                dataSize += bytes.length;
+            }
+            offsetSection.reserve(8).putLong(dataSize);
+            offsetSection.flush();
+            dataSection.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(VERSION).putInt(0)
+                    .putLong(users.size()).putLong(policyCount).putLong(policiesOffset)
+                    .putLong(strings.size()).putLong(stringOffsetsOffset).putLong(stringDataOffset)
+                    .flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return policyCount;
+    }
+
+    /**
+     * Maps a snapshot file. The mapping stays valid until the snapshot is garbage collected.
+     *
+     * @param file The snapshot file.
+     * @return The mapped snapshot.
+     * @throws IOException If the file cannot be mapped or is not a complete snapshot.
+     */
+    public static PolicySnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, 1L << SEGMENT_SHIFT));
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new PolicySnapshot(segments);
+        }
+    }
+
+    /**
+     * Gets the number of users in the snapshot.
+     *
+     * @return The user count.
+     */
+    public long getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Gets the number of policies in the snapshot.
+     *
+     * @return The policy count.
+     */
+    public long getPolicyCount() {
+        return policyCount;
+    }
+
+    /**
+     * Creates a flyweight for reading users. A flyweight is cheap, not thread-safe, and can be moved to any user;
+     * use one per thread.
+     *
+     * @return A user flyweight positioned on the first user.
+     */
+    public UserView users() {
+        return new UserView(this);
+    }
+
+    /**
+     * Creates a flyweight for reading policies. A flyweight is cheap, not thread-safe, and can be moved to any
+     * policy; use one per thread.
+     *
+     * @return A policy flyweight positioned on the first policy.
+     */
+    public PolicyView policies() {
+        return new PolicyView(this);
+    }
+
+    /**
+     * Prices every active policy in parallel, as of the given year, reading rating inputs straight from the
+     * mapping. Each premium is computed as its policy's {@code calculatePremium} would, with the multi-policy
+     * discount taken from the owner's active policies at the time of the snapshot.
+     *
+     * @param currentYear The year vehicle ages are computed from.
+     * @return The sum of the premiums.
+     */
+    public double priceActivePolicies(int currentYear) {
+        DoubleAdder total = new DoubleAdder();
+        long batches = (policyCount + PRICING_BATCH - 1) / PRICING_BATCH;
+        LongStream.range(0, batches).parallel().forEach(batch -> {
+            PolicyView policy = policies();
+            long end = Math.min(policyCount, (batch + 1) * PRICING_BATCH);
+            double sum = 0;
+            for (long i = batch * PRICING_BATCH; i < end; i++) {
+                if (policy.moveTo(i).isActive()) {
+                    sum += policy.ratePremium(currentYear);
+                }
+            }
+            total.add(sum);
+        });
+        return total.sum();
+    }
+
+    /**
+     * Maps a snapshot and prices its active policies, reporting how long each step took.
+     *
+     * @param args {@code file}: the snapshot to read.
+     * @throws IOException If the snapshot cannot be mapped.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PolicySnapshot <file>");
+            return;
+        }
+        long start = System.nanoTime();
+        PolicySnapshot snapshot = open(Path.of(args[0]));
+        System.out.printf("Mapped %,d users and %,d policies in %.1f ms%n", snapshot.getUserCount(),
+                snapshot.getPolicyCount(), (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        double premium = snapshot.priceActivePolicies(RatingClock.current().currentYear());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Priced active policies in %.2f s (%,.0f policies/s), total premium %,.2f%n",
+                seconds, snapshot.getPolicyCount() / seconds, premium);
+    }
+
+    long policyOffset(long index) {
+        return policiesOffset + index * POLICY_SIZE;
+    }
+
+    long userOffset(long index) {
+        return HEADER_SIZE + index * USER_SIZE;
+    }
+
+    String string(int id) {
+        if (id < 0 || id >= stringCount) {
+            throw new IndexOutOfBoundsException("String " + id + " of " + stringCount);
+        }
+        long start = stringDataOffset + getLong(stringOffsetsOffset + 8L * id);
+        int length = (int) (stringDataOffset + getLong(stringOffsetsOffset + 8L * id + 8) - start);
+        byte[] bytes = new byte[length];
+        MappedByteBuffer segment = segments[(int) (start >>> SEGMENT_SHIFT)];
+        int offset = (int) (start & SEGMENT_MASK);
+        if (offset + length <= segment.limit()) {
+            segment.get(offset, bytes);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = getByte(start + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    byte getByte(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    float getFloat(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getFloat((int) (position & SEGMENT_MASK));
+    }
+
+    private static void encodePolicy(ByteBuffer record, Policy policy, int ownerIndex, StringTable strings) {
+        int start = record.position();
+        record.putLong(policy.getPolicyId())
+                .putInt(ownerIndex)
+                .put(policy instanceof HomePolicy ? HOME : AUTO)
+                .put((byte) (policy.isActive() ? 1 : 0))
+                .putShort((short) 0)
+                .putInt((int) policy.getStartDate().toEpochDay())
+                .putInt((int) policy.getEndDate().toEpochDay())
+                .putFloat(policy.getTotalPremium())
+                .putFloat(policy.basePremium);
+        if (policy instanceof HomePolicy home) {
+            record.putInt(home.getHomeAge())
+                    .putInt(strings.add(home.getDwellingType(), true))
+                    .putInt(strings.add(home.getHeatingType(), true))
+                    .putInt(strings.add(home.getLocation(), true))
+                    .putFloat(home.getHomeValue())
+                    .putFloat(home.getLiabilityLimit())
+                    .put((byte) home.getRatedHeatingType().ordinal())
+                    .put((byte) home.getRatedLocation().ordinal());
+        } else if (policy instanceof AutoPolicy auto) {
+            Vehicle vehicle = auto.getVehicle();
+            record.putInt(auto.getDriverAge())
+                    .putInt(auto.getAccidentCount())
+                    .putInt(strings.add(vehicle.getMake(), true))
+                    .putInt(strings.add(vehicle.getModel(), true))
+                    .putInt(vehicle.getYear());
+        }
+        while (record.position() < start + POLICY_SIZE) {
+            record.put((byte) 0);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + SECTION_ALIGNMENT - 1) & -SECTION_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Buffers sequential writes to one section of the file.
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;
+
+        SectionWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.flushed = start;
+        }
+
+        ByteBuffer reserve(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, reserve(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            writeFully(channel, buffer, flushed);
+            flushed += length;
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Assigns string indexes. Attribute values repeat and are stored once; usernames are unique and are not
+     * looked up.
+     */
+    private static final class StringTable {
+        final List<String> values = new ArrayList<>();
+        final Map<String, Integer> ids = new HashMap<>();
+
+        int add(String value, boolean shared) {
+            if (!shared) {
+                values.add(value);
+                return values.size() - 1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The {@code PolicyStore} class keeps a portfolio of policies in columnar (struct-of-arrays) form.
+ * Each policy occupies one row across a set of primitive arrays, with dates stored as epoch days. Heating type
+ * and location are stored as the byte ordinals of the {@link HeatingType} and {@link LocationType} they are rated
+ * as, so spellings that rate alike share a code; dwelling types and vehicle makes and models are free text and
+ * stored as dictionary-encoded codes. Rows read back with {@link #getPolicy(int)} carry the normalized heating type
+ * and location, which rate exactly as the original text did.
+ * <p>
+ * Portfolio-wide aggregates run as plain loops over primitive arrays instead of walking policy objects,
+ * and {@link Policy} views can still be created for individual rows on demand.
+ * The store is not thread-safe; it is intended to be filled by a single writer and then scanned.
+ */
+public class PolicyStore {
+    public static final byte TYPE_HOME = 0;
+    public static final byte TYPE_AUTO = 1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final HeatingType[] HEATING_TYPES = HeatingType.values();
+    private static final LocationType[] LOCATIONS = LocationType.values();
+
+    private final StringDictionary dwellingTypes = new StringDictionary(Integer.MAX_VALUE);
+    private final StringDictionary vehicleMakes = new StringDictionary(Integer.MAX_VALUE);
+    private final StringDictionary vehicleModels = new StringDictionary(Integer.MAX_VALUE);
+
+    private int size;
+
+    // columns shared by all policies
+    private byte[] policyType;
+    private byte[] active;
+    private float[] totalPremium;
+    private long[] startDay;
+    private long[] endDay;
+
+    // home policy columns
+    private int[] homeAge;
+    private float[] homeValue;
+    private float[] liabilityLimit;
+    private byte[] heatingCode;
+    private byte[] locationCode;
+    private int[] dwellingCode;
+
+    // auto policy columns
+    private int[] driverAge;
+    private int[] accidentCount;
+    private int[] vehicleYear;
+    private int[] makeCode;
+    private int[] modelCode;
+
+    /**
+     * Constructs an empty store with a default initial capacity.
+     */
+    public PolicyStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty store sized for the given number of policies.
+     *
+     * @param initialCapacity The number of rows to allocate up front.
+     */
+    public PolicyStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        policyType = new byte[capacity];
+        active = new byte[capacity];
+        totalPremium = new float[capacity];
+        startDay = new long[capacity];
+        endDay = new long[capacity];
+        homeAge = new int[capacity];
+        homeValue = new float[capacity];
+        liabilityLimit = new float[capacity];
+        heatingCode = new byte[capacity];
+        locationCode = new byte[capacity];
+        dwellingCode = new int[capacity];
+        driverAge = new int[capacity];
+        accidentCount = new int[capacity];
+        vehicleYear = new int[capacity];
+        makeCode = new int[capacity];
+        modelCode = new int[capacity];
+    }
+
+    /**
+     * Copies a policy into a new row of the store.
+     *
+     * @param policy The policy to add.
+     * @return The row index assigned to the policy.
+     * @throws IllegalArgumentException If the policy is of an unsupported type.
+     */
+    public int add(Policy policy) {
+        ensureCapacity(size + 1);
+        int row = size;
+
+        active[row] = (byte) (policy.isActive() ? 1 : 0);
+        totalPremium[row] = policy.getTotalPremium();
+        startDay[row] = policy.startDate.toEpochDay();
+        endDay[row] = policy.endDate.toEpochDay();
+
+        if (policy instanceof HomePolicy homePolicy) {
+            policyType[row] = TYPE_HOME;
+            homeAge[row] = homePolicy.getHomeAge();
+            homeValue[row] = homePolicy.getHomeValue();
+            liabilityLimit[row] = homePolicy.getLiabilityLimit();
+            heatingCode[row] = (byte) homePolicy.getRatedHeatingType().ordinal();
+            locationCode[row] = (byte) homePolicy.getRatedLocation().ordinal();
+            dwellingCode[row] = dwellingTypes.encode(homePolicy.getDwellingType());
+        } else if (policy instanceof AutoPolicy autoPolicy) {
+            policyType[row] = TYPE_AUTO;
+            Vehicle vehicle = autoPolicy.getVehicle();
+            driverAge[row] = autoPolicy.getDriverAge();
+            accidentCount[row] = autoPolicy.getAccidentCount();
+            vehicleYear[row] = vehicle.getYear();
+            makeCode[row] = vehicleMakes.encode(vehicle.getMake());
+            modelCode[row] = vehicleModels.encode(vehicle.getModel());
+        } else {
+            throw new IllegalArgumentException("Unsupported policy type: " + policy.getPolicyType());
+        }
+
+        size++;
+        return row;
+    }
+
+    /**
+     * Adds every policy held by the given user.
+     *
+     * @param user The user whose policies are added.
+     */
+    public void addAll(User user) {
+        for (Policy policy : user.copyPolicies()) {
+            add(policy);
+        }
+    }
+
+    /**
+     * Creates a {@link Policy} object holding the values stored in the given row.
+     * The returned policy is a detached copy; changes to it are not written back to the store.
+     *
+     * @param row The row index.
+     * @return A {@link HomePolicy} or {@link AutoPolicy} for the row.
+     */
+    public Policy getPolicy(int row) {
+        checkRow(row);
+        Policy policy;
+        if (policyType[row] == TYPE_HOME) {
+            policy = new HomePolicy(homeAge[row], dwellingTypes.decode(dwellingCode[row]),
+                    HEATING_TYPES[heatingCode[row]].name().toLowerCase(Locale.ROOT),
+                    LOCATIONS[locationCode[row]].name().toLowerCase(Locale.ROOT), homeValue[row], liabilityLimit[row]);
+        } else {
+            Vehicle vehicle = new Vehicle(vehicleMakes.decode(makeCode[row]), vehicleModels.decode(modelCode[row]),
+                    vehicleYear[row]);
+            policy = new AutoPolicy(driverAge[row], accidentCount[row], vehicle);
+        }
+        policy.totalPremium = totalPremium[row];
+        policy.startDate = LocalDate.ofEpochDay(startDay[row]);
+        policy.endDate = LocalDate.ofEpochDay(endDay[row]);
+        policy.isActive = active[row] != 0;
+        return policy;
+    }
+
+    /**
+     * Marks the policy in the given row as canceled.
+     *
+     * @param row The row index.
+     */
+    public void cancel(int row) {
+        checkRow(row);
+        active[row] = 0;
+    }
+
+    /**
+     * Returns the number of policies in the store.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the policy type code of the given row.
+     *
+     * @param row The row index.
+     * @return {@link #TYPE_HOME} or {@link #TYPE_AUTO}.
+     */
+    public byte getPolicyType(int row) {
+        checkRow(row);
+        return policyType[row];
+    }
+
+    /**
+     * Returns the total premium of the given row.
+     *
+     * @param row The row index.
+     * @return The total premium.
+     */
+    public float getTotalPremium(int row) {
+        checkRow(row);
+        return totalPremium[row];
+    }
+
+    /**
+     * Checks whether the policy in the given row is active.
+     *
+     * @param row The row index.
+     * @return {@code true} if the policy is active, {@code false} otherwise.
+     */
+    public boolean isActive(int row) {
+        checkRow(row);
+        return active[row] != 0;
+    }
+
+    /**
+     * Calculates the total premium written across all policies in the store, active or canceled.
+     *
+     * @return The sum of all total premiums.
+     */
+    public double totalPremiumWritten() {
+        float[] premiums = totalPremium;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += premiums[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Calculates the total premium of active policies only.
+     *
+     * @return The sum of total premiums of active policies.
+     */
+    public double activePremium() {
+        float[] premiums = totalPremium;
+        byte[] flags = active;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += premiums[i] * flags[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the active policies in the store.
+     *
+     * @return The number of active policies.
+     */
+    public int activeCount() {
+        byte[] flags = active;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += flags[i];
+        }
+        return count;
+    }
+
+    /**
+     * Counts the active policies of the given type.
+     *
+     * @param type {@link #TYPE_HOME} or {@link #TYPE_AUTO}.
+     * @return The number of active policies of that type.
+     */
+    public int activeCount(byte type) {
+        byte[] types = policyType;
+        byte[] flags = active;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += (types[i] == type ? 1 : 0) & flags[i];
+        }
+        return count;
+    }
+
+    /**
+     * Counts the active policies whose coverage period includes the given date.
+     *
+     * @param date The date to check coverage on.
+     * @return The number of policies in force on that date.
+     */
+    public int inForceCount(LocalDate date) {
+        long day = date.toEpochDay();
+        long[] starts = startDay;
+        long[] ends = endDay;
+        byte[] flags = active;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += (starts[i] <= day && day < ends[i] ? 1 : 0) & flags[i];
+        }
+        return count;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= policyType.length) {
+            return;
+        }
+        int capacity = Math.max(required, policyType.length * 2);
+        policyType = Arrays.copyOf(policyType, capacity);
+        active = Arrays.copyOf(active, capacity);
+        totalPremium = Arrays.copyOf(totalPremium, capacity);
+        startDay = Arrays.copyOf(startDay, capacity);
+        endDay = Arrays.copyOf(endDay, capacity);
+        homeAge = Arrays.copyOf(homeAge, capacity);
+        homeValue = Arrays.copyOf(homeValue, capacity);
+        liabilityLimit = Arrays.copyOf(liabilityLimit, capacity);
+        heatingCode = Arrays.copyOf(heatingCode, capacity);
+        locationCode = Arrays.copyOf(locationCode, capacity);
+        dwellingCode = Arrays.copyOf(dwellingCode, capacity);
+        driverAge = Arrays.copyOf(driverAge, capacity);
+        accidentCount = Arrays.copyOf(accidentCount, capacity);
+        vehicleYear = Arrays.copyOf(vehicleYear, capacity);
+        makeCode = Arrays.copyOf(makeCode, capacity);
+        modelCode = Arrays.copyOf(modelCode, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for store of size " + size);
+        }
+    }
+}
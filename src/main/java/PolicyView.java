@@ -0,0 +1,327 @@
+import java.time.LocalDate;
+
+/**
+ * The {@code PolicyView} class is a flyweight over the policy records of a {@link PolicySnapshot}.
+ * It reads fields straight from the mapped file; moving it to another policy allocates nothing, and neither do
+ * the numeric getters. String getters decode a new string; the matching {@code Id} getters return the string's
+ * index instead, which is enough to compare or group policies. Home getters may only be called on home policies
+ * and auto getters on auto policies. A view is not thread-safe.
+ */
+public class PolicyView {
+    private static final HeatingType[] HEATING_TYPES = HeatingType.values();
+    private static final LocationType[] LOCATIONS = LocationType.values();
+
+    private final PolicySnapshot snapshot;
+    private long index;
+    private long offset;
+
+    PolicyView(PolicySnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.offset = snapshot.policyOffset(0);
+    }
+
+    /**
+     * Positions the view on a policy.
+     *
+     * @param index The index of the policy, from 0 to {@link PolicySnapshot#getPolicyCount()} - 1.
+     * @return This view.
+     */
+    public PolicyView moveTo(long index) {
+        if (index < 0 || index >= snapshot.getPolicyCount()) {
+            throw new IndexOutOfBoundsException("Policy " + index + " of " + snapshot.getPolicyCount());
+        }
+        this.index = index;
+        this.offset = snapshot.policyOffset(index);
+        return this;
+    }
+
+    /**
+     * Gets the index of the policy the view is on.
+     *
+     * @return The policy index.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the policy identifier.
+     *
+     * @return The policy ID.
+     */
+    public long getPolicyId() {
+        return snapshot.getLong(offset);
+    }
+
+    /**
+     * Gets the index of the user owning the policy.
+     *
+     * @return The owner index, for {@link UserView#moveTo(long)}.
+     */
+    public long getOwnerIndex() {
+        return snapshot.getInt(offset + 8);
+    }
+
+    /**
+     * Checks whether this is a home policy.
+     *
+     * @return {@code true} for a home policy.
+     */
+    public boolean isHome() {
+        return snapshot.getByte(offset + 12) == PolicySnapshot.HOME;
+    }
+
+    /**
+     * Checks whether this is an auto policy.
+     *
+     * @return {@code true} for an auto policy.
+     */
+    public boolean isAuto() {
+        return snapshot.getByte(offset + 12) == PolicySnapshot.AUTO;
+    }
+
+    /**
+     * Gets the policy type, as returned by {@link Policy#getPolicyType()}.
+     *
+     * @return {@code "Home"} or {@code "Auto"}.
+     */
+    public String getPolicyType() {
+        return isHome() ? "Home" : "Auto";
+    }
+
+    /**
+     * Checks whether the policy was active when the snapshot was written.
+     *
+     * @return {@code true} if the policy is active.
+     */
+    public boolean isActive() {
+        return snapshot.getByte(offset + 13) != 0;
+    }
+
+    /**
+     * Gets the first day of the policy term as an epoch day.
+     *
+     * @return The start date as days since 1970-01-01.
+     */
+    public long getStartEpochDay() {
+        return snapshot.getInt(offset + 16);
+    }
+
+    /**
+     * Gets the last day of the policy term as an epoch day.
+     *
+     * @return The end date as days since 1970-01-01.
+     */
+    public long getEndEpochDay() {
+        return snapshot.getInt(offset + 20);
+    }
+
+    /**
+     * Gets the first day of the policy term.
+     *
+     * @return The start date.
+     */
+    public LocalDate getStartDate() {
+        return LocalDate.ofEpochDay(getStartEpochDay());
+    }
+
+    /**
+     * Gets the last day of the policy term.
+     *
+     * @return The end date.
+     */
+    public LocalDate getEndDate() {
+        return LocalDate.ofEpochDay(getEndEpochDay());
+    }
+
+    /**
+     * Gets the premium the policy was priced at.
+     *
+     * @return The total premium.
+     */
+    public float getTotalPremium() {
+        return snapshot.getFloat(offset + 24);
+    }
+
+    /**
+     * Gets the age of the insured home.
+     *
+     * @return The home age in years.
+     */
+    public int getHomeAge() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.getInt(offset + 32);
+    }
+
+    /**
+     * Gets the string index of the dwelling type.
+     *
+     * @return The dwelling type index.
+     */
+    public int getDwellingTypeId() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.getInt(offset + 36);
+    }
+
+    /**
+     * Gets the dwelling type.
+     *
+     * @return The dwelling type.
+     */
+    public String getDwellingType() {
+        return snapshot.string(getDwellingTypeId());
+    }
+
+    /**
+     * Gets the heating type as entered.
+     *
+     * @return The heating type.
+     */
+    public String getHeatingType() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.string(snapshot.getInt(offset + 40));
+    }
+
+    /**
+     * Gets the location as entered.
+     *
+     * @return The location.
+     */
+    public String getLocation() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.string(snapshot.getInt(offset + 44));
+    }
+
+    /**
+     * Gets the value of the insured home.
+     *
+     * @return The home value.
+     */
+    public float getHomeValue() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.getFloat(offset + 48);
+    }
+
+    /**
+     * Gets the liability coverage limit.
+     *
+     * @return The liability limit.
+     */
+    public float getLiabilityLimit() {
+        requireKind(PolicySnapshot.HOME);
+        return snapshot.getFloat(offset + 52);
+    }
+
+    /**
+     * Gets the heating type used for rating.
+     *
+     * @return The normalized heating type.
+     */
+    public HeatingType getRatedHeatingType() {
+        requireKind(PolicySnapshot.HOME);
+        return HEATING_TYPES[snapshot.getByte(offset + 56)];
+    }
+
+    /**
+     * Gets the location used for rating.
+     *
+     * @return The normalized location.
+     */
+    public LocationType getRatedLocation() {
+        requireKind(PolicySnapshot.HOME);
+        return LOCATIONS[snapshot.getByte(offset + 57)];
+    }
+
+    /**
+     * Gets the age of the driver.
+     *
+     * @return The driver age.
+     */
+    public int getDriverAge() {
+        requireKind(PolicySnapshot.AUTO);
+        return snapshot.getInt(offset + 32);
+    }
+
+    /**
+     * Gets the number of accidents in the last 5 years.
+     *
+     * @return The accident count.
+     */
+    public int getAccidentCount() {
+        requireKind(PolicySnapshot.AUTO);
+        return snapshot.getInt(offset + 36);
+    }
+
+    /**
+     * Gets the string index of the vehicle make.
+     *
+     * @return The make index.
+     */
+    public int getMakeId() {
+        requireKind(PolicySnapshot.AUTO);
+        return snapshot.getInt(offset + 40);
+    }
+
+    /**
+     * Gets the vehicle make.
+     *
+     * @return The make.
+     */
+    public String getMake() {
+        return snapshot.string(getMakeId());
+    }
+
+    /**
+     * Gets the string index of the vehicle model.
+     *
+     * @return The model index.
+     */
+    public int getModelId() {
+        requireKind(PolicySnapshot.AUTO);
+        return snapshot.getInt(offset + 44);
+    }
+
+    /**
+     * Gets the vehicle model.
+     *
+     * @return The model.
+     */
+    public String getModel() {
+        return snapshot.string(getModelId());
+    }
+
+    /**
+     * Gets the vehicle model year.
+     *
+     * @return The vehicle year.
+     */
+    public int getVehicleYear() {
+        requireKind(PolicySnapshot.AUTO);
+        return snapshot.getInt(offset + 48);
+    }
+
+    /**
+     * Prices the policy as its {@code calculatePremium} would, without building it. The multi-policy discount
+     * depends on the owner's active policies when the snapshot was written.
+     *
+     * @param currentYear The year vehicle ages are computed from.
+     * @return The premium.
+     */
+    public float ratePremium(int currentYear) {
+        long owner = snapshot.userOffset(getOwnerIndex());
+        if (isHome()) {
+            return HomePolicy.computePremium(snapshot.getFloat(offset + 48), snapshot.getInt(offset + 32),
+                    getRatedHeatingType(), getRatedLocation(), snapshot.getFloat(offset + 52),
+                    snapshot.getInt(owner + 20) > 0);
+        }
+        return AutoPolicy.computePremium(snapshot.getInt(offset + 32), snapshot.getInt(offset + 36),
+                currentYear - snapshot.getInt(offset + 48), snapshot.getInt(owner + 16) > 0);
+    }
+
+    private void requireKind(byte kind) {
+        if (snapshot.getByte(offset + 12) != kind) {
+            throw new IllegalStateException("Policy " + index + " is not a " + (kind == PolicySnapshot.HOME
+                    ? "home" : "auto") + " policy");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Collection;
+
+/**
+ * The {@code PortfolioSummary} class totals the users and active policies of one process, or of several processes
+ * merged together, e.g. the workers behind a {@link ShardRouter}.
+ * <p>
+ * Premiums are summed in whole cents, each policy's premium rounded half up as it is displayed, so merging the
+ * summaries of the workers gives exactly the same totals however the users are spread over them.
+ */
+public class PortfolioSummary {
+    private long users;
+    private long activeHomePolicies;
+    private long activeAutoPolicies;
+    private long homePremiumCents;
+    private long autoPremiumCents;
+
+    /**
+     * Creates an empty summary.
+     */
+    public PortfolioSummary() {
+    }
+
+    /**
+     * Totals the given users and their active policies.
+     *
+     * @param users The users to total, e.g. {@link UserRegistry#users()}.
+     * @return The summary.
+     */
+    public static PortfolioSummary of(Collection<User> users) {
+        PortfolioSummary summary = new PortfolioSummary();
+        for (User user : users) {
+            summary.users++;
+            for (Policy policy : user.copyPolicies()) {
+                if (!policy.isActive()) {
+                    continue;
+                }
+                long cents = Math.round((double) policy.getTotalPremium() * 100);
+                if (policy instanceof HomePolicy) {
+                    summary.activeHomePolicies++;
+                    summary.homePremiumCents += cents;
+                } else {
+                    summary.activeAutoPolicies++;
+                    summary.autoPremiumCents += cents;
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Parses the fields written by {@link #appendTo(StringBuilder)}.
+     *
+     * @param fields The space-separated fields.
+     * @return The summary.
+     * @throws IllegalArgumentException If the fields are malformed.
+     */
+    public static PortfolioSummary parse(String fields) {
+        String[] parts = fields.trim().split(" ");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed portfolio summary: " + fields);
+        }
+        PortfolioSummary summary = new PortfolioSummary();
+        try {
+            summary.users = Long.parseLong(parts[0]);
+            summary.activeHomePolicies = Long.parseLong(parts[1]);
+            summary.activeAutoPolicies = Long.parseLong(parts[2]);
+            summary.homePremiumCents = parseCents(parts[3]);
+            summary.autoPremiumCents = parseCents(parts[4]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed portfolio summary: " + fields, e);
+        }
+        return summary;
+    }
+
+    /**
+     * Adds another summary to this one.
+     *
+     * @param other The summary to add.
+     * @return This summary.
+     */
+    public PortfolioSummary add(PortfolioSummary other) {
+        users += other.users;
+        activeHomePolicies += other.activeHomePolicies;
+        activeAutoPolicies += other.activeAutoPolicies;
+        homePremiumCents += other.homePremiumCents;
+        autoPremiumCents += other.autoPremiumCents;
+        return this;
+    }
+
+    /**
+     * Appends the summary as five space-separated fields: users, active home policies, active auto policies,
+     * home premiums and auto premiums, the amounts with two decimals.
+     *
+     * @param out The builder to append to.
+     */
+    public void appendTo(StringBuilder out) {
+        out.append(users).append(' ').append(activeHomePolicies).append(' ').append(activeAutoPolicies).append(' ');
+        appendCents(out, homePremiumCents);
+        out.append(' ');
+        appendCents(out, autoPremiumCents);
+    }
+
+    /**
+     * Gets the number of users.
+     *
+     * @return The user count.
+     */
+    public long getUsers() {
+        return users;
+    }
+
+    /**
+     * Gets the number of active home policies.
+     *
+     * @return The active home policy count.
+     */
+    public long getActiveHomePolicies() {
+        return activeHomePolicies;
+    }
+
+    /**
+     * Gets the number of active auto policies.
+     *
+     * @return The active auto policy count.
+     */
+    public long getActiveAutoPolicies() {
+        return activeAutoPolicies;
+    }
+
+    /**
+     * Gets the total premium of the active home policies.
+     *
+     * @return The total in cents.
+     */
+    public long getHomePremiumCents() {
+        return homePremiumCents;
+    }
+
+    /**
+     * Gets the total premium of the active auto policies.
+     *
+     * @return The total in cents.
+     */
+    public long getAutoPremiumCents() {
+        return autoPremiumCents;
+    }
+
+    /**
+     * Checks whether another summary has the same totals.
+     *
+     * @param o The object to compare with.
+     * @return {@code true} if all totals are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PortfolioSummary other)) {
+            return false;
+        }
+        return users == other.users && activeHomePolicies == other.activeHomePolicies
+                && activeAutoPolicies == other.activeAutoPolicies && homePremiumCents == other.homePremiumCents
+                && autoPremiumCents == other.autoPremiumCents;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(users) * 31 + Long.hashCode(homePremiumCents + autoPremiumCents);
+    }
+
+    /**
+     * Returns the fields written by {@link #appendTo(StringBuilder)}.
+     *
+     * @return The summary fields.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        appendTo(out);
+        return out.toString();
+    }
+
+    private static void appendCents(StringBuilder out, long cents) {
+        out.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        out.append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    private static long parseCents(String amount) {
+        int point = amount.indexOf('.');
+        if (point < 0 || amount.length() - point != 3) {
+            throw new NumberFormatException("Not an amount with two decimals: " + amount);
+        }
+        return Long.parseLong(amount.substring(0, point)) * 100 + Long.parseLong(amount.substring(point + 1));
+    }
+}
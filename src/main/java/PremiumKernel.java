@@ -0,0 +1,336 @@
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The {@code PremiumKernel} class prices batches of home and auto policies held in primitive arrays,
+ * one array per rating input, several policies per CPU instruction where possible.
+ * <p>
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector}, batches are priced with the Vector API
+ * ({@link VectorPremiumKernel}) a full vector of policies at a time, and the remainder of each batch with the
+ * scalar formulas. Without the module, or on hardware without usable vectors, the scalar formulas price the whole
+ * batch. Both paths give exactly the premiums of {@link RatingTables#rateHome} and {@link RatingTables#rateAuto};
+ * {@link #main(String[])} checks this and reports the throughput of each path.
+ * <p>
+ * Heating and location codes are the ordinals of {@link HeatingType} and {@link LocationType}.
+ * A batch is priced with the rating tables that are current when the call starts. While {@link RatingRules} are
+ * installed, batches are priced one policy at a time with the rules instead, which the vectorized path cannot
+ * express.
+ */
+public class PremiumKernel {
+    private static final HeatingType[] HEATING_TYPES = HeatingType.values();
+    private static final LocationType[] LOCATIONS = LocationType.values();
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && VectorPremiumKernel.lanes() > 1;
+
+    /**
+     * Checks whether batches are priced with the Vector API.
+     *
+     * @return {@code true} if the vectorized path is in use, {@code false} if only the scalar path is available.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Prices a batch of home policies.
+     *
+     * @param homeValues    The home values.
+     * @param homeAges      The home ages in years.
+     * @param heatingCodes  The {@link HeatingType} ordinals.
+     * @param locationCodes The {@link LocationType} ordinals.
+     * @param highLiability Whether each policy has the 2,000,000 liability limit rather than 1,000,000.
+     * @param autoDiscount  Whether each owner holds an active auto policy.
+     * @param premiums      The array receiving the premiums.
+     * @param count         The number of policies to price, from index 0 of every array.
+     * @throws IllegalArgumentException If a heating or location code is not a valid ordinal.
+     */
+    public static void priceHome(float[] homeValues, int[] homeAges, int[] heatingCodes, int[] locationCodes,
+                                 boolean[] highLiability, boolean[] autoDiscount, float[] premiums, int count) {
+        checkLength(count, homeValues.length, homeAges.length, heatingCodes.length, locationCodes.length,
+                highLiability.length, autoDiscount.length, premiums.length);
+        RatingTables tables = RatingTables.current();
+        RatingRules rules = RatingRules.current();
+        int priced = VECTORIZED && rules == null ? VectorPremiumKernel.priceHome(tables, homeValues, homeAges,
+                heatingCodes, locationCodes, highLiability, autoDiscount, premiums, count) : 0;
+        priceHomeScalar(tables, rules, homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount,
+                premiums, priced, count);
+    }
+
+    /**
+     * Prices a batch of auto policies.
+     *
+     * @param driverAges     The driver ages.
+     * @param accidentCounts The number of accidents in the last 5 years.
+     * @param vehicleYears   The vehicle model years.
+     * @param currentYear    The year vehicle ages are computed from, e.g. {@link RatingClock#currentYear()}.
+     * @param homeDiscount   Whether each owner holds an active home policy.
+     * @param premiums       The array receiving the premiums.
+     * @param count          The number of policies to price, from index 0 of every array.
+     */
+    public static void priceAuto(int[] driverAges, int[] accidentCounts, int[] vehicleYears, int currentYear,
+                                 boolean[] homeDiscount, float[] premiums, int count) {
+        checkLength(count, driverAges.length, accidentCounts.length, vehicleYears.length, homeDiscount.length,
+                premiums.length);
+        RatingTables tables = RatingTables.current();
+        RatingRules rules = RatingRules.current();
+        int priced = VECTORIZED && rules == null ? VectorPremiumKernel.priceAuto(tables, driverAges, accidentCounts,
+                vehicleYears, currentYear, homeDiscount, premiums, count) : 0;
+        priceAutoScalar(tables, rules, driverAges, accidentCounts, vehicleYears, currentYear, homeDiscount, premiums,
+                priced, count);
+    }
+
+    /**
+     * Prices a batch of home policies with the scalar formulas only. Arguments are as for
+     * {@link #priceHome(float[], int[], int[], int[], boolean[], boolean[], float[], int)}.
+     *
+     * @param homeValues    The home values.
+     * @param homeAges      The home ages in years.
+     * @param heatingCodes  The {@link HeatingType} ordinals.
+     * @param locationCodes The {@link LocationType} ordinals.
+     * @param highLiability Whether each policy has the 2,000,000 liability limit rather than 1,000,000.
+     * @param autoDiscount  Whether each owner holds an active auto policy.
+     * @param premiums      The array receiving the premiums.
+     * @param count         The number of policies to price.
+     */
+    public static void priceHomeScalar(float[] homeValues, int[] homeAges, int[] heatingCodes, int[] locationCodes,
+                                       boolean[] highLiability, boolean[] autoDiscount, float[] premiums, int count) {
+        checkLength(count, homeValues.length, homeAges.length, heatingCodes.length, locationCodes.length,
+                highLiability.length, autoDiscount.length, premiums.length);
+        priceHomeScalar(RatingTables.current(), RatingRules.current(), homeValues, homeAges, heatingCodes,
+                locationCodes, highLiability, autoDiscount, premiums, 0, count);
+    }
+
+    /**
+     * Prices a batch of auto policies with the scalar formulas only. Arguments are as for
+     * {@link #priceAuto(int[], int[], int[], int, boolean[], float[], int)}.
+     *
+     * @param driverAges     The driver ages.
+     * @param accidentCounts The number of accidents in the last 5 years.
+     * @param vehicleYears   The vehicle model years.
+     * @param currentYear    The year vehicle ages are computed from.
+     * @param homeDiscount   Whether each owner holds an active home policy.
+     * @param premiums       The array receiving the premiums.
+     * @param count          The number of policies to price.
+     */
+    public static void priceAutoScalar(int[] driverAges, int[] accidentCounts, int[] vehicleYears, int currentYear,
+                                       boolean[] homeDiscount, float[] premiums, int count) {
+        checkLength(count, driverAges.length, accidentCounts.length, vehicleYears.length, homeDiscount.length,
+                premiums.length);
+        priceAutoScalar(RatingTables.current(), RatingRules.current(), driverAges, accidentCounts, vehicleYears,
+                currentYear, homeDiscount, premiums, 0, count);
+    }
+
+    /**
+     * Checks that the vectorized and scalar paths agree bit for bit and compares their throughput with pricing
+     * one {@link Policy} object at a time. Exits with status 1 on the first mismatch.
+     *
+     * @param args Optional arguments: the batch size (default 1,000,000) and the number of rounds (default 20).
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.println("Vector API " + (VECTORIZED ? "in use, " + VectorPremiumKernel.lanes() + " lanes"
+                : "not available; run with --add-modules jdk.incubator.vector"));
+
+        // default tables, then tables with awkward factors so that rounding differences would show
+        RatingTables defaults = RatingTables.current();
+        Random random = new Random(42);
+        try {
+            for (int tables = 0; tables < 5; tables++) {
+                if (tables > 0) {
+                    RatingTables.install(randomTables(random));
+                }
+                Batch batch = new Batch(count, random);
+                if (!batch.matches()) {
+                    System.exit(1);
+                }
+            }
+        } finally {
+            RatingTables.install(defaults);
+        }
+        System.out.printf("Vectorized and scalar premiums match for 5 rating tables x %,d home and auto policies%n",
+                count);
+
+        Batch batch = new Batch(count, random);
+        for (int warmup = 0; warmup < 3; warmup++) {
+            batch.timeObjects(2);
+            batch.timeScalar(2);
+            batch.timeKernel(2);
+        }
+        System.out.printf("Per-object policies/sec:  %,.0f%n", batch.timeObjects(rounds));
+        System.out.printf("Scalar batch policies/sec: %,.0f%n", batch.timeScalar(rounds));
+        System.out.printf("Kernel policies/sec:      %,.0f%n", batch.timeKernel(rounds));
+    }
+
+    private static void priceHomeScalar(RatingTables tables, RatingRules rules, float[] homeValues, int[] homeAges,
+                                        int[] heatingCodes, int[] locationCodes, boolean[] highLiability,
+                                        boolean[] autoDiscount, float[] premiums, int from, int to) {
+        for (int i = from; i < to; i++) {
+            HeatingType heating = code(HEATING_TYPES, heatingCodes[i], "heating");
+            LocationType location = code(LOCATIONS, locationCodes[i], "location");
+            float liabilityLimit = highLiability[i] ? 2_000_000f : 1_000_000f;
+            premiums[i] = rules != null
+                    ? rules.rateHome(homeValues[i], homeAges[i], heating, location, liabilityLimit, autoDiscount[i])
+                    : tables.rateHome(homeValues[i], homeAges[i], heating, location, liabilityLimit, autoDiscount[i]);
+        }
+    }
+
+    private static void priceAutoScalar(RatingTables tables, RatingRules rules, int[] driverAges,
+                                        int[] accidentCounts, int[] vehicleYears, int currentYear,
+                                        boolean[] homeDiscount, float[] premiums, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int vehicleAge = currentYear - vehicleYears[i];
+            premiums[i] = rules != null
+                    ? rules.rateAuto(driverAges[i], accidentCounts[i], vehicleAge, homeDiscount[i])
+                    : tables.rateAuto(driverAges[i], accidentCounts[i], vehicleAge, homeDiscount[i]);
+        }
+    }
+
+    private static <T> T code(T[] values, int code, String name) {
+        if (code < 0 || code >= values.length) {
+            throw new IllegalArgumentException("Invalid " + name + " code: " + code);
+        }
+        return values[code];
+    }
+
+    private static void checkLength(int count, int... lengths) {
+        for (int length : lengths) {
+            if (length < count) {
+                throw new IllegalArgumentException("Array holds " + length + " entries, need " + count);
+            }
+        }
+    }
+
+    private static RatingTables randomTables(Random random) {
+        Properties properties = new Properties();
+        for (String key : new String[]{"home.liability.2M", "home.age.over25", "home.age.over50", "home.heating.oil",
+                "home.heating.wood", "home.heating.other", "home.location.rural", "home.location.urban",
+                "auto.driver.under25", "auto.accidents.1", "auto.accidents.2", "auto.accidents.3plus",
+                "auto.vehicle.over5", "auto.vehicle.over10", "discount.multiPolicy"}) {
+            properties.setProperty(key, Double.toString(0.5 + 2 * random.nextDouble()));
+        }
+        properties.setProperty("home.basePremium", Float.toString(100 + 900 * random.nextFloat()));
+        properties.setProperty("home.valueThreshold", Float.toString(100_000 + 400_000 * random.nextFloat()));
+        properties.setProperty("home.valueRate", Float.toString(0.01f * random.nextFloat()));
+        properties.setProperty("auto.basePremium", Float.toString(100 + 900 * random.nextFloat()));
+        properties.setProperty("tax", Float.toString(1 + 0.3f * random.nextFloat()));
+        return new RatingTables(properties);
+    }
+
+    /**
+     * A random batch of home and auto inputs, including values on and around every band bound.
+     * The batch size is deliberately not rounded to the vector length, so the scalar tail is exercised too.
+     */
+    private static final class Batch {
+        final int count;
+        final int currentYear = RatingClock.current().currentYear();
+        final float[] homeValues;
+        final int[] homeAges;
+        final int[] heatingCodes;
+        final int[] locationCodes;
+        final boolean[] highLiability;
+        final boolean[] autoDiscount;
+        final int[] driverAges;
+        final int[] accidentCounts;
+        final int[] vehicleYears;
+        final boolean[] homeDiscount;
+        final float[] expected;
+        final float[] actual;
+
+        Batch(int size, Random random) {
+            count = size + 3;
+            homeValues = new float[count];
+            homeAges = new int[count];
+            heatingCodes = new int[count];
+            locationCodes = new int[count];
+            highLiability = new boolean[count];
+            autoDiscount = new boolean[count];
+            driverAges = new int[count];
+            accidentCounts = new int[count];
+            vehicleYears = new int[count];
+            homeDiscount = new boolean[count];
+            expected = new float[count];
+            actual = new float[count];
+            float threshold = RatingTables.current().getHomeValueThreshold();
+            for (int i = 0; i < count; i++) {
+                homeValues[i] = random.nextInt(4) == 0 ? Math.nextAfter(threshold, random.nextBoolean() ? 1 : -1)
+                        + random.nextInt(3) - 1 : 1_000_000 * random.nextFloat();
+                homeAges[i] = random.nextInt(120) - 10;
+                heatingCodes[i] = random.nextInt(HEATING_TYPES.length);
+                locationCodes[i] = random.nextInt(LOCATIONS.length);
+                highLiability[i] = random.nextBoolean();
+                autoDiscount[i] = random.nextBoolean();
+                driverAges[i] = random.nextInt(100) - 5;
+                accidentCounts[i] = random.nextInt(8) - 2;
+                vehicleYears[i] = currentYear - random.nextInt(30) + 3;
+                homeDiscount[i] = random.nextBoolean();
+            }
+        }
+
+        boolean matches() {
+            priceHomeScalar(homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount,
+                    expected, count);
+            priceHome(homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount, actual, count);
+            if (!same("home")) {
+                return false;
+            }
+            priceAutoScalar(driverAges, accidentCounts, vehicleYears, currentYear, homeDiscount, expected, count);
+            priceAuto(driverAges, accidentCounts, vehicleYears, currentYear, homeDiscount, actual, count);
+            return same("auto");
+        }
+
+        private boolean same(String line) {
+            for (int i = 0; i < count; i++) {
+                if (Float.floatToRawIntBits(expected[i]) != Float.floatToRawIntBits(actual[i])) {
+                    System.out.printf("Mismatch in %s policy %d: scalar %s, kernel %s%n", line, i, expected[i],
+                            actual[i]);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double timeObjects(int rounds) {
+            HomePolicy[] homes = new HomePolicy[count];
+            AutoPolicy[] autos = new AutoPolicy[count];
+            for (int i = 0; i < count; i++) {
+                homes[i] = new HomePolicy(homeAges[i], "house", HEATING_TYPES[heatingCodes[i]].name(),
+                        LOCATIONS[locationCodes[i]].name(), homeValues[i], highLiability[i] ? 2_000_000f : 1_000_000f);
+                autos[i] = new AutoPolicy(driverAges[i], accidentCounts[i],
+                        new Vehicle("Make", "Model", vehicleYears[i]));
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (int i = 0; i < count; i++) {
+                    homes[i].calculatePremium(null);
+                    autos[i].calculatePremium(null);
+                }
+            }
+            return policiesPerSecond(rounds, start);
+        }
+
+        double timeScalar(int rounds) {
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                priceHomeScalar(homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount,
+                        actual, count);
+                priceAutoScalar(driverAges, accidentCounts, vehicleYears, currentYear, homeDiscount, actual, count);
+            }
+            return policiesPerSecond(rounds, start);
+        }
+
+        double timeKernel(int rounds) {
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                priceHome(homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount, actual,
+                        count);
+                priceAuto(driverAges, accidentCounts, vehicleYears, currentYear, homeDiscount, actual, count);
+            }
+            return policiesPerSecond(rounds, start);
+        }
+
+        private double policiesPerSecond(int rounds, long start) {
+            return 2.0 * count * rounds * 1_000_000_000.0 / Math.max(System.nanoTime() - start, 1);
+        }
+    }
+}
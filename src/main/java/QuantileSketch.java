@@ -0,0 +1,211 @@
+/**
+ * The {@code QuantileSketch} class summarizes a stream of non-negative values in constant memory and answers
+ * quantile queries with a bounded relative error.
+ * <p>
+ * Values are counted in logarithmic buckets whose bounds grow by a factor of {@code (1 + a) / (1 - a)}, where
+ * {@code a} is the relative accuracy, so every reported quantile is within {@code a} of a value at that rank.
+ * Buckets are allocated only for the range of values actually seen. Two sketches with the same accuracy merge by
+ * adding their bucket counts, which gives the same result in any merge order; parallel producers can therefore
+ * each fill their own sketch and combine them at the end. A sketch is not thread-safe.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // values below this are counted as zero
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private long[] counts = new long[0];
+    private int minIndex;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a sketch with a relative accuracy of {@link #DEFAULT_RELATIVE_ACCURACY}.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param relativeAccuracy The maximum relative error of reported quantiles, between 0 and 1 exclusive.
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value The value; must not be negative.
+     */
+    public void add(double value) {
+        if (!(value >= 0) || value == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("Value must be finite and not negative: " + value);
+        }
+        if (value < MIN_INDEXABLE) {
+            zeroCount++;
+        } else {
+            int index = (int) Math.ceil(Math.log(value) / logGamma);
+            ensureCapacity(index, index);
+            counts[index - minIndex]++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values of another sketch to this one.
+     *
+     * @param other A sketch with the same relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        if (other.counts.length > 0) {
+            ensureCapacity(other.minIndex, other.minIndex + other.counts.length - 1);
+            int shift = other.minIndex - minIndex;
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[shift + i] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Estimates the value at a quantile.
+     *
+     * @param quantile The quantile, from 0 (the minimum) to 1 (the maximum).
+     * @return The estimated value, or {@code NaN} if the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return min;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // the bucket (gamma^(index-1), gamma^index] is represented by the point of equal relative error
+                double estimate = 2 * Math.pow(gamma, minIndex + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return The value count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values added.
+     *
+     * @return The sum.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the values added.
+     *
+     * @return The mean, or {@code NaN} if the sketch is empty.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the smallest value added.
+     *
+     * @return The minimum, or {@code NaN} if the sketch is empty.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest value added.
+     *
+     * @return The maximum, or {@code NaN} if the sketch is empty.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the relative accuracy of reported quantiles.
+     *
+     * @return The relative accuracy.
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Returns a one-line summary with the count, mean and main percentiles.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%,d mean=%.4g p5=%.4g p50=%.4g p95=%.4g p99=%.4g max=%.4g",
+                count, getMean(), quantile(0.05), quantile(0.5), quantile(0.95), quantile(0.99), getMax());
+    }
+
+    /**
+     * Grows the bucket array so that it covers the indexes from {@code low} to {@code high}.
+     */
+    private void ensureCapacity(int low, int high) {
+        if (counts.length == 0) {
+            minIndex = low;
+            counts = new long[high - low + 1];
+            return;
+        }
+        int maxIndex = minIndex + counts.length - 1;
+        if (low >= minIndex && high <= maxIndex) {
+            return;
+        }
+        int newMin = Math.min(low, minIndex);
+        int newMax = Math.max(high, maxIndex);
+        long[] grown = new long[newMax - newMin + 1];
+        System.arraycopy(counts, 0, grown, minIndex - newMin, counts.length);
+        counts = grown;
+        minIndex = newMin;
+    }
+}
@@ -0,0 +1,504 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code QuoteBatcher} class prices quotes from many concurrent callers in micro-batches.
+ * <p>
+ * A caller submits a quote and gets a {@link CompletableFuture} of its premium. One background thread, started
+ * by {@link #start()}, collects the submitted quotes. It waits until either {@code maxBatchSize} quotes are queued
+ * or {@code maxDelayNanos} has passed since the oldest of them arrived. It then prices each batch of home or auto
+ * quotes with one {@link PremiumKernel} call and completes the futures once it no longer holds the batch arrays,
+ * so callbacks run on the batcher thread may submit further quotes. A smaller delay lowers the latency of a
+ * single quote, and a larger one makes bigger batches under load; with a delay of 0, the thread prices whatever
+ * is queued as soon as it wakes.
+ * <p>
+ * Quotes with exactly the same rating inputs are priced once (single-flight): a quote submitted while an
+ * identical one is still waiting or being priced shares its result instead of being queued again. Premiums are
+ * exactly those of {@link QuoteEngine#priceHomeQuote} and {@link QuoteEngine#priceAutoQuote}, priced with the
+ * rating logic that is current when the batch runs.
+ * <p>
+ * Batch, quote and coalescing counts and the time each quote waited are kept for sizing, both per batcher and in
+ * {@link Metrics} as {@code quote.batch}, {@code quote.batch.quotes}, {@code quote.coalesced} and
+ * {@code quote.batch.latency}.
+ */
+public class QuoteBatcher implements Closeable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private static final LongAdder batchesMetric = Metrics.counter("quote.batch");
+    private static final LongAdder quotesMetric = Metrics.counter("quote.batch.quotes");
+    private static final LongAdder coalescedMetric = Metrics.counter("quote.coalesced");
+    private static final LatencyHistogram latencyMetric = Metrics.histogram("quote.batch.latency");
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<QuoteKey, Pending> inFlight = new ConcurrentHashMap<>();
+    private volatile Thread batcher;
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder quotes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile int largestBatch;
+
+    // batch arrays, only used while holding the batcher's lock; futures are completed after releasing it
+    private final List<Pending> homeBatch;
+    private final List<Pending> autoBatch;
+    private final float[] homeValues;
+    private final int[] homeAges;
+    private final int[] heatingCodes;
+    private final int[] locationCodes;
+    private final boolean[] highLiability;
+    private final int[] driverAges;
+    private final int[] accidentCounts;
+    private final int[] vehicleYears;
+    private final boolean[] noDiscount;
+    private final float[] premiums;
+
+    /**
+     * Creates a batcher with {@link #DEFAULT_MAX_BATCH_SIZE} and {@link #DEFAULT_MAX_DELAY_NANOS}. Call
+     * {@link #start()} to start its thread.
+     */
+    public QuoteBatcher() {
+        this(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_NANOS);
+    }
+
+    /**
+     * Creates a batcher. Call {@link #start()} to start its thread.
+     *
+     * @param maxBatchSize  The largest number of distinct quotes priced in one batch.
+     * @param maxDelayNanos The longest time a quote waits for more quotes to batch with, in nanoseconds.
+     * @throws IllegalArgumentException If {@code maxBatchSize} is not positive or {@code maxDelayNanos} is negative.
+     */
+    public QuoteBatcher(int maxBatchSize, long maxDelayNanos) {
+        if (maxBatchSize < 1 || maxDelayNanos < 0) {
+            throw new IllegalArgumentException("Batches need at least one quote and a delay of at least 0");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.homeBatch = new ArrayList<>(maxBatchSize);
+        this.autoBatch = new ArrayList<>(maxBatchSize);
+        this.homeValues = new float[maxBatchSize];
+        this.homeAges = new int[maxBatchSize];
+        this.heatingCodes = new int[maxBatchSize];
+        this.locationCodes = new int[maxBatchSize];
+        this.highLiability = new boolean[maxBatchSize];
+        this.driverAges = new int[maxBatchSize];
+        this.accidentCounts = new int[maxBatchSize];
+        this.vehicleYears = new int[maxBatchSize];
+        this.noDiscount = new boolean[maxBatchSize];
+        this.premiums = new float[maxBatchSize];
+    }
+
+    /**
+     * Starts the batcher thread. Quotes submitted before it starts wait for it.
+     *
+     * @return This batcher.
+     * @throws IllegalStateException If the batcher was started already.
+     */
+    public synchronized QuoteBatcher start() {
+        if (batcher != null) {
+            throw new IllegalStateException("Batcher already started");
+        }
+        Thread thread = new Thread(this::run, "quote-batcher");
+        thread.setDaemon(true);
+        batcher = thread;
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Submits a home quote for pricing.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return A future completed with the premium for the quote.
+     */
+    public CompletableFuture<Float> quoteHome(HomeQuoteInput quote) {
+        return submit(new QuoteKey(false,
+                (long) Float.floatToIntBits(quote.getHomeValue()) << 32 | quote.getHomeAge() & 0xFFFFFFFFL,
+                (long) Float.floatToIntBits(quote.getLiabilityLimit()) << 32
+                        | quote.getRatedHeatingType().ordinal() << 8 | quote.getRatedLocation().ordinal()), quote);
+    }
+
+    /**
+     * Submits an auto quote for pricing as of the current year of the {@link RatingClock} when the batch runs.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return A future completed with the premium for the quote.
+     */
+    public CompletableFuture<Float> quoteAuto(AutoQuoteInput quote) {
+        return submit(new QuoteKey(true,
+                (long) quote.getDriverAge() << 32 | quote.getAccidentCount() & 0xFFFFFFFFL,
+                quote.getVehicleYear()), quote);
+    }
+
+    /**
+     * Returns the number of batches priced.
+     *
+     * @return The batch count.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of distinct quotes priced.
+     *
+     * @return The quote count.
+     */
+    public long getQuoteCount() {
+        return quotes.sum();
+    }
+
+    /**
+     * Returns the number of quotes that shared the result of an identical quote instead of being priced.
+     *
+     * @return The coalesced count.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the average number of distinct quotes per batch.
+     *
+     * @return The mean batch size, or 0 if no batch was priced.
+     */
+    public double getMeanBatchSize() {
+        long batchCount = batches.sum();
+        return batchCount == 0 ? 0 : (double) quotes.sum() / batchCount;
+    }
+
+    /**
+     * Returns the largest number of distinct quotes priced in one batch.
+     *
+     * @return The largest batch size.
+     */
+    public int getLargestBatchSize() {
+        return largestBatch;
+    }
+
+    /**
+     * Returns a one-line summary of the batching metrics.
+     *
+     * @return The metrics summary.
+     */
+    @Override
+    public String toString() {
+        return String.format("QuoteBatcher[batches=%d, quotes=%d, coalesced=%d, meanBatch=%.1f, largestBatch=%d]",
+                getBatchCount(), getQuoteCount(), getCoalescedCount(), getMeanBatchSize(), getLargestBatchSize());
+    }
+
+    /**
+     * Stops the batcher thread once it has priced every quote already submitted. Quotes submitted afterwards are
+     * priced on the submitting thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Thread thread = batcher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        priceQueued();
+    }
+
+    private CompletableFuture<Float> submit(QuoteKey key, Object quote) {
+        Pending pending = new Pending(key, quote);
+        Pending existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.increment();
+            coalescedMetric.increment();
+            return existing.premium.copy();
+        }
+        queue.add(pending);
+        int size = queued.incrementAndGet();
+        if (!running) {
+            // closed while submitting: the batcher thread may already be gone
+            priceQueued();
+        } else if (size == 1 || size == maxBatchSize) {
+            LockSupport.unpark(batcher);
+        }
+        // a copy, so that no caller can complete or cancel the result shared with identical quotes
+        return pending.premium.copy();
+    }
+
+    /**
+     * The batcher thread: sleeps until a quote arrives, waits for the batch to fill or the oldest quote's delay to
+     * pass, then prices the queued quotes. Runs until closed and drained.
+     */
+    private void run() {
+        while (true) {
+            Pending oldest = queue.peek();
+            if (oldest == null) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            long deadline = oldest.submittedNanos + maxDelayNanos;
+            long remaining;
+            while (running && queued.get() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            priceQueued();
+        }
+    }
+
+    /**
+     * Prices every queued quote, in batches of at most {@code maxBatchSize}, completing the futures of each batch
+     * after it is priced.
+     */
+    private void priceQueued() {
+        List<Pending> priced = new ArrayList<>();
+        while (priceBatch(priced)) {
+            for (Pending pending : priced) {
+                // leave the in-flight map first, so a quote submitted from a callback is priced afresh
+                inFlight.remove(pending.key, pending);
+                latencyMetric.recordSince(pending.submittedNanos);
+                if (pending.failure == null) {
+                    pending.premium.complete(pending.result);
+                } else {
+                    pending.premium.completeExceptionally(pending.failure);
+                }
+            }
+            priced.clear();
+        }
+    }
+
+    /**
+     * Prices one batch of queued quotes, recording each result in its {@link Pending}.
+     *
+     * @param priced The list the priced quotes are added to.
+     * @return {@code false} if no quote was queued.
+     */
+    private synchronized boolean priceBatch(List<Pending> priced) {
+        Pending pending;
+        while (homeBatch.size() + autoBatch.size() < maxBatchSize && (pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            (pending.key.auto ? autoBatch : homeBatch).add(pending);
+        }
+        int size = homeBatch.size() + autoBatch.size();
+        if (size == 0) {
+            return false;
+        }
+        batches.increment();
+        batchesMetric.increment();
+        quotes.add(size);
+        quotesMetric.add(size);
+        if (size > largestBatch) {
+            largestBatch = size;
+        }
+        priceHomeBatch(priced);
+        priceAutoBatch(priced);
+        return true;
+    }
+
+    private void priceHomeBatch(List<Pending> priced) {
+        int count = 0;
+        for (Pending pending : homeBatch) {
+            HomeQuoteInput quote = (HomeQuoteInput) pending.quote;
+            float liabilityLimit = quote.getLiabilityLimit();
+            if (liabilityLimit != 1_000_000f && liabilityLimit != 2_000_000f) {
+                // the kernel only knows the two standard limits; rating logic may treat any other one differently
+                priceAlone(pending, quote);
+                priced.add(pending);
+                continue;
+            }
+            homeValues[count] = quote.getHomeValue();
+            homeAges[count] = quote.getHomeAge();
+            heatingCodes[count] = quote.getRatedHeatingType().ordinal();
+            locationCodes[count] = quote.getRatedLocation().ordinal();
+            highLiability[count] = liabilityLimit == 2_000_000f;
+            homeBatch.set(count++, pending);
+        }
+        try {
+            PremiumKernel.priceHome(homeValues, homeAges, heatingCodes, locationCodes, highLiability, noDiscount,
+                    premiums, count);
+            recordAll(homeBatch, count, null, priced);
+        } catch (RuntimeException e) {
+            recordAll(homeBatch, count, e, priced);
+        }
+        homeBatch.clear();
+    }
+
+    private void priceAutoBatch(List<Pending> priced) {
+        int count = autoBatch.size();
+        for (int i = 0; i < count; i++) {
+            AutoQuoteInput quote = (AutoQuoteInput) autoBatch.get(i).quote;
+            driverAges[i] = quote.getDriverAge();
+            accidentCounts[i] = quote.getAccidentCount();
+            vehicleYears[i] = quote.getVehicleYear();
+        }
+        try {
+            PremiumKernel.priceAuto(driverAges, accidentCounts, vehicleYears, RatingClock.current().currentYear(),
+                    noDiscount, premiums, count);
+            recordAll(autoBatch, count, null, priced);
+        } catch (RuntimeException e) {
+            recordAll(autoBatch, count, e, priced);
+        }
+        autoBatch.clear();
+    }
+
+    private void recordAll(List<Pending> batch, int count, RuntimeException failure, List<Pending> priced) {
+        for (int i = 0; i < count; i++) {
+            Pending pending = batch.get(i);
+            pending.result = premiums[i];
+            pending.failure = failure;
+            priced.add(pending);
+        }
+    }
+
+    private void priceAlone(Pending pending, HomeQuoteInput quote) {
+        try {
+            pending.result = QuoteEngine.priceHomeQuote(quote);
+        } catch (RuntimeException e) {
+            pending.failure = e;
+        }
+    }
+
+    /**
+     * Compares pricing quotes directly on many threads with submitting them to a batcher. Callers pick their
+     * quotes from a fixed set, so identical quotes are in flight together as they would be under real load.
+     *
+     * @param args Optional arguments: the number of callers (default 64), the seconds to run each mode for
+     *             (default 3), the maximum batch size and the maximum delay in microseconds.
+     * @throws InterruptedException If interrupted while waiting for the callers.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 3;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_BATCH_SIZE;
+        long maxDelayNanos = args.length > 3 ? TimeUnit.MICROSECONDS.toNanos(Long.parseLong(args[3]))
+                : DEFAULT_MAX_DELAY_NANOS;
+
+        Random random = new Random(42);
+        HomeQuoteInput[] homeQuotes = new HomeQuoteInput[4096];
+        AutoQuoteInput[] autoQuotes = new AutoQuoteInput[4096];
+        String[] heatingTypes = {"oil", "wood", "other"};
+        String[] locations = {"urban", "rural"};
+        for (int i = 0; i < homeQuotes.length; i++) {
+            homeQuotes[i] = new HomeQuoteInput(100_000 + random.nextInt(900) * 1_000, random.nextInt(60),
+                    heatingTypes[random.nextInt(3)], locations[random.nextInt(2)],
+                    random.nextBoolean() ? 2_000_000f : 1_000_000f);
+            autoQuotes[i] = new AutoQuoteInput(16 + random.nextInt(70), random.nextInt(5), 1995 + random.nextInt(30));
+        }
+
+        try (QuoteBatcher batcher = new QuoteBatcher(maxBatchSize, maxDelayNanos).start()) {
+            for (int i = 0; i < homeQuotes.length; i++) {
+                if (batcher.quoteHome(homeQuotes[i]).join() != QuoteEngine.priceHomeQuote(homeQuotes[i])
+                        || batcher.quoteAuto(autoQuotes[i]).join() != QuoteEngine.priceAutoQuote(autoQuotes[i])) {
+                    System.out.println("Batched premium differs from the direct premium for quote " + i);
+                    System.exit(1);
+                }
+            }
+            System.out.printf("Batched premiums match direct pricing for %,d home and auto quotes%n",
+                    homeQuotes.length);
+
+            for (int round = 0; round < 2; round++) {
+                boolean report = round == 1;
+                long direct = run(callers, report ? seconds : 1, homeQuotes, autoQuotes, null);
+                long batched = run(callers, report ? seconds : 1, homeQuotes, autoQuotes, batcher);
+                if (report) {
+                    System.out.printf("%d callers, direct:  %,d quotes/sec%n", callers, direct / seconds);
+                    System.out.printf("%d callers, batched: %,d quotes/sec, %s, p99 wait %,d us%n", callers,
+                            batched / seconds, batcher, latencyMetric.getValueAtPercentile(99) / 1_000);
+                }
+            }
+        }
+    }
+
+    private static long run(int callers, long seconds, HomeQuoteInput[] homeQuotes, AutoQuoteInput[] autoQuotes,
+                            QuoteBatcher batcher) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder priced = new LongAdder();
+        Thread[] threads = new Thread[callers];
+        for (int t = 0; t < callers; t++) {
+            int seed = t;
+            threads[t] = Thread.ofVirtual().start(() -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < end) {
+                    int i = random.nextInt(homeQuotes.length);
+                    float premium;
+                    if (batcher == null) {
+                        premium = random.nextBoolean() ? QuoteEngine.priceHomeQuote(homeQuotes[i])
+                                : QuoteEngine.priceAutoQuote(autoQuotes[i]);
+                    } else {
+                        premium = random.nextBoolean() ? batcher.quoteHome(homeQuotes[i]).join()
+                                : batcher.quoteAuto(autoQuotes[i]).join();
+                    }
+                    if (!(premium > 0)) {
+                        throw new IllegalStateException("Quote " + i + " priced at " + premium);
+                    }
+                    priced.increment();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return priced.sum();
+    }
+
+    /**
+     * The identity of a quote for single-flight: every rating input, exactly as submitted.
+     */
+    private static final class QuoteKey {
+        final boolean auto;
+        final long high;
+        final long low;
+
+        QuoteKey(boolean auto, long high, long low) {
+            this.auto = auto;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof QuoteKey other && auto == other.auto && high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = (high * 0x9E3779B97F4A7C15L ^ low) * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ h >>> 32) ^ (auto ? 1 : 0);
+        }
+    }
+
+    /**
+     * A distinct quote waiting for its batch, and its result until the future is completed.
+     */
+    private static final class Pending {
+        final QuoteKey key;
+        final Object quote;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<Float> premium = new CompletableFuture<>();
+        float result;
+        RuntimeException failure;
+
+        Pending(QuoteKey key, Object quote) {
+            this.key = key;
+            this.quote = quote;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * The {@code QuoteCache} class remembers recently quoted premiums, keyed on the canonical rating inputs of a quote.
+ * <p>
+ * Inputs are reduced to exactly what the rating tables distinguish before they become a key: ages become their
+ * rating band, heating type and location their normalized code, and any home value at or below the surcharge
+ * threshold the threshold itself. Quotes that must price identically therefore share one entry.
+ * <p>
+ * The cache holds a bounded number of entries with least-recently-used eviction. It is split into independently
+ * locked segments so concurrent sessions rarely contend, and it is emptied automatically the first time it is used
+ * after the active {@link RatingTables} change. Every entry records the generation of the cache it was priced in,
+ * and each invalidation starts a new generation, so a quote priced just before an invalidation is neither served
+ * nor stored after it. Hit, miss, eviction and load-time counters are kept for sizing.
+ * <p>
+ * While {@link RatingRules} are installed, quotes are priced directly instead: rules may tell apart inputs that the
+ * tables price alike, so the keys would not hold, and compiled rules are as fast to run as a cache lookup.
+ */
+public class QuoteCache {
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private static final int SEGMENTS = 16;
+    private static final long AUTO_KEY_FLAG = 1L << 63;
+    private static final QuoteCache shared = new QuoteCache(DEFAULT_MAX_ENTRIES);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private volatile RatingTables tables = RatingTables.current();
+    private volatile long generation;
+
+    /**
+     * Constructs an empty cache holding at most the given number of quotes.
+     *
+     * @param maxEntries The maximum number of cached quotes.
+     */
+    public QuoteCache(int maxEntries) {
+        int perSegment = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Returns the cache used by the interactive quote flows.
+     *
+     * @return The shared cache.
+     */
+    public static QuoteCache shared() {
+        return shared;
+    }
+
+    /**
+     * Returns the premium for a home quote, pricing it only if an equivalent quote is not cached.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return The premium for the quote.
+     */
+    public float priceHome(HomeQuoteInput quote) {
+        if (RatingRules.current() != null) {
+            return QuoteEngine.priceHomeQuote(quote);
+        }
+        RatingTables current = validate();
+        float value = Math.max(quote.getHomeValue(), current.getHomeValueThreshold());
+        long key = (long) Float.floatToIntBits(value) << 8
+                | (long) RatingTables.homeAgeBand(quote.getHomeAge()) << 4
+                | (long) quote.getRatedHeatingType().ordinal() << 2
+                | (long) quote.getRatedLocation().ordinal() << 1
+                | (quote.getLiabilityLimit() == 2_000_000f ? 1 : 0);
+        return get(key, k -> QuoteEngine.priceHomeQuote(quote));
+    }
+
+    /**
+     * Returns the premium for an auto quote as of the current year, pricing it only if an equivalent quote
+     * is not cached.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return The premium for the quote.
+     */
+    public float priceAuto(AutoQuoteInput quote) {
+        int vehicleAge = RatingClock.current().currentYear() - quote.getVehicleYear();
+        if (RatingRules.current() != null) {
+            return AutoPolicy.computePremium(quote.getDriverAge(), quote.getAccidentCount(), vehicleAge, false);
+        }
+        validate();
+        long key = AUTO_KEY_FLAG
+                | (long) RatingTables.driverAgeBand(quote.getDriverAge()) << 4
+                | (long) RatingTables.accidentBand(quote.getAccidentCount()) << 2
+                | RatingTables.vehicleAgeBand(vehicleAge);
+        return get(key, k -> AutoPolicy.computePremium(quote.getDriverAge(), quote.getAccidentCount(), vehicleAge,
+                false));
+    }
+
+    /**
+     * Removes every cached quote. Quotes being priced while this runs are not cached.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            generation++;
+        }
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached quotes.
+     *
+     * @return The entry count.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to price the quote.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the size bound.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the average time spent pricing a quote on a miss.
+     *
+     * @return The average load time in nanoseconds, or 0 if nothing was loaded.
+     */
+    public double getAverageLoadNanos() {
+        long loads = misses.sum();
+        return loads == 0 ? 0 : (double) loadNanos.sum() / loads;
+    }
+
+    /**
+     * Returns a one-line summary of the cache metrics.
+     *
+     * @return The metrics summary.
+     */
+    @Override
+    public String toString() {
+        return String.format("QuoteCache[size=%d, hits=%d, misses=%d, hitRate=%.3f, evictions=%d, avgLoadNanos=%.0f]",
+                size(), getHitCount(), getMissCount(), getHitRate(), getEvictionCount(), getAverageLoadNanos());
+    }
+
+    /**
+     * Empties the cache if the rating tables have changed since the entries were priced.
+     */
+    private RatingTables validate() {
+        RatingTables current = RatingTables.current();
+        if (current != tables) {
+            synchronized (this) {
+                if (current != tables) {
+                    tables = current;
+                    invalidateAll();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Looks up a quote, pricing and storing it on a miss. Must be called after {@link #validate()}, so that the
+     * generation read here is at least the one that made the validated tables current.
+     */
+    private float get(long key, LongFunction<Float> loader) {
+        long pricedIn = generation;
+        Segment segment = segments[(int) (mix(key) & (SEGMENTS - 1))];
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry != null && entry.generation == pricedIn) {
+            hits.increment();
+            return entry.premium;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        float premium = loader.apply(key);
+        loadNanos.add(System.nanoTime() - start);
+        synchronized (segment) {
+            // checked under the segment lock: an invalidation either clears this entry afterwards or is seen here
+            if (pricedIn == generation) {
+                segment.put(key, new Entry(premium, pricedIn));
+            }
+        }
+        return premium;
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * One independently locked LRU segment, backed by an access-ordered {@link LinkedHashMap}.
+     */
+    private class Segment extends LinkedHashMap<Long, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A cached premium and the generation it was priced in.
+     */
+    private static final class Entry {
+        final float premium;
+        final long generation;
+
+        Entry(float premium, long generation) {
+            this.premium = premium;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The {@code QuoteEngine} class prices home and auto quotes in bulk without any console interaction.
+ * Quotes are priced directly from their rating inputs, so no {@link Policy} or date objects are created per quote,
+ * and large batches are split across all available cores using the common fork-join pool.
+ */
+public class QuoteEngine {
+
+    /**
+     * Prices a single home insurance quote.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return The premium for the quote.
+     */
+    public static float priceHomeQuote(HomeQuoteInput quote) {
+        return HomePolicy.computePremium(quote.getHomeValue(), quote.getHomeAge(), quote.getRatedHeatingType(),
+                quote.getRatedLocation(), quote.getLiabilityLimit(), false);
+    }
+
+    /**
+     * Prices a single auto insurance quote as of the current year of the {@link RatingClock}.
+     *
+     * @param quote The rating inputs for the quote.
+     * @return The premium for the quote.
+     */
+    public static float priceAutoQuote(AutoQuoteInput quote) {
+        return priceAutoQuote(quote, RatingClock.current().currentYear());
+    }
+
+    /**
+     * Prices home insurance quotes in parallel.
+     *
+     * @param quotes The quotes to price.
+     * @return The premiums, in the same order as the quotes.
+     */
+    public static float[] priceHomeQuotes(HomeQuoteInput[] quotes) {
+        float[] premiums = new float[quotes.length];
+        priceHomeQuotes(quotes, premiums);
+        return premiums;
+    }
+
+    /**
+     * Prices a stream of home insurance quotes in parallel.
+     *
+     * @param quotes The quotes to price.
+     * @return The premiums, in encounter order of the stream.
+     */
+    public static float[] priceHomeQuotes(Stream<HomeQuoteInput> quotes) {
+        return priceHomeQuotes(quotes.toArray(HomeQuoteInput[]::new));
+    }
+
+    /**
+     * Prices home insurance quotes in parallel into a caller-supplied array,
+     * so repeated runs over the same book do not allocate.
+     *
+     * @param quotes   The quotes to price.
+     * @param premiums The array receiving the premiums; must be at least as long as {@code quotes}.
+     */
+    public static void priceHomeQuotes(HomeQuoteInput[] quotes, float[] premiums) {
+        checkCapacity(quotes.length, premiums);
+        IntStream.range(0, quotes.length).parallel().forEach(i -> premiums[i] = priceHomeQuote(quotes[i]));
+    }
+
+    /**
+     * Prices auto insurance quotes in parallel.
+     *
+     * @param quotes The quotes to price.
+     * @return The premiums, in the same order as the quotes.
+     */
+    public static float[] priceAutoQuotes(AutoQuoteInput[] quotes) {
+        float[] premiums = new float[quotes.length];
+        priceAutoQuotes(quotes, premiums);
+        return premiums;
+    }
+
+    /**
+     * Prices a stream of auto insurance quotes in parallel.
+     *
+     * @param quotes The quotes to price.
+     * @return The premiums, in encounter order of the stream.
+     */
+    public static float[] priceAutoQuotes(Stream<AutoQuoteInput> quotes) {
+        return priceAutoQuotes(quotes.toArray(AutoQuoteInput[]::new));
+    }
+
+    /**
+     * Prices auto insurance quotes in parallel into a caller-supplied array.
+     * The current year is read once for the whole batch.
+     *
+     * @param quotes   The quotes to price.
+     * @param premiums The array receiving the premiums; must be at least as long as {@code quotes}.
+     */
+    public static void priceAutoQuotes(AutoQuoteInput[] quotes, float[] premiums) {
+        priceAutoQuotes(quotes, premiums, RatingClock.current().today());
+    }
+
+    /**
+     * Prices auto insurance quotes in parallel as of a fixed date, e.g. to backtest a book against past rates.
+     * The result does not depend on when the batch runs.
+     *
+     * @param quotes   The quotes to price.
+     * @param premiums The array receiving the premiums; must be at least as long as {@code quotes}.
+     * @param asOf     The date the quotes are rated on.
+     */
+    public static void priceAutoQuotes(AutoQuoteInput[] quotes, float[] premiums, LocalDate asOf) {
+        checkCapacity(quotes.length, premiums);
+        int year = asOf.getYear();
+        IntStream.range(0, quotes.length).parallel().forEach(i -> premiums[i] = priceAutoQuote(quotes[i], year));
+    }
+
+    /**
+     * Measures home quote throughput by repeatedly pricing the given quotes.
+     *
+     * @param quotes The quotes to price on each round.
+     * @param rounds The number of times to price the full set.
+     * @return The number of quotes priced per second.
+     */
+    public static double measureHomeThroughput(HomeQuoteInput[] quotes, int rounds) {
+        float[] premiums = new float[quotes.length];
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            priceHomeQuotes(quotes, premiums);
+        }
+        return quotesPerSecond((long) quotes.length * rounds, System.nanoTime() - start);
+    }
+
+    /**
+     * Measures auto quote throughput by repeatedly pricing the given quotes.
+     *
+     * @param quotes The quotes to price on each round.
+     * @param rounds The number of times to price the full set.
+     * @return The number of quotes priced per second.
+     */
+    public static double measureAutoThroughput(AutoQuoteInput[] quotes, int rounds) {
+        float[] premiums = new float[quotes.length];
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            priceAutoQuotes(quotes, premiums);
+        }
+        return quotesPerSecond((long) quotes.length * rounds, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs the engine in throughput mode over a synthetic book of quotes and reports quotes per second.
+     *
+     * @param args Optional arguments: the number of quotes of each type (default 1,000,000)
+     *             and the number of rounds (default 10).
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        String[] heatingTypes = {"oil", "wood", "electric"};
+        String[] locations = {"urban", "rural"};
+        HomeQuoteInput[] homeQuotes = new HomeQuoteInput[count];
+        AutoQuoteInput[] autoQuotes = new AutoQuoteInput[count];
+        for (int i = 0; i < count; i++) {
+            homeQuotes[i] = new HomeQuoteInput(100_000 + random.nextInt(900_000), random.nextInt(100),
+                    heatingTypes[random.nextInt(heatingTypes.length)], locations[random.nextInt(locations.length)],
+                    random.nextBoolean() ? 2_000_000f : 1_000_000f);
+            autoQuotes[i] = new AutoQuoteInput(16 + random.nextInt(70), random.nextInt(5), 1995 + random.nextInt(30));
+        }
+
+        // warm up before measuring
+        measureHomeThroughput(homeQuotes, 2);
+        measureAutoThroughput(autoQuotes, 2);
+
+        System.out.printf("Home quotes/sec: %,.0f%n", measureHomeThroughput(homeQuotes, rounds));
+        System.out.printf("Auto quotes/sec: %,.0f%n", measureAutoThroughput(autoQuotes, rounds));
+    }
+
+    private static float priceAutoQuote(AutoQuoteInput quote, int currentYear) {
+        return AutoPolicy.computePremium(quote.getDriverAge(), quote.getAccidentCount(),
+                currentYear - quote.getVehicleYear(), false);
+    }
+
+    private static void checkCapacity(int count, float[] premiums) {
+        if (premiums.length < count) {
+            throw new IllegalArgumentException("Premium array holds " + premiums.length + " entries, need " + count);
+        }
+    }
+
+    private static double quotesPerSecond(long quotes, long elapsedNanos) {
+        return quotes * 1_000_000_000.0 / Math.max(elapsedNanos, 1);
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.PrintStream;
 import java.util.Scanner;
 
 /**
@@ -12,23 +13,24 @@ public class QuoteManager {
      * Based on the user's choice, the corresponding premium is calculated and displayed.
      *
      * @param scanner The {@code Scanner} object used to take input from the user.
+     * @param out     The {@code PrintStream} the prompts and results are written to.
      */
-    public static void requestQuote(Scanner scanner) {
-        System.out.println("\n--- Request a Quote ---");
-        System.out.println("1. Home Insurance");
-        System.out.println("2. Auto Insurance");
-        System.out.println("3. Back");
-        System.out.print("Choose an option: ");
+    public static void requestQuote(Scanner scanner, PrintStream out) {
+        out.println("\n--- Request a Quote ---");
+        out.println("1. Home Insurance");
+        out.println("2. Auto Insurance");
+        out.println("3. Back");
+        out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
         scanner.nextLine();
 
         if (choice == 1) { // request home insurance quote and display the premium
-            float premium = PolicyManager.calculateHomePremium(scanner);
-            System.out.println("Estimated Home Insurance Premium: $" + premium);
+            float premium = PolicyManager.calculateHomePremium(scanner, out);
+            out.println("Estimated Home Insurance Premium: $" + premium);
         } else if (choice == 2) { // request auto insurance quote and display the premium
-            float premium = PolicyManager.calculateAutoPremium(scanner);
-            System.out.println("Estimated Auto Insurance Premium: $" + premium);
+            float premium = PolicyManager.calculateAutoPremium(scanner, out);
+            out.println("Estimated Auto Insurance Premium: $" + premium);
         }
     }
 }
@@ -0,0 +1,152 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * The {@code RatingClock} class supplies the "as-of" date used for rating: the start of new policy terms and
+ * the current year from which vehicle ages are computed.
+ * <p>
+ * The system clock is read through a cache: the date, its year and the date one year later are computed once
+ * and reused until midnight in the clock's time zone, so hot paths pay for one millisecond read instead of a
+ * time-zone lookup and date arithmetic on every call. A fixed clock always reports the same date, which makes
+ * batch pricing and backtesting deterministic. The active clock can be replaced at runtime with
+ * {@link #install(RatingClock)}.
+ */
+public class RatingClock {
+    private static volatile RatingClock current = system();
+
+    private final Clock clock;
+    private final ZoneId zone;
+    private volatile Day day;
+
+    private RatingClock(Clock clock, Day fixedDay) {
+        this.clock = clock;
+        this.zone = clock != null ? clock.getZone() : null;
+        this.day = fixedDay;
+    }
+
+    /**
+     * Returns a clock following the system clock in the default time zone.
+     *
+     * @return The system rating clock.
+     */
+    public static RatingClock system() {
+        return of(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Returns a rating clock following the given clock.
+     *
+     * @param clock The clock to follow.
+     * @return The rating clock.
+     */
+    public static RatingClock of(Clock clock) {
+        RatingClock ratingClock = new RatingClock(clock, null);
+        ratingClock.day = ratingClock.dayOf(clock.millis());
+        return ratingClock;
+    }
+
+    /**
+     * Returns a clock that always reports the given date.
+     *
+     * @param asOf The date to report.
+     * @return The fixed rating clock.
+     */
+    public static RatingClock fixed(LocalDate asOf) {
+        return new RatingClock(null, new Day(asOf, Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the clock currently used for rating.
+     *
+     * @return The active rating clock.
+     */
+    public static RatingClock current() {
+        return current;
+    }
+
+    /**
+     * Makes the given clock the active rating clock, e.g. a fixed clock to reprice a book as of a past date.
+     *
+     * @param clock The clock to activate.
+     */
+    public static void install(RatingClock clock) {
+        current = clock;
+    }
+
+    /**
+     * Returns the as-of date.
+     *
+     * @return Today's date according to this clock.
+     */
+    public LocalDate today() {
+        return day().date;
+    }
+
+    /**
+     * Returns the date one year after the as-of date, i.e. the end of a term starting today.
+     *
+     * @return The date one year from today.
+     */
+    public LocalDate oneYearFromToday() {
+        return day().oneYearLater;
+    }
+
+    /**
+     * Returns the date one year after the given date, i.e. the end of a term starting then. Use this rather than
+     * {@link #oneYearFromToday()} for a term starting on a date already read from the clock, so the term stays one
+     * year long even if the day changes in between. Terms starting today reuse the cached date.
+     *
+     * @param start The first day of the term.
+     * @return The date one year after {@code start}.
+     */
+    public LocalDate oneYearAfter(LocalDate start) {
+        Day today = day();
+        return today.date.equals(start) ? today.oneYearLater : start.plusYears(1);
+    }
+
+    /**
+     * Returns the year of the as-of date.
+     *
+     * @return The current year.
+     */
+    public int currentYear() {
+        return day().year;
+    }
+
+    private Day day() {
+        Day today = day;
+        if (clock != null) {
+            long now = clock.millis();
+            if (now >= today.endMillis) {
+                today = dayOf(now);
+                day = today;
+            }
+        }
+        return today;
+    }
+
+    private Day dayOf(long millis) {
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+        long endMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(date, endMillis);
+    }
+
+    /**
+     * One calendar day with everything derived from it, valid until {@code endMillis}.
+     */
+    private static final class Day {
+        final LocalDate date;
+        final LocalDate oneYearLater;
+        final int year;
+        final long endMillis;
+
+        Day(LocalDate date, long endMillis) {
+            this.date = date;
+            this.oneYearLater = date.plusYears(1);
+            this.year = date.getYear();
+            this.endMillis = endMillis;
+        }
+    }
+}
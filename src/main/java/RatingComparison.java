@@ -0,0 +1,96 @@
+/**
+ * The {@code RatingComparison} class summarizes how a candidate rating logic would change the premiums of a book of
+ * policies compared with the active one; see {@link RatingRules#compare(java.util.Collection)}.
+ */
+public class RatingComparison {
+    private final Totals home = new Totals();
+    private final Totals auto = new Totals();
+
+    RatingComparison() {
+    }
+
+    void record(boolean isHome, float baseline, float candidate) {
+        Totals totals = isHome ? home : auto;
+        totals.policies++;
+        totals.baseline += baseline;
+        totals.candidate += candidate;
+        if (Float.floatToIntBits(baseline) != Float.floatToIntBits(candidate)) {
+            totals.changed++;
+            double change = baseline != 0 ? (candidate - baseline) / (double) baseline : 0;
+            totals.largestIncrease = Math.max(totals.largestIncrease, change);
+            totals.largestDecrease = Math.min(totals.largestDecrease, change);
+        }
+    }
+
+    /**
+     * Gets the number of home policies priced.
+     *
+     * @return The home policy count.
+     */
+    public long getHomePolicies() {
+        return home.policies;
+    }
+
+    /**
+     * Gets the number of home policies whose premium would change.
+     *
+     * @return The changed home policy count.
+     */
+    public long getHomeChanged() {
+        return home.changed;
+    }
+
+    /**
+     * Gets the number of auto policies priced.
+     *
+     * @return The auto policy count.
+     */
+    public long getAutoPolicies() {
+        return auto.policies;
+    }
+
+    /**
+     * Gets the number of auto policies whose premium would change.
+     *
+     * @return The changed auto policy count.
+     */
+    public long getAutoChanged() {
+        return auto.changed;
+    }
+
+    /**
+     * Checks whether the candidate gives every policy exactly the premium it has now.
+     *
+     * @return {@code true} if no premium would change.
+     */
+    public boolean isIdentical() {
+        return home.changed == 0 && auto.changed == 0;
+    }
+
+    /**
+     * Returns one line per policy type: the number of premiums that would change, the change of the total
+     * premium and the largest increase and decrease of a single premium.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        return home.describe("home") + System.lineSeparator() + auto.describe("auto");
+    }
+
+    private static final class Totals {
+        long policies;
+        long changed;
+        double baseline;
+        double candidate;
+        double largestIncrease;
+        double largestDecrease;
+
+        String describe(String type) {
+            double total = baseline != 0 ? (candidate - baseline) / baseline : 0;
+            return String.format("%,d %s policies: %,d premiums change, total %+.2f%% ($%,.2f -> $%,.2f), "
+                            + "largest increase %+.2f%%, largest decrease %+.2f%%", policies, type, changed,
+                    total * 100, baseline, candidate, largestIncrease * 100, largestDecrease * 100);
+        }
+    }
+}
@@ -0,0 +1,869 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * The {@code RatingRules} class prices policies with rules written in a small rating language, so actuaries can
+ * change how premiums are computed, not only the factors of the {@link RatingTables}.
+ * <p>
+ * A rules file has a {@code home:} and an {@code auto:} section. Each section is a list of steps applied in order
+ * to the premium, one per line; {@code #} starts a comment. {@link #DEFAULT_RULES} restates the rating tables:
+ * <pre>
+ * home:
+ *     base 500
+ *     add (homeValue - 250000) * 0.002 if homeValue &gt; 250000
+ *     factor 1.5 if homeAge &gt; 50 else 1.25 if homeAge &gt; 25
+ *     factor 2.0 if heating = oil else 1.25 if heating = wood
+ *     ...
+ *     tax 1.15
+ * </pre>
+ * {@code base} sets the premium and must come first; {@code add} adds an amount, {@code factor} multiplies by a
+ * factor and {@code tax} multiplies by a tax rate. A step whose conditions all fail changes nothing. Values are
+ * built from numbers, {@code + - * /}, parentheses, comparisons ({@code = != < <= > >=}), {@code and}, {@code or},
+ * {@code not} and {@code value if condition else value}. The home inputs are {@code homeValue}, {@code homeAge},
+ * {@code heating} ({@code oil}, {@code wood} or {@code other}), {@code location} ({@code urban} or {@code rural}),
+ * {@code liabilityLimit} and {@code autoDiscount}; the auto inputs are {@code driverAge}, {@code accidentCount},
+ * {@code vehicleAge} and {@code homeDiscount}. As in the rating tables, factors are computed in double precision
+ * and everything else in single precision, so rules restating the tables give identical premiums.
+ * <p>
+ * Rules are compiled once, when loaded, into a tree of method handles. {@link #install(RatingRules)} makes them
+ * the rating logic of every policy and quote by retargeting the call sites that pricing goes through; the JIT
+ * compiles the installed rules into the calling code like hand-written Java, and swapping them is atomic for each
+ * premium: a premium is computed wholly with the old rules or wholly with the new ones. Until rules are installed,
+ * or after {@code install(null)}, premiums come from the active {@link RatingTables}.
+ * {@link #compare(Collection)} prices a book of policies with both the active logic and a candidate, before the
+ * candidate goes live.
+ */
+public class RatingRules {
+    /**
+     * Rules giving the same premiums as the default {@link RatingTables}.
+     */
+    public static final String DEFAULT_RULES = """
+            # Home premiums
+            home:
+                base 500
+                add (homeValue - 250000) * 0.002 if homeValue > 250000
+                factor 1.25 if liabilityLimit = 2000000
+                factor 1.5 if homeAge > 50 else 1.25 if homeAge > 25
+                factor 2.0 if heating = oil else 1.25 if heating = wood
+                factor 1.15 if location = rural
+                factor 0.9 if autoDiscount
+                tax 1.15
+
+            # Auto premiums
+            auto:
+                base 750
+                factor 2.0 if driverAge < 25
+                factor 2.5 if accidentCount >= 3 else 1.25 if accidentCount = 1
+                factor 2.0 if vehicleAge > 10 else 1.5 if vehicleAge > 5
+                factor 0.9 if homeDiscount
+                tax 1.15
+            """;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType HOME_TYPE = methodType(float.class, float.class, int.class, HeatingType.class,
+            LocationType.class, float.class, boolean.class);
+    private static final MethodType AUTO_TYPE = methodType(float.class, int.class, int.class, int.class,
+            boolean.class);
+    private static final String[] HOME_INPUTS =
+            {"homeValue", "homeAge", "heating", "location", "liabilityLimit", "autoDiscount"};
+    private static final String[] AUTO_INPUTS = {"driverAge", "accidentCount", "vehicleAge", "homeDiscount"};
+    private static final Pattern TOKEN = Pattern.compile(
+            "\\s*(\\d[\\d_]*(?:\\.\\d+)?|\\.\\d+|[A-Za-z_]\\w*|>=|<=|!=|[-+*/()<>=])");
+
+    private static final MethodHandle TABLES_HOME = findStatic("tablesHome", HOME_TYPE);
+    private static final MethodHandle TABLES_AUTO = findStatic("tablesAuto", AUTO_TYPE);
+    private static final MutableCallSite homeSite = new MutableCallSite(TABLES_HOME);
+    private static final MutableCallSite autoSite = new MutableCallSite(TABLES_AUTO);
+    private static final MethodHandle HOME = homeSite.dynamicInvoker();
+    private static final MethodHandle AUTO = autoSite.dynamicInvoker();
+    private static volatile RatingRules current;
+
+    private final String source;
+    private final MethodHandle home;
+    private final MethodHandle auto;
+
+    private RatingRules(String source, MethodHandle home, MethodHandle auto) {
+        this.source = source;
+        this.home = home;
+        this.auto = auto;
+    }
+
+    /**
+     * Compiles rules.
+     *
+     * @param source The rules text.
+     * @return The compiled rules.
+     * @throws IllegalArgumentException If the rules are malformed; the message names the line.
+     */
+    public static RatingRules compile(String source) {
+        List<List<String>> homeSteps = new ArrayList<>();
+        List<List<String>> autoSteps = new ArrayList<>();
+        List<Integer> homeLines = new ArrayList<>();
+        List<Integer> autoLines = new ArrayList<>();
+        List<List<String>> steps = null;
+        List<Integer> lines = null;
+        String[] sourceLines = source.split("\r?\n", -1);
+        for (int i = 0; i < sourceLines.length; i++) {
+            String line = sourceLines[i];
+            int comment = line.indexOf('#');
+            line = (comment >= 0 ? line.substring(0, comment) : line).strip();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.endsWith(":")) {
+                String section = line.substring(0, line.length() - 1).strip();
+                if (section.equals("home") && homeLines.isEmpty()) {
+                    steps = homeSteps;
+                    lines = homeLines;
+                } else if (section.equals("auto") && autoLines.isEmpty()) {
+                    steps = autoSteps;
+                    lines = autoLines;
+                } else {
+                    throw new IllegalArgumentException("line " + (i + 1) + ": unknown or repeated section " + line);
+                }
+                lines.add(i + 1);
+                continue;
+            }
+            if (steps == null) {
+                throw new IllegalArgumentException("line " + (i + 1) + ": expected home: or auto:");
+            }
+            steps.add(tokenize(line, i + 1));
+            lines.add(i + 1);
+        }
+        if (homeLines.isEmpty() || autoLines.isEmpty()) {
+            throw new IllegalArgumentException("rules need a home: and an auto: section");
+        }
+        MethodHandle home = new Compiler(HOME_TYPE, HOME_INPUTS).compile(homeSteps, homeLines);
+        MethodHandle auto = new Compiler(AUTO_TYPE, AUTO_INPUTS).compile(autoSteps, autoLines);
+        return new RatingRules(source, home, auto);
+    }
+
+    /**
+     * Loads and compiles a rules file.
+     *
+     * @param path The rules file.
+     * @return The compiled rules.
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the rules are malformed.
+     */
+    public static RatingRules load(Path path) throws IOException {
+        return compile(Files.readString(path));
+    }
+
+    /**
+     * Returns the installed rules.
+     *
+     * @return The installed rules, or {@code null} if premiums come from the {@link RatingTables}.
+     */
+    public static RatingRules current() {
+        return current;
+    }
+
+    /**
+     * Makes rules the rating logic of every policy and quote. Calculations already in progress finish with the
+     * logic they started with. The rules are published before the call sites are retargeted, so the
+     * {@link QuoteCache} stops caching before any quote is priced with them, and the cache is emptied afterwards,
+     * so no quote priced with the previous logic is served after the call returns.
+     *
+     * @param rules The rules to install, or {@code null} to price with the active {@link RatingTables} again.
+     */
+    public static synchronized void install(RatingRules rules) {
+        current = rules;
+        homeSite.setTarget(rules != null ? rules.home : TABLES_HOME);
+        autoSite.setTarget(rules != null ? rules.auto : TABLES_AUTO);
+        MutableCallSite.syncAll(new MutableCallSite[]{homeSite, autoSite});
+        QuoteCache.shared().invalidateAll();
+    }
+
+    /**
+     * Calculates a home premium with the installed rules, or the active rating tables if none are installed.
+     * Arguments are as for {@link RatingTables#rateHome}.
+     */
+    static float priceHome(float homeValue, int homeAge, HeatingType heatingType, LocationType location,
+                           float liabilityLimit, boolean autoDiscount) {
+        try {
+            return (float) HOME.invokeExact(homeValue, homeAge, heatingType, location, liabilityLimit, autoDiscount);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Calculates an auto premium with the installed rules, or the active rating tables if none are installed.
+     * Arguments are as for {@link RatingTables#rateAuto}.
+     */
+    static float priceAuto(int driverAge, int accidentCount, int vehicleAge, boolean homeDiscount) {
+        try {
+            return (float) AUTO.invokeExact(driverAge, accidentCount, vehicleAge, homeDiscount);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Calculates a home premium with these rules, whether or not they are installed.
+     *
+     * @param homeValue      The estimated value of the home.
+     * @param homeAge        The age of the home in years.
+     * @param heatingType    The normalized heating type.
+     * @param location       The normalized location.
+     * @param liabilityLimit The liability coverage limit.
+     * @param autoDiscount   Whether the owner holds an active auto policy.
+     * @return The total premium including tax.
+     */
+    public float rateHome(float homeValue, int homeAge, HeatingType heatingType, LocationType location,
+                          float liabilityLimit, boolean autoDiscount) {
+        try {
+            return (float) home.invokeExact(homeValue, homeAge, heatingType, location, liabilityLimit, autoDiscount);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Calculates an auto premium with these rules, whether or not they are installed.
+     *
+     * @param driverAge     The age of the driver.
+     * @param accidentCount The number of accidents in the last 5 years.
+     * @param vehicleAge    The age of the vehicle in years.
+     * @param homeDiscount  Whether the owner holds an active home policy.
+     * @return The total premium including tax.
+     */
+    public float rateAuto(int driverAge, int accidentCount, int vehicleAge, boolean homeDiscount) {
+        try {
+            return (float) auto.invokeExact(driverAge, accidentCount, vehicleAge, homeDiscount);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Prices the active policies of a book of users with the active rating logic and with these rules, without
+     * changing any policy, e.g. to review a rules change before installing it.
+     *
+     * @param users The users whose policies to price, e.g. {@link UserRegistry#users()}.
+     * @return The differences between the two.
+     */
+    public RatingComparison compare(Collection<User> users) {
+        RatingComparison comparison = new RatingComparison();
+        for (User user : users) {
+            for (Policy policy : user.copyPolicies()) {
+                if (!policy.isActive()) {
+                    continue;
+                }
+                if (policy instanceof HomePolicy homePolicy) {
+                    boolean discount = user.hasActiveAutoPolicy();
+                    comparison.record(true,
+                            HomePolicy.computePremium(homePolicy.getHomeValue(), homePolicy.getHomeAge(),
+                                    homePolicy.getRatedHeatingType(), homePolicy.getRatedLocation(),
+                                    homePolicy.getLiabilityLimit(), discount),
+                            rateHome(homePolicy.getHomeValue(), homePolicy.getHomeAge(),
+                                    homePolicy.getRatedHeatingType(), homePolicy.getRatedLocation(),
+                                    homePolicy.getLiabilityLimit(), discount));
+                } else if (policy instanceof AutoPolicy autoPolicy) {
+                    boolean discount = user.hasActiveHomePolicy();
+                    int vehicleAge = autoPolicy.getVehicle().getAge();
+                    comparison.record(false,
+                            AutoPolicy.computePremium(autoPolicy.getDriverAge(), autoPolicy.getAccidentCount(),
+                                    vehicleAge, discount),
+                            rateAuto(autoPolicy.getDriverAge(), autoPolicy.getAccidentCount(), vehicleAge,
+                                    discount));
+                }
+            }
+        }
+        return comparison;
+    }
+
+    /**
+     * Returns the text the rules were compiled from.
+     *
+     * @return The rules text.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Checks that {@link #DEFAULT_RULES} give exactly the premiums of the default rating tables, then compares
+     * rules with the rating tables on a synthetic book of policies and measures the pricing throughput of both.
+     * Exits with status 1 if the default rules disagree with the tables.
+     *
+     * @param args Optional arguments: a rules file (default: {@link #DEFAULT_RULES}) and the number of users in the
+     *             book (default 100,000).
+     * @throws IOException If the rules file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        RatingRules defaults = compile(DEFAULT_RULES);
+        RatingTables tables = RatingTables.current();
+        Random random = new Random(42);
+        HeatingType[] heatingTypes = HeatingType.values();
+        LocationType[] locations = LocationType.values();
+        int checks = 2_000_000;
+        for (int i = 0; i < checks; i++) {
+            float homeValue = random.nextInt(4) == 0
+                    ? 250_000f + random.nextInt(3) - 1
+                    : 1_000_000 * random.nextFloat();
+            int homeAge = random.nextInt(120) - 10;
+            HeatingType heating = heatingTypes[random.nextInt(heatingTypes.length)];
+            LocationType location = locations[random.nextInt(locations.length)];
+            float liabilityLimit = random.nextBoolean() ? 2_000_000f : 1_000_000f;
+            boolean discount = random.nextBoolean();
+            float expected = tables.rateHome(homeValue, homeAge, heating, location, liabilityLimit, discount);
+            float actual = defaults.rateHome(homeValue, homeAge, heating, location, liabilityLimit, discount);
+            int driverAge = random.nextInt(100) - 5;
+            int accidentCount = random.nextInt(8) - 2;
+            int vehicleAge = random.nextInt(30) - 3;
+            float expectedAuto = tables.rateAuto(driverAge, accidentCount, vehicleAge, discount);
+            float actualAuto = defaults.rateAuto(driverAge, accidentCount, vehicleAge, discount);
+            if (Float.floatToIntBits(expected) != Float.floatToIntBits(actual)
+                    || Float.floatToIntBits(expectedAuto) != Float.floatToIntBits(actualAuto)) {
+                System.out.printf("Default rules disagree with the rating tables: home %s vs %s, auto %s vs %s%n",
+                        expected, actual, expectedAuto, actualAuto);
+                System.exit(1);
+            }
+        }
+        System.out.printf("Default rules match the rating tables for %,d home and auto premiums%n", checks);
+
+        RatingRules candidate = args.length > 0 ? load(Path.of(args[0])) : defaults;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        PasswordHasher.setIterations(1);
+        String[] heatingNames = {"oil", "wood", "electric"};
+        String[] locationNames = {"urban", "rural"};
+        List<User> book = new ArrayList<>(userCount);
+        List<HomePolicy> homes = new ArrayList<>();
+        List<AutoPolicy> autos = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            User user = new User("user" + i, "password");
+            if (random.nextInt(3) > 0) {
+                HomePolicy home = new HomePolicy(random.nextInt(100), "house",
+                        heatingNames[random.nextInt(heatingNames.length)],
+                        locationNames[random.nextInt(locationNames.length)], 100_000 + random.nextInt(900_000),
+                        random.nextBoolean() ? 2_000_000f : 1_000_000f);
+                user.addPolicy(home);
+                homes.add(home);
+            }
+            if (random.nextInt(3) > 0) {
+                AutoPolicy auto = new AutoPolicy(16 + random.nextInt(70), random.nextInt(5),
+                        new Vehicle("Honda", "Civic", RatingClock.current().currentYear() - random.nextInt(25)));
+                user.addPolicy(auto);
+                autos.add(auto);
+            }
+            book.add(user);
+        }
+        System.out.println(candidate.compare(book));
+
+        try {
+            install(null);
+            double tablesRate = timePricing(homes, autos);
+            install(candidate);
+            double rulesRate = timePricing(homes, autos);
+            System.out.printf("Rating tables: %,.0f premiums/sec%n", tablesRate);
+            System.out.printf("Rating rules:  %,.0f premiums/sec%n", rulesRate);
+        } finally {
+            install(null);
+        }
+    }
+
+    /**
+     * Prices every policy of the book through the installed rating logic, as {@code calculatePremium} does, and
+     * returns the best throughput of several rounds after warming up.
+     */
+    private static double timePricing(List<HomePolicy> homes, List<AutoPolicy> autos) {
+        double best = 0;
+        float sink = 0;
+        for (int round = 0; round < 15; round++) {
+            long start = System.nanoTime();
+            for (HomePolicy home : homes) {
+                home.calculatePremium(home.getOwner());
+                sink += home.getTotalPremium();
+            }
+            for (AutoPolicy auto : autos) {
+                auto.calculatePremium(auto.getOwner());
+                sink += auto.getTotalPremium();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round >= 5) {
+                best = Math.max(best, (homes.size() + autos.size()) * 1e9 / elapsed);
+            }
+        }
+        if (sink == 0) {
+            System.out.println("No premiums priced");
+        }
+        return best;
+    }
+
+    private static float tablesHome(float homeValue, int homeAge, HeatingType heatingType, LocationType location,
+                                    float liabilityLimit, boolean autoDiscount) {
+        return RatingTables.current().rateHome(homeValue, homeAge, heatingType, location, liabilityLimit,
+                autoDiscount);
+    }
+
+    private static float tablesAuto(int driverAge, int accidentCount, int vehicleAge, boolean homeDiscount) {
+        return RatingTables.current().rateAuto(driverAge, accidentCount, vehicleAge, homeDiscount);
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException e) {
+            throw e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        return new IllegalStateException(t);
+    }
+
+    private static List<String> tokenize(String line, int lineNumber) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(line);
+        int position = 0;
+        while (position < line.length()) {
+            if (!matcher.find(position) || matcher.start() != position) {
+                throw new IllegalArgumentException("line " + lineNumber + ": unexpected " + line.substring(position));
+            }
+            tokens.add(matcher.group(1));
+            position = matcher.end();
+        }
+        return tokens;
+    }
+
+    // The operations compiled rules are built from. Step functions take the premium first.
+
+    private static float add(float a, float b) {
+        return a + b;
+    }
+
+    private static double add(double a, double b) {
+        return a + b;
+    }
+
+    private static float subtract(float a, float b) {
+        return a - b;
+    }
+
+    private static double subtract(double a, double b) {
+        return a - b;
+    }
+
+    private static float multiply(float a, float b) {
+        return a * b;
+    }
+
+    private static double multiply(double a, double b) {
+        return a * b;
+    }
+
+    private static float divide(float a, float b) {
+        return a / b;
+    }
+
+    private static double divide(double a, double b) {
+        return a / b;
+    }
+
+    private static float negate(float a) {
+        return -a;
+    }
+
+    private static double negate(double a) {
+        return -a;
+    }
+
+    private static float applyFactor(float premium, double factor) {
+        return (float) (premium * factor);
+    }
+
+    private static boolean not(boolean a) {
+        return !a;
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == b;
+    }
+
+    private static boolean less(int a, int b) {
+        return a < b;
+    }
+
+    private static boolean less(float a, float b) {
+        return a < b;
+    }
+
+    private static boolean less(double a, double b) {
+        return a < b;
+    }
+
+    private static boolean lessOrEqual(int a, int b) {
+        return a <= b;
+    }
+
+    private static boolean lessOrEqual(float a, float b) {
+        return a <= b;
+    }
+
+    private static boolean lessOrEqual(double a, double b) {
+        return a <= b;
+    }
+
+    private static boolean equal(int a, int b) {
+        return a == b;
+    }
+
+    private static boolean equal(float a, float b) {
+        return a == b;
+    }
+
+    private static boolean equal(double a, double b) {
+        return a == b;
+    }
+
+    private static boolean equal(boolean a, boolean b) {
+        return a == b;
+    }
+
+    private static MethodHandle findStatic(String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(RatingRules.class, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private enum Kind { INTEGER, NUMBER, BOOLEAN, CHOICE, NAME }
+
+    /**
+     * A compiled value: a method handle taking the section's inputs, or an unresolved name such as {@code oil}.
+     */
+    private static final class Value {
+        final MethodHandle handle;
+        final Kind kind;
+        final String name;
+
+        Value(MethodHandle handle, Kind kind) {
+            this.handle = handle;
+            this.kind = kind;
+            this.name = null;
+        }
+
+        Value(String name) {
+            this.handle = null;
+            this.kind = Kind.NAME;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Compiles the steps of one section, by recursive descent, straight into method handles. Every value is a
+     * handle taking all inputs of the section; binary operations collect both operands' inputs and merge them.
+     */
+    private static final class Compiler {
+        private final MethodType inputs;
+        private final String[] names;
+        private List<String> tokens;
+        private int next;
+        private int lineNumber;
+        private Class<?> number;
+
+        Compiler(MethodType type, String[] names) {
+            this.inputs = type.changeReturnType(void.class);
+            this.names = names;
+        }
+
+        MethodHandle compile(List<List<String>> steps, List<Integer> lines) {
+            MethodHandle premium = null;
+            lineNumber = lines.get(0);
+            if (steps.isEmpty()) {
+                throw error("the section has no steps");
+            }
+            for (int i = 0; i < steps.size(); i++) {
+                tokens = steps.get(i);
+                next = 0;
+                lineNumber = lines.get(i + 1);
+                String step = tokens.get(next++);
+                number = step.equals("factor") ? double.class : float.class;
+                if (step.equals("base") != (premium == null)) {
+                    throw error(premium == null ? "the first step must be base" : "base must be the first step");
+                }
+                Value neutral = switch (step) {
+                    case "base" -> null;
+                    case "add" -> constant(0);
+                    case "factor", "tax" -> constant(1);
+                    default -> throw error("unknown step " + step);
+                };
+                MethodHandle amount = numeric(choice(neutral));
+                if (next < tokens.size()) {
+                    throw error("unexpected " + tokens.get(next));
+                }
+                if (premium == null) {
+                    premium = amount;
+                    continue;
+                }
+                MethodHandle apply = switch (step) {
+                    case "add" -> operation("add", float.class);
+                    case "factor" -> findStatic("applyFactor", methodType(float.class, float.class, double.class));
+                    default -> operation("multiply", float.class);
+                };
+                // apply(premium, amount(inputs)) with the premium computed from the same inputs
+                premium = MethodHandles.foldArguments(MethodHandles.collectArguments(apply, 1, amount), premium);
+            }
+            return premium;
+        }
+
+        /**
+         * {@code value [if condition [else choice]]}. Without {@code else}, a failed condition gives the
+         * neutral value of the step, if it has one.
+         */
+        private Value choice(Value neutral) {
+            Value value = or();
+            if (!accept("if")) {
+                return value;
+            }
+            MethodHandle condition = bool(or());
+            Value otherwise;
+            if (accept("else")) {
+                otherwise = choice(neutral);
+            } else if (neutral != null) {
+                otherwise = neutral;
+            } else {
+                throw error("missing else");
+            }
+            if (value.kind == Kind.INTEGER && otherwise.kind == Kind.INTEGER
+                    || value.kind == Kind.BOOLEAN && otherwise.kind == Kind.BOOLEAN) {
+                return new Value(MethodHandles.guardWithTest(condition, value.handle, otherwise.handle), value.kind);
+            }
+            return new Value(MethodHandles.guardWithTest(condition, numeric(value), numeric(otherwise)),
+                    Kind.NUMBER);
+        }
+
+        private Value or() {
+            Value left = and();
+            while (accept("or")) {
+                MethodHandle right = bool(and());
+                left = new Value(MethodHandles.guardWithTest(bool(left), constant(boolean.class, true), right),
+                        Kind.BOOLEAN);
+            }
+            return left;
+        }
+
+        private Value and() {
+            Value left = not();
+            while (accept("and")) {
+                MethodHandle right = bool(not());
+                left = new Value(MethodHandles.guardWithTest(bool(left), right, constant(boolean.class, false)),
+                        Kind.BOOLEAN);
+            }
+            return left;
+        }
+
+        private Value not() {
+            if (accept("not")) {
+                return new Value(negate(bool(not())), Kind.BOOLEAN);
+            }
+            return comparison();
+        }
+
+        private Value comparison() {
+            Value left = sum();
+            String operator = peek();
+            if (!List.of("=", "!=", "<", "<=", ">", ">=").contains(operator)) {
+                return left;
+            }
+            next++;
+            Value right = sum();
+            MethodHandle result;
+            if (left.kind == Kind.CHOICE || right.kind == Kind.CHOICE) {
+                result = sameChoice(left, right, operator);
+            } else if (left.kind == Kind.BOOLEAN && right.kind == Kind.BOOLEAN && operator.matches("!?=")) {
+                result = combine(findStatic("equal", methodType(boolean.class, boolean.class, boolean.class)),
+                        left.handle, right.handle);
+            } else {
+                Class<?> type = left.kind == Kind.INTEGER && right.kind == Kind.INTEGER ? int.class : number;
+                MethodHandle a = convert(left, type);
+                MethodHandle b = convert(right, type);
+                result = switch (operator) {
+                    case "<" -> combine(operation("less", type, boolean.class), a, b);
+                    case "<=" -> combine(operation("lessOrEqual", type, boolean.class), a, b);
+                    case ">" -> combine(operation("less", type, boolean.class), b, a);
+                    case ">=" -> combine(operation("lessOrEqual", type, boolean.class), b, a);
+                    default -> combine(operation("equal", type, boolean.class), a, b);
+                };
+            }
+            return new Value(operator.equals("!=") ? negate(result) : result, Kind.BOOLEAN);
+        }
+
+        private MethodHandle sameChoice(Value left, Value right, String operator) {
+            if (left.kind != Kind.CHOICE || right.kind != Kind.NAME || !operator.matches("!?=")) {
+                throw error("compare heating or location with = or != and a name, e.g. heating = oil");
+            }
+            Class<?> type = left.handle.type().returnType();
+            Object constant = null;
+            for (Object candidate : type.getEnumConstants()) {
+                if (((Enum<?>) candidate).name().equalsIgnoreCase(right.name)) {
+                    constant = candidate;
+                }
+            }
+            if (constant == null) {
+                throw error("unknown " + type.getSimpleName() + " " + right.name);
+            }
+            MethodHandle test = MethodHandles.insertArguments(
+                    findStatic("same", methodType(boolean.class, Object.class, Object.class)), 1, constant);
+            return MethodHandles.filterReturnValue(left.handle, test.asType(methodType(boolean.class, type)));
+        }
+
+        private Value sum() {
+            Value left = product();
+            while (peek().equals("+") || peek().equals("-")) {
+                String operation = tokens.get(next++).equals("+") ? "add" : "subtract";
+                Value right = product();
+                left = new Value(combine(operation(operation, number), numeric(left), numeric(right)),
+                        Kind.NUMBER);
+            }
+            return left;
+        }
+
+        private Value product() {
+            Value left = unary();
+            while (peek().equals("*") || peek().equals("/")) {
+                String operation = tokens.get(next++).equals("*") ? "multiply" : "divide";
+                Value right = unary();
+                left = new Value(combine(operation(operation, number), numeric(left), numeric(right)),
+                        Kind.NUMBER);
+            }
+            return left;
+        }
+
+        private Value unary() {
+            if (accept("-")) {
+                Value value = unary();
+                return new Value(MethodHandles.filterReturnValue(numeric(value),
+                        findStatic("negate", methodType(number, number))), Kind.NUMBER);
+            }
+            return primary();
+        }
+
+        private Value primary() {
+            if (next == tokens.size()) {
+                throw error("expected a value");
+            }
+            String token = tokens.get(next++);
+            if (token.equals("(")) {
+                Value value = choice(null);
+                if (!accept(")")) {
+                    throw error("missing )");
+                }
+                return value;
+            }
+            char first = token.charAt(0);
+            if (Character.isDigit(first) || first == '.') {
+                String digits = token.replace("_", "");
+                if (digits.indexOf('.') < 0 && digits.length() < 10) {
+                    return new Value(constant(int.class, Integer.parseInt(digits)), Kind.INTEGER);
+                }
+                return new Value(number == float.class ? constant(float.class, Float.parseFloat(digits))
+                        : constant(double.class, Double.parseDouble(digits)), Kind.NUMBER);
+            }
+            if (List.of("if", "else", "and", "or", "not").contains(token) || !Character.isLetter(first)
+                    && first != '_') {
+                throw error("expected a value before " + token);
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(token)) {
+                    Class<?> type = inputs.parameterType(i);
+                    MethodHandle input = MethodHandles.permuteArguments(MethodHandles.identity(type),
+                            inputs.changeReturnType(type), i);
+                    Kind kind = type == int.class ? Kind.INTEGER : type == float.class ? Kind.NUMBER
+                            : type == boolean.class ? Kind.BOOLEAN : Kind.CHOICE;
+                    return new Value(input, kind);
+                }
+            }
+            return new Value(token);
+        }
+
+        private Value constant(int value) {
+            return new Value(number == float.class ? constant(float.class, (float) value)
+                    : constant(double.class, (double) value), Kind.NUMBER);
+        }
+
+        private MethodHandle constant(Class<?> type, Object value) {
+            return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, inputs.parameterList());
+        }
+
+        private MethodHandle numeric(Value value) {
+            if (value.kind != Kind.INTEGER && value.kind != Kind.NUMBER) {
+                throw error(value.kind == Kind.NAME ? "unknown input " + value.name : "expected a number");
+            }
+            return convert(value, number);
+        }
+
+        private MethodHandle convert(Value value, Class<?> type) {
+            if (value.kind != Kind.INTEGER && value.kind != Kind.NUMBER) {
+                throw error(value.kind == Kind.NAME ? "unknown input " + value.name : "expected a number");
+            }
+            return value.handle.asType(value.handle.type().changeReturnType(type));
+        }
+
+        private MethodHandle bool(Value value) {
+            if (value.kind != Kind.BOOLEAN) {
+                throw error(value.kind == Kind.NAME ? "unknown input " + value.name : "expected a condition");
+            }
+            return value.handle;
+        }
+
+        private static MethodHandle negate(MethodHandle condition) {
+            return MethodHandles.filterReturnValue(condition,
+                    findStatic("not", methodType(boolean.class, boolean.class)));
+        }
+
+        private static MethodHandle operation(String name, Class<?> type) {
+            return operation(name, type, type);
+        }
+
+        private static MethodHandle operation(String name, Class<?> type, Class<?> result) {
+            return findStatic(name, methodType(result, type, type));
+        }
+
+        /**
+         * Applies a binary operation to two values computed from the same inputs.
+         */
+        private MethodHandle combine(MethodHandle operation, MethodHandle left, MethodHandle right) {
+            int count = inputs.parameterCount();
+            MethodHandle both = MethodHandles.collectArguments(
+                    MethodHandles.collectArguments(operation, 0, left), count, right);
+            int[] reorder = new int[2 * count];
+            for (int i = 0; i < count; i++) {
+                reorder[i] = i;
+                reorder[count + i] = i;
+            }
+            return MethodHandles.permuteArguments(both, inputs.changeReturnType(operation.type().returnType()),
+                    reorder);
+        }
+
+        private String peek() {
+            return next < tokens.size() ? tokens.get(next) : "";
+        }
+
+        private boolean accept(String token) {
+            if (peek().equals(token)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("line " + lineNumber + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code RenewalScheduler} class renews policies in bulk as their terms run out.
+ * <p>
+ * Policies are indexed by the day their term ends, in day buckets of an ordered map, so the policies due on or
+ * before a date are found without walking every user. The index follows policy changes through
+ * {@link PolicyEvents}: added policies are bucketed, and canceled or removed policies leave their bucket.
+ * A renewed policy is bucketed under its new end date and its old entry is simply skipped when that day comes up.
+ * <p>
+ * Due policies are renewed in parallel batches. Each one is re-priced with
+ * {@link Policy#calculatePremium(User, LocalDate)} as of its renewal date, against its owner's current policies
+ * and under the owner's monitor, and then starts a new one-year term on the day the old term ended. Premiums and
+ * terms therefore do not depend on when the job runs. Nothing is written to the console.
+ */
+public class RenewalScheduler implements PolicyEventListener, Closeable {
+    private static final int BATCH_SIZE = 4096;
+
+    private final UserRegistry registry;
+    private final ConcurrentSkipListMap<Long, Set<Policy>> buckets = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService timer;
+
+    /**
+     * Creates a scheduler for the policies of the users registered with {@link AuthManager}.
+     */
+    public RenewalScheduler() {
+        this(AuthManager.getRegistry());
+    }
+
+    /**
+     * Creates a scheduler for the policies of the users of the given registry.
+     * Call {@link #start()} to build the index and begin following policy changes.
+     *
+     * @param registry The registry whose users' policies are renewed.
+     */
+    public RenewalScheduler(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts following policy changes and indexes the active policies of every registered user.
+     *
+     * @return This scheduler.
+     */
+    public RenewalScheduler start() {
+        PolicyEvents.addListener(this);
+        registry.users().parallelStream().forEach(user -> {
+            for (Policy policy : user.copyPolicies()) {
+                if (policy.isActive()) {
+                    schedule(policy);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Runs {@link #renewDue(LocalDate)} for the current day of the {@link RatingClock} every day at the given time,
+     * on a background thread.
+     *
+     * @param runAt The local time of day the renewal job runs.
+     */
+    public synchronized void startDaily(LocalTime runAt) {
+        if (timer != null) {
+            throw new IllegalStateException("Daily renewals are already scheduled");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime firstRun = now.toLocalDate().atTime(runAt);
+        if (!firstRun.isAfter(now)) {
+            firstRun = firstRun.plusDays(1);
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "policy-renewals");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> renewDue(RatingClock.current().today()),
+                Duration.between(now, firstRun).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renews every active policy whose term ends on or before the given date. Policies so far behind that their
+     * renewed term has also ended are renewed again until they are current.
+     *
+     * @param asOf The date up to which terms are renewed.
+     * @return The number of renewals performed.
+     */
+    public synchronized long renewDue(LocalDate asOf) {
+        long lastDay = asOf.toEpochDay();
+        LongAdder renewed = new LongAdder();
+        List<Policy> due = new ArrayList<>();
+        while (true) {
+            due.clear();
+            for (Map.Entry<Long, Set<Policy>> bucket = buckets.firstEntry();
+                 bucket != null && bucket.getKey() <= lastDay;
+                 bucket = buckets.firstEntry()) {
+                Set<Policy> policies = buckets.remove(bucket.getKey());
+                if (policies == null) {
+                    continue;
+                }
+                for (Policy policy : policies) {
+                    // entries left behind by an earlier renewal no longer end on this day
+                    if (policy.getEndDate().toEpochDay() == bucket.getKey()) {
+                        due.add(policy);
+                    }
+                }
+            }
+            if (due.isEmpty()) {
+                return renewed.sum();
+            }
+
+            int batches = (due.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            IntStream.range(0, batches).parallel().forEach(batch -> {
+                int end = Math.min(due.size(), (batch + 1) * BATCH_SIZE);
+                int count = 0;
+                for (int i = batch * BATCH_SIZE; i < end; i++) {
+                    if (renew(due.get(i))) {
+                        count++;
+                    }
+                }
+                renewed.add(count);
+            });
+        }
+    }
+
+    /**
+     * Returns the active policies whose term ends between the given dates.
+     *
+     * @param from The first end date to include.
+     * @param to   The last end date to include.
+     * @return The policies due in the range, ordered by end date.
+     */
+    public List<Policy> getDuePolicies(LocalDate from, LocalDate to) {
+        List<Policy> due = new ArrayList<>();
+        for (Map.Entry<Long, Set<Policy>> bucket
+                : buckets.subMap(from.toEpochDay(), true, to.toEpochDay(), true).entrySet()) {
+            for (Policy policy : bucket.getValue()) {
+                if (policy.isActive() && policy.getEndDate().toEpochDay() == bucket.getKey()) {
+                    due.add(policy);
+                }
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Stops following policy changes and cancels the daily renewal job, if any.
+     */
+    @Override
+    public synchronized void close() {
+        PolicyEvents.removeListener(this);
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    @Override
+    public void policyAdded(User user, Policy policy) {
+        if (policy.isActive()) {
+            schedule(policy);
+        }
+    }
+
+    @Override
+    public void policyCanceled(User user, Policy policy) {
+        unschedule(policy);
+    }
+
+    @Override
+    public void policyRemoved(User user, Policy policy) {
+        unschedule(policy);
+    }
+
+    @Override
+    public void policyRenewed(User user, Policy policy) {
+        if (policy.isActive()) {
+            schedule(policy);
+        }
+    }
+
+    /**
+     * Re-prices and renews one due policy, skipping policies that were canceled or removed in the meantime.
+     * Holds the owner's monitor, so no session cancels, removes or re-prices the policy halfway through.
+     */
+    private static boolean renew(Policy policy) {
+        User owner = policy.getOwner();
+        if (owner == null) {
+            return false;
+        }
+        synchronized (owner) {
+            if (policy.getOwner() != owner || !policy.isActive()) {
+                return false;
+            }
+            // price first, as of the new term's first day, so listeners notified of the renewal see the new premium
+            policy.calculatePremium(owner, policy.getEndDate());
+            policy.renew(policy.getEndDate());
+        }
+        return true;
+    }
+
+    /**
+     * Adds a policy to the bucket of its end date. {@link #renewDue} removes a bucket before reading it, so a
+     * policy added to a bucket that is no longer in the map would be lost; it is added again to a new bucket.
+     */
+    private void schedule(Policy policy) {
+        long day = policy.getEndDate().toEpochDay();
+        while (true) {
+            Set<Policy> bucket = buckets.computeIfAbsent(day, key -> ConcurrentHashMap.newKeySet());
+            bucket.add(policy);
+            if (buckets.get(day) == bucket) {
+                return;
+            }
+        }
+    }
+
+    private void unschedule(Policy policy) {
+        Set<Policy> bucket = buckets.get(policy.getEndDate().toEpochDay());
+        if (bucket != null) {
+            bucket.remove(policy);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code RepricingEngine} class keeps premiums current when a user's other policies change.
+ * <p>
+ * A policy's premium may depend on facts about its owner's account, e.g. auto policies are discounted while the
+ * owner holds an active home policy. The dependencies form a graph from each {@link AccountFact} to the policies
+ * that read it ({@link Policy#dependsOn(AccountFact)}), and from each policy to the fact it provides
+ * ({@link Policy#providedFact()}). The engine follows policy changes through {@link PolicyEvents}; when an added,
+ * canceled or removed policy makes its fact change state, e.g. the active home policy count goes from 0 to 1, only
+ * the owner's active policies depending on that fact are re-priced. Changes that leave every fact as it was, such
+ * as adding a second home policy, re-price nothing. Each premium that actually changes is reported with
+ * {@link PolicyEventListener#policyRepriced(User, Policy)}.
+ * <p>
+ * Changes made inside {@link #inTransaction(Runnable)} are re-priced once, when the outermost transaction ends,
+ * and only for facts whose final state differs from their state when the transaction first touched them; a
+ * policy swapped for another of the same kind re-prices nothing. Like the other listeners, the engine runs on the
+ * thread that changed the policies. A user's dependents are collected and re-priced while holding the user's
+ * monitor, so a transaction ending outside {@code synchronized (user)} cannot race other changes to that user.
+ */
+public class RepricingEngine implements PolicyEventListener, Closeable {
+    private static final LongAdder repricings = Metrics.counter("policy.reprice");
+    private static final ThreadLocal<Transaction> transactions = new ThreadLocal<>();
+
+    /**
+     * Starts following policy changes. Start the engine after accounts have been recovered, so that recovered
+     * premiums are kept as they were journaled.
+     *
+     * @return This engine.
+     */
+    public RepricingEngine start() {
+        PolicyEvents.addListener(this);
+        return this;
+    }
+
+    /**
+     * Stops following policy changes.
+     */
+    @Override
+    public void close() {
+        PolicyEvents.removeListener(this);
+    }
+
+    /**
+     * Runs a unit of work as one transaction: the policies affected by its changes are re-priced once, when it
+     * ends, even if it ends with an exception. Transactions nest; only the outermost one re-prices.
+     *
+     * @param work The changes to make.
+     */
+    public static void inTransaction(Runnable work) {
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            transaction = new Transaction();
+            transactions.set(transaction);
+        }
+        transaction.depth++;
+        try {
+            work.run();
+        } finally {
+            if (--transaction.depth == 0) {
+                transactions.remove();
+                transaction.commit();
+            }
+        }
+    }
+
+    /**
+     * Runs changes that must keep every premium as it is, e.g. restoring or removing a whole account. Changes
+     * recorded earlier in an enclosing transaction are discarded as well.
+     *
+     * @param work The changes to make.
+     */
+    static void withoutRepricing(Runnable work) {
+        inTransaction(() -> {
+            try {
+                work.run();
+            } finally {
+                transactions.get().initialStates.clear();
+            }
+        });
+    }
+
+    @Override
+    public void policyAdded(User user, Policy policy) {
+        if (policy.isActive()) {
+            factChanged(user, policy.providedFact(), 1);
+        }
+    }
+
+    @Override
+    public void policyCanceled(User user, Policy policy) {
+        if (user != null) {
+            factChanged(user, policy.providedFact(), -1);
+        }
+    }
+
+    @Override
+    public void policyRemoved(User user, Policy policy) {
+        if (policy.isActive()) {
+            factChanged(user, policy.providedFact(), -1);
+        }
+    }
+
+    /**
+     * Handles a change of one to the number of active policies providing a fact. The change has already been
+     * applied to the user's counts, so a removal always leaves a fact that held before.
+     */
+    private static void factChanged(User user, AccountFact fact, int delta) {
+        if (fact == null) {
+            return;
+        }
+        boolean holds = fact.holds(user);
+        boolean held = delta < 0 || fact.count(user) > 1;
+        Transaction transaction = transactions.get();
+        if (transaction != null) {
+            transaction.record(user, fact, held);
+        } else if (held != holds) {
+            List<Policy> affected = new ArrayList<>();
+            collectDependents(user, fact, affected);
+            reprice(user, affected);
+        }
+    }
+
+    /**
+     * Adds the user's active policies depending on a fact to the affected ones. The caller holds the user's monitor.
+     */
+    private static void collectDependents(User user, AccountFact fact, List<Policy> affected) {
+        for (Policy policy : user.getPolicies()) {
+            if (policy.isActive() && policy.dependsOn(fact) && !affected.contains(policy)) {
+                affected.add(policy);
+            }
+        }
+    }
+
+    private static void reprice(User user, List<Policy> affected) {
+        for (Policy policy : affected) {
+            float previous = policy.getTotalPremium();
+            policy.calculatePremium(user);
+            if (Float.floatToIntBits(policy.getTotalPremium()) != Float.floatToIntBits(previous)) {
+                repricings.increment();
+                PolicyEvents.policyRepriced(user, policy);
+            }
+        }
+    }
+
+    /**
+     * The account facts touched by the open transactions of one thread, with the state each had when first
+     * touched.
+     */
+    private static final class Transaction {
+        private final Map<User, EnumMap<AccountFact, Boolean>> initialStates = new LinkedHashMap<>();
+        private int depth;
+
+        void record(User user, AccountFact fact, boolean held) {
+            initialStates.computeIfAbsent(user, u -> new EnumMap<>(AccountFact.class)).putIfAbsent(fact, held);
+        }
+
+        void commit() {
+            List<Policy> affected = new ArrayList<>();
+            for (Map.Entry<User, EnumMap<AccountFact, Boolean>> entry : initialStates.entrySet()) {
+                User user = entry.getKey();
+                affected.clear();
+                synchronized (user) {
+                    for (Map.Entry<AccountFact, Boolean> fact : entry.getValue().entrySet()) {
+                        if (fact.getKey().holds(user) != fact.getValue()) {
+                            collectDependents(user, fact.getKey(), affected);
+                        }
+                    }
+                    reprice(user, affected);
+                }
+            }
+        }
+    }
+}
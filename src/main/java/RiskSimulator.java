@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code RiskSimulator} class stress-tests pricing with Monte Carlo simulation.
+ * <p>
+ * Each scenario is one policy year of a synthetic book: home and auto policies with random rating inputs
+ * (home age, heating type, location, home value, liability limit, driver age, accident count, vehicle year and
+ * a multi-policy discount for owners holding both lines). Every policy is priced with the premium formulas
+ * behind {@link HomePolicy#calculatePremium(User)} and {@link AutoPolicy#calculatePremium(User)} and then
+ * suffers Poisson claims with log-normal severities, driven by the policy's risk factors and by shocks drawn
+ * once per scenario (a catastrophe year for homes, claim inflation, auto claim frequency).
+ * <p>
+ * Policies are generated, priced and dropped in chunks, so memory does not grow with the size of the run.
+ * Chunks are simulated in parallel on all cores, each from its own {@link SplittableRandom} stream split off its
+ * scenario's stream, which in turn is split off a root stream seeded by the caller. Chunk results are merged in
+ * a fixed order, so a run is reproducible from its seed on any number of cores, for the same rating tables and
+ * the same current year of the {@link RatingClock}.
+ * <p>
+ * The claim model is illustrative, not actuarial: its constants are chosen to give loss ratios in a plausible
+ * range and to react to the same risk factors the premium formulas rate.
+ */
+public class RiskSimulator {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int WAVE_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static final double HOME_SHARE = 0.5;
+    private static final double BUNDLE_RATE = 0.25;
+    private static final double HIGH_LIABILITY_RATE = 0.3;
+    private static final double RURAL_RATE = 0.3;
+    private static final double OIL_RATE = 0.2;
+    private static final double WOOD_RATE = 0.1;
+    private static final double MEDIAN_HOME_VALUE = 300_000;
+
+    private static final double HOME_CLAIM_FREQUENCY = 0.042;
+    private static final double HOME_SEVERITY_SHARE = 0.025;   // median claim as a share of the home value
+    private static final double HOME_SEVERITY_SIGMA = 1.1;
+    private static final double AUTO_CLAIM_FREQUENCY = 0.085;
+    private static final double AUTO_SEVERITY_MEDIAN = 6_000;
+    private static final double AUTO_SEVERITY_SIGMA = 0.8;
+    private static final double CATASTROPHE_RATE = 0.05;
+
+    private final long seed;
+
+    /**
+     * Creates a simulator.
+     *
+     * @param seed The seed from which every random draw of a run is derived.
+     */
+    public RiskSimulator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the simulation.
+     *
+     * @param scenarios           The number of scenarios (simulated policy years).
+     * @param policiesPerScenario The number of policies in the book of each scenario.
+     * @return The premium and loss distributions of the run.
+     */
+    public SimulationResult run(int scenarios, long policiesPerScenario) {
+        if (scenarios < 1 || policiesPerScenario < 1) {
+            throw new IllegalArgumentException("At least one scenario and one policy per scenario are required");
+        }
+        long start = System.nanoTime();
+        int currentYear = RatingClock.current().currentYear();
+        SplittableRandom root = new SplittableRandom(seed);
+        Totals totals = new Totals();
+        List<Chunk> wave = new ArrayList<>(WAVE_SIZE);
+
+        for (int s = 0; s < scenarios; s++) {
+            Scenario scenario = new Scenario(root.split());
+            for (long first = 0; first < policiesPerScenario; first += CHUNK_SIZE) {
+                int count = (int) Math.min(CHUNK_SIZE, policiesPerScenario - first);
+                wave.add(new Chunk(scenario, scenario.random.split(), count, currentYear,
+                        first + count == policiesPerScenario));
+                if (wave.size() == WAVE_SIZE) {
+                    runWave(wave, totals);
+                }
+            }
+        }
+        runWave(wave, totals);
+
+        return new SimulationResult(seed, scenarios, totals.policies, totals.claims, totals.policyPremiums,
+                totals.scenarioPremiums, totals.lossRatios, totals.premium, totals.loss, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs a simulation from the command line and prints the result.
+     *
+     * @param args {@code scenarios policiesPerScenario seed}. Defaults: {@code 1000 100000 42}, 10^8 policies.
+     */
+    public static void main(String[] args) {
+        int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long policiesPerScenario = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        SimulationResult result = new RiskSimulator(seed).run(scenarios, policiesPerScenario);
+        System.out.println(result);
+        System.out.println("Policy premium:          " + result.getPolicyPremiums());
+        System.out.println("Scenario total premium:  " + result.getTotalPremiums());
+        System.out.println("Scenario loss ratio:     " + result.getLossRatios());
+    }
+
+    /**
+     * Simulates the chunks of a wave in parallel, then merges them in order and clears the wave.
+     */
+    private static void runWave(List<Chunk> wave, Totals totals) {
+        wave.parallelStream().forEach(Chunk::simulate);
+        for (Chunk chunk : wave) {
+            totals.add(chunk);
+        }
+        wave.clear();
+    }
+
+    private static double logNormal(SplittableRandom random, double median, double sigma) {
+        return median * Math.exp(sigma * random.nextGaussian());
+    }
+
+    /**
+     * Draws from a Poisson distribution by multiplying uniforms, which is fast for the small means used here.
+     */
+    private static int poisson(SplittableRandom random, double mean) {
+        double limit = Math.exp(-mean);
+        int events = 0;
+        double product = random.nextDouble();
+        while (product > limit) {
+            events++;
+            product *= random.nextDouble();
+        }
+        return events;
+    }
+
+    /**
+     * The shocks shared by all policies of one scenario.
+     */
+    private static final class Scenario {
+        final SplittableRandom random;
+        final double homeFrequencyFactor;
+        final double autoFrequencyFactor;
+        final double severityFactor;
+
+        Scenario(SplittableRandom random) {
+            this.random = random;
+            this.homeFrequencyFactor = random.nextDouble() < CATASTROPHE_RATE ? 2 + 4 * random.nextDouble() : 1;
+            this.autoFrequencyFactor = logNormal(random, 1, 0.1);
+            this.severityFactor = logNormal(random, 1, 0.08);
+        }
+    }
+
+    /**
+     * A run of consecutive policies of one scenario, simulated from its own random stream.
+     */
+    private static final class Chunk {
+        final Scenario scenario;
+        final SplittableRandom random;
+        final int count;
+        final int currentYear;
+        final boolean lastOfScenario;
+        final QuantileSketch premiums = new QuantileSketch();
+        double premium;
+        double loss;
+        long claims;
+
+        Chunk(Scenario scenario, SplittableRandom random, int count, int currentYear, boolean lastOfScenario) {
+            this.scenario = scenario;
+            this.random = random;
+            this.count = count;
+            this.currentYear = currentYear;
+            this.lastOfScenario = lastOfScenario;
+        }
+
+        void simulate() {
+            for (int i = 0; i < count; i++) {
+                boolean bundled = random.nextDouble() < BUNDLE_RATE;
+                float policyPremium = random.nextDouble() < HOME_SHARE ? home(bundled) : auto(bundled);
+                premiums.add(policyPremium);
+                premium += policyPremium;
+            }
+        }
+
+        private float home(boolean autoDiscount) {
+            int homeAge = random.nextInt(101);
+            double draw = random.nextDouble();
+            HeatingType heatingType = draw < OIL_RATE ? HeatingType.OIL
+                    : draw < OIL_RATE + WOOD_RATE ? HeatingType.WOOD : HeatingType.OTHER;
+            LocationType location = random.nextDouble() < RURAL_RATE ? LocationType.RURAL : LocationType.URBAN;
+            float homeValue = 1000f * Math.round(Math.min(5_000_000, Math.max(50_000,
+                    logNormal(random, MEDIAN_HOME_VALUE, 0.5))) / 1000);
+            float liabilityLimit = random.nextDouble() < HIGH_LIABILITY_RATE ? 2_000_000f : 1_000_000f;
+            float policyPremium = HomePolicy.computePremium(homeValue, homeAge, heatingType, location,
+                    liabilityLimit, autoDiscount);
+
+            double heatingRisk = heatingType == HeatingType.WOOD ? 1.6 : heatingType == HeatingType.OIL ? 1.25 : 1;
+            double locationRisk = location == LocationType.RURAL ? 1.2 : 1;
+            double frequency = HOME_CLAIM_FREQUENCY * scenario.homeFrequencyFactor * heatingRisk * locationRisk
+                    * (1 + homeAge / 80.0);
+            for (int claim = poisson(random, frequency); claim > 0; claim--) {
+                double severity = logNormal(random, HOME_SEVERITY_SHARE * homeValue, HOME_SEVERITY_SIGMA);
+                loss += Math.min(homeValue, severity * scenario.severityFactor);
+                claims++;
+            }
+            return policyPremium;
+        }
+
+        private float auto(boolean homeDiscount) {
+            int driverAge = 16 + random.nextInt(70);
+            int accidentCount = poisson(random, 0.3);
+            int vehicleYear = currentYear - random.nextInt(21);
+            int vehicleAge = currentYear - vehicleYear;
+            float policyPremium = AutoPolicy.computePremium(driverAge, accidentCount, vehicleAge, homeDiscount);
+
+            double driverRisk = driverAge < 25 ? 2.0 : driverAge > 70 ? 1.3 : 1;
+            double frequency = AUTO_CLAIM_FREQUENCY * scenario.autoFrequencyFactor * driverRisk
+                    * (1 + 0.4 * Math.min(accidentCount, 5)) * (vehicleAge > 10 ? 1.15 : 1);
+            double vehicleValueFactor = Math.max(0.4, 1 - 0.04 * vehicleAge);
+            for (int claim = poisson(random, frequency); claim > 0; claim--) {
+                double severity = logNormal(random, AUTO_SEVERITY_MEDIAN * vehicleValueFactor, AUTO_SEVERITY_SIGMA);
+                loss += severity * scenario.severityFactor;
+                claims++;
+            }
+            return policyPremium;
+        }
+    }
+
+    /**
+     * The running totals of a simulation, fed with chunks in a fixed order.
+     */
+    private static final class Totals {
+        final QuantileSketch policyPremiums = new QuantileSketch();
+        final QuantileSketch scenarioPremiums = new QuantileSketch();
+        final QuantileSketch lossRatios = new QuantileSketch();
+        long policies;
+        long claims;
+        double premium;
+        double loss;
+        double scenarioPremium;
+        double scenarioLoss;
+
+        void add(Chunk chunk) {
+            policyPremiums.merge(chunk.premiums);
+            policies += chunk.count;
+            claims += chunk.claims;
+            scenarioPremium += chunk.premium;
+            scenarioLoss += chunk.loss;
+            if (chunk.lastOfScenario) {
+                scenarioPremiums.add(scenarioPremium);
+                lossRatios.add(scenarioLoss / scenarioPremium);
+                premium += scenarioPremium;
+                loss += scenarioLoss;
+                scenarioPremium = 0;
+                scenarioLoss = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code SessionTokens} class remembers recently verified logins as short-lived session tokens, so that
+ * requests after the first one are authenticated by a map lookup instead of another password hash.
+ * <p>
+ * Tokens are 256 random bits, URL-safe base64 encoded. A token is valid for a fixed time after it was issued and
+ * can be revoked earlier. The number of live tokens is bounded: when the limit is reached, expired tokens are
+ * swept, and if that is not enough, arbitrary tokens are dropped, whose holders simply log in again.
+ */
+public class SessionTokens {
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(15);
+    public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom random = new SecureRandom();
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private final long timeToLiveNanos;
+    private final int maxSessions;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a token cache with the default time to live and size limit.
+     */
+    public SessionTokens() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SESSIONS);
+    }
+
+    /**
+     * Creates a token cache.
+     *
+     * @param timeToLive  How long a token stays valid after it was issued.
+     * @param maxSessions The maximum number of live tokens.
+     */
+    public SessionTokens(Duration timeToLive, int maxSessions) {
+        if (timeToLive.isNegative() || timeToLive.isZero() || maxSessions < 1) {
+            throw new IllegalArgumentException("Time to live and session limit must be positive");
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Issues a new token for a user whose password was just verified.
+     *
+     * @param user The authenticated user.
+     * @return The session token.
+     */
+    public String issue(User user) {
+        long now = System.nanoTime();
+        if (sessions.size() >= maxSessions) {
+            evict(now);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = encoder.encodeToString(bytes);
+        sessions.put(token, new Session(user, now + timeToLiveNanos));
+        return token;
+    }
+
+    /**
+     * Looks up the user a token was issued to.
+     *
+     * @param token The session token.
+     * @return The user, or {@code null} if the token is unknown, expired or revoked.
+     */
+    public User lookup(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (System.nanoTime() - session.expiresAt >= 0) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session.user;
+    }
+
+    /**
+     * Revokes a token, e.g. on logout.
+     *
+     * @param token The session token.
+     * @return {@code true} if the token was live.
+     */
+    public boolean revoke(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+
+    /**
+     * Returns the number of tokens held, including expired ones not swept yet.
+     *
+     * @return The number of tokens.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private void evict(long now) {
+        sessions.values().removeIf(session -> now - session.expiresAt >= 0);
+        Iterator<Map.Entry<String, Session>> victims = sessions.entrySet().iterator();
+        while (sessions.size() >= maxSessions && victims.hasNext()) {
+            victims.next();
+            victims.remove();
+        }
+    }
+
+    private static final class Session {
+        final User user;
+        final long expiresAt;
+
+        Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
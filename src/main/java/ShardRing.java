@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The {@code ShardRing} class assigns users to worker nodes by consistent hashing of their usernames.
+ * <p>
+ * Every node is placed on a 64-bit hash ring at {@link #DEFAULT_VIRTUAL_NODES} pseudo-random points, and a user
+ * belongs to the node owning the first point at or after the hash of the username. Adding a node therefore only
+ * moves the users that fall on the new node's points, about {@code 1 / nodes} of them, and every other user stays
+ * where it is. Nodes are identified by name, e.g. {@code host:port}; the assignment depends only on the node names
+ * and the username, so every process computes the same owner. A ring is immutable.
+ */
+public class ShardRing {
+    /**
+     * The number of points each node occupies on the ring.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Creates a ring with {@link #DEFAULT_VIRTUAL_NODES} points per node.
+     *
+     * @param nodes The node names, at least one, without duplicates.
+     */
+    public ShardRing(List<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Creates a ring.
+     *
+     * @param nodes        The node names, at least one, without duplicates.
+     * @param virtualNodes The number of points per node; more points spread users more evenly.
+     * @throws IllegalArgumentException If there is no node, a node is listed twice or {@code virtualNodes} is not
+     *                                  positive.
+     */
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one node and one point per node");
+        }
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("Duplicate node in " + nodes);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.virtualNodes = virtualNodes;
+
+        long[] keys = new long[nodes.size() * virtualNodes];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                keys[node * virtualNodes + point] = hash(nodes.get(node) + '#' + point);
+            }
+        }
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+        this.points = new long[keys.length];
+        this.owners = new int[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = keys[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    /**
+     * Returns a ring with one more node and the same number of points per node.
+     *
+     * @param node The name of the node to add.
+     * @return The new ring.
+     */
+    public ShardRing withNode(String node) {
+        List<String> grown = new ArrayList<>(nodes);
+        grown.add(node);
+        return new ShardRing(grown, virtualNodes);
+    }
+
+    /**
+     * Finds the node a user belongs to.
+     *
+     * @param username The username.
+     * @return The name of the owning node.
+     */
+    public String nodeFor(String username) {
+        return nodes.get(indexFor(username));
+    }
+
+    /**
+     * Finds the position, in {@link #getNodes()}, of the node a user belongs to.
+     *
+     * @param username The username.
+     * @return The index of the owning node.
+     */
+    public int indexFor(String username) {
+        int point = Arrays.binarySearch(points, hash(username));
+        if (point < 0) {
+            point = -point - 1;
+        }
+        return owners[point == points.length ? 0 : point];
+    }
+
+    /**
+     * Returns the nodes of the ring in the order they were given.
+     *
+     * @return The node names.
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Hashes a string with 64-bit FNV-1a over its characters, followed by a finalizer that spreads similar inputs
+     * (e.g. {@code user1} and {@code user2}) over the whole ring.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+}
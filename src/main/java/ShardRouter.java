@@ -0,0 +1,729 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code ShardRouter} class spreads users over several worker processes, each an {@link InsuranceServer}
+ * serving the {@link CommandSession} protocol, so the users and policies held are no longer limited by one heap.
+ * <p>
+ * Clients speak the command protocol to the router as they would to a single server. A {@link ShardRing} assigns
+ * every username to one worker; {@code LOGIN} and {@code REGISTER} go to the worker owning the username, and the
+ * commands of a logged-in session to the worker owning its user. Quotes need no user data and go to the session's
+ * worker or, before a login, to the workers in turn. {@code PORTFOLIO} is sent to every worker and the
+ * {@link PortfolioSummary summaries} are merged. Consecutive commands for the same worker are forwarded as one
+ * request, the requests for all workers are sent before any response is awaited, and responses are returned in
+ * command order. A {@code LOGIN} is the exception: the commands after it are routed only once it has succeeded
+ * or failed. Each client connection has its own connection to each worker, so worker sessions and their
+ * logins map one to one onto client sessions. Session tokens are issued by the workers, so {@code LOGIN <token>}
+ * is not supported through the router; clients log in with their password again after reconnecting.
+ * <p>
+ * {@link #addWorker(String)} adds a worker and moves the users the new ring assigns to it from the other workers,
+ * blocking client requests while it runs. Sessions of moved users must log in again. Moving users takes the admin
+ * commands of {@link CommandSession}, so the router must be given the admin secret the workers were started with,
+ * by default from the {@code taylor.admin.secret} system property. Clients cannot send admin commands through the
+ * router.
+ */
+public class ShardRouter implements Closeable {
+    /**
+     * The number of users moved per round trip while rebalancing.
+     */
+    public static final int REBALANCE_BATCH_SIZE = 64;
+
+    private static final LatencyHistogram requestLatency = Metrics.histogram("router.request");
+    private static final LongAdder usersMoved = Metrics.counter("router.users.moved");
+    private static final Pattern LISTENING = Pattern.compile("listening on port (\\d+)");
+
+    private static final byte[] LOGIN = ascii("LOGIN");
+    private static final byte[] REGISTER = ascii("REGISTER");
+    private static final byte[] QUOTE_HOME = ascii("QUOTE_HOME");
+    private static final byte[] QUOTE_AUTO = ascii("QUOTE_AUTO");
+    private static final byte[] ADD_POLICY = ascii("ADD_POLICY");
+    private static final byte[] LIST = ascii("LIST");
+    private static final byte[] CANCEL = ascii("CANCEL");
+    private static final byte[] PORTFOLIO = ascii("PORTFOLIO");
+    private static final byte[] PORTFOLIO_REQUEST = ascii("PORTFOLIO\n");
+
+    private final InsuranceServer server;
+    private final String adminSecret;
+    private final ReentrantReadWriteLock rebalancing = new ReentrantReadWriteLock();
+    private volatile ShardRing ring;
+
+    /**
+     * Creates a router listening on the given port, with the admin secret of the {@code taylor.admin.secret}
+     * system property.
+     *
+     * @param port    The TCP port to listen on, or 0 to pick a free port.
+     * @param workers The workers as {@code host:port}, at least one.
+     * @throws IOException If the port cannot be opened.
+     */
+    public ShardRouter(int port, List<String> workers) throws IOException {
+        this(port, workers, System.getProperty("taylor.admin.secret"));
+    }
+
+    /**
+     * Creates a router listening on the given port.
+     *
+     * @param port        The TCP port to listen on, or 0 to pick a free port.
+     * @param workers     The workers as {@code host:port}, at least one.
+     * @param adminSecret The admin secret of the workers, or {@code null} if workers cannot be added.
+     * @throws IOException If the port cannot be opened.
+     */
+    public ShardRouter(int port, List<String> workers, String adminSecret) throws IOException {
+        this.ring = new ShardRing(workers);
+        this.adminSecret = adminSecret;
+        this.server = new InsuranceServer(port, InsuranceServer.DEFAULT_MAX_SESSIONS, null, (in, out) -> {
+            try (RouterSession session = new RouterSession()) {
+                CommandSession.serveFrames(in, out, session);
+            }
+        });
+    }
+
+    /**
+     * Accepts client connections until the router is closed.
+     */
+    public void serve() {
+        server.serve();
+    }
+
+    /**
+     * Starts accepting client connections on a background virtual thread.
+     *
+     * @return The thread running the accept loop.
+     */
+    public Thread start() {
+        return server.start();
+    }
+
+    /**
+     * Returns the port the router is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Returns the ring currently assigning users to workers.
+     *
+     * @return The ring.
+     */
+    public ShardRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Adds a worker and moves to it every user the new ring assigns to it. Users are exported from each old
+     * worker, adopted by their new worker and only then dropped from the old one, so a failure leaves every user
+     * on at least one worker; calling the method again with the same worker finishes the move. Client requests
+     * wait until the move is complete, so rebalancing is best done when the system is quiet.
+     *
+     * @param worker The new worker as {@code host:port}.
+     * @return The number of users moved.
+     * @throws IOException If a worker cannot be reached or refuses a command, or the router has no admin secret.
+     */
+    public synchronized int addWorker(String worker) throws IOException {
+        if (adminSecret == null) {
+            throw new IOException("Rebalancing needs the admin secret of the workers");
+        }
+        ShardRing current = ring;
+        ShardRing next = current.getNodes().contains(worker) ? current : current.withNode(worker);
+        String nodes = String.join(" ", next.getNodes());
+        int moved = 0;
+        rebalancing.writeLock().lock();
+        Map<String, CommandClient> clients = new HashMap<>();
+        try {
+            for (String source : current.getNodes()) {
+                while (true) {
+                    String exported = expectOk(adminClient(clients, source).execute(
+                            List.of("EXPORT " + REBALANCE_BATCH_SIZE + " " + source + " " + nodes)).get(0));
+                    String[] fields = exported.split(" ");
+                    int count = Integer.parseInt(fields[0]);
+                    if (count == 0) {
+                        break;
+                    }
+                    Map<String, List<String>> adoptions = new LinkedHashMap<>();
+                    List<String> drops = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        String user = fields[1 + 2 * i];
+                        adoptions.computeIfAbsent(next.nodeFor(CommandSession.decodeUsername(user)),
+                                node -> new ArrayList<>()).add("ADOPT " + fields[2 + 2 * i]);
+                        drops.add("DROP " + user);
+                    }
+                    for (Map.Entry<String, List<String>> adoption : adoptions.entrySet()) {
+                        adminClient(clients, adoption.getKey()).execute(adoption.getValue())
+                                .forEach(ShardRouter::expectOk);
+                    }
+                    adminClient(clients, source).execute(drops).forEach(ShardRouter::expectOk);
+                    moved += count;
+                    usersMoved.add(count);
+                }
+            }
+            ring = next;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("Rebalancing failed: " + e.getMessage(), e);
+        } finally {
+            rebalancing.writeLock().unlock();
+            for (CommandClient client : clients.values()) {
+                client.close();
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Totals the users and active policies of all workers.
+     *
+     * @return The merged summary.
+     * @throws IOException If a worker cannot be reached.
+     */
+    public PortfolioSummary portfolio() throws IOException {
+        Map<String, CommandClient> clients = new HashMap<>();
+        rebalancing.readLock().lock();
+        try {
+            List<String> nodes = ring.getNodes();
+            for (String node : nodes) {
+                client(clients, node).send(PORTFOLIO_REQUEST, 0, PORTFOLIO_REQUEST.length);
+            }
+            PortfolioSummary total = new PortfolioSummary();
+            for (String node : nodes) {
+                String reply = new String(clients.get(node).receive(), StandardCharsets.US_ASCII).trim();
+                total.add(PortfolioSummary.parse(expectOk(reply)));
+            }
+            return total;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("Portfolio failed: " + e.getMessage(), e);
+        } finally {
+            rebalancing.readLock().unlock();
+            for (CommandClient client : clients.values()) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and ends all client sessions.
+     *
+     * @throws IOException If the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private static CommandClient client(Map<String, CommandClient> clients, String node) throws IOException {
+        CommandClient client = clients.get(node);
+        if (client == null) {
+            int colon = node.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IOException("Worker is not host:port: " + node);
+            }
+            client = new CommandClient(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+            clients.put(node, client);
+        }
+        return client;
+    }
+
+    /**
+     * Returns a connection to a worker that has been sent the admin secret.
+     */
+    private CommandClient adminClient(Map<String, CommandClient> clients, String node) throws IOException {
+        CommandClient client = clients.get(node);
+        if (client == null) {
+            client = client(clients, node);
+            expectOk(client.execute(List.of("ADMIN " + adminSecret)).get(0));
+        }
+        return client;
+    }
+
+    /**
+     * Returns the fields of an {@code OK} response after the {@code OK}.
+     */
+    private static String expectOk(String response) {
+        if (!response.startsWith("OK")) {
+            throw new IllegalStateException(response);
+        }
+        return response.length() > 3 ? response.substring(3) : "";
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The commands of one request that are answered together: consecutive commands for one worker, a
+     * {@code PORTFOLIO} sent to all workers, or one command answered by the router itself.
+     */
+    private static final class Run {
+        String worker;
+        boolean scatter;
+        int start;
+        int end;
+        int commands;
+        String reply;
+        String login;
+        boolean failed;
+    }
+
+    /**
+     * The router side of one client connection, holding that client's connections to the workers.
+     */
+    private final class RouterSession implements CommandSession.RequestHandler, Closeable {
+        private final Map<String, CommandClient> workers = new HashMap<>();
+        private final Set<String> failed = new HashSet<>();
+        private final List<Run> runs = new ArrayList<>();
+        private ByteBuffer response = ByteBuffer.allocate(4096);
+        private ByteBuffer request;
+        private int runCount;
+        private String username;
+        private int nextQuoteWorker;
+
+        @Override
+        public ByteBuffer execute(ByteBuffer request) {
+            long start = System.nanoTime();
+            this.request = request;
+            response.clear();
+            rebalancing.readLock().lock();
+            try {
+                ShardRing current = ring;
+                for (int position = request.position(); position < request.limit(); ) {
+                    position = split(current, position);
+                    for (int i = 0; i < runCount; i++) {
+                        send(runs.get(i), current);
+                    }
+                    for (int i = 0; i < runCount; i++) {
+                        Run run = runs.get(i);
+                        String reply = receive(run, current);
+                        if (run.login != null && reply != null && reply.startsWith("OK")) {
+                            username = run.login;
+                        }
+                    }
+                }
+            } finally {
+                rebalancing.readLock().unlock();
+                for (String worker : failed) {
+                    closeQuietly(workers.remove(worker));
+                }
+                failed.clear();
+                this.request = null;
+            }
+            requestLatency.recordSince(start);
+            return response.flip();
+        }
+
+        @Override
+        public void close() {
+            for (CommandClient client : workers.values()) {
+                closeQuietly(client);
+            }
+            workers.clear();
+        }
+
+        /**
+         * Splits the request into runs, from the given position up to and including the next {@code LOGIN} with a
+         * password. The commands after such a login are split only once its response shows which user they act
+         * for, since a worker session may still hold an earlier login of the user that failed to log in.
+         *
+         * @return The position of the first command not split.
+         */
+        private int split(ShardRing current, int from) {
+            runCount = 0;
+            Run last = null;
+            int limit = request.limit();
+            for (int lineStart = from; lineStart < limit; ) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && request.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = Math.min(lineEnd + 1, limit);
+                int commandStart = skipSpaces(lineStart, lineEnd);
+                int commandEnd = tokenEnd(commandStart, lineEnd);
+                if (commandStart == commandEnd || commandStart + 1 == lineEnd && request.get(commandStart) == '\r') {
+                    // blank lines get no response; keep them in a forwarded run so it stays contiguous
+                    if (last != null && last.worker != null && !last.scatter) {
+                        last.end = next;
+                    }
+                    lineStart = next;
+                    continue;
+                }
+                int argumentStart = skipSpaces(commandEnd, lineEnd);
+                int argumentEnd = trimCarriageReturn(tokenEnd(argumentStart, lineEnd), lineEnd);
+                int argumentCount = countTokens(commandStart, trimCarriageReturn(lineEnd, lineEnd)) - 1;
+
+                String worker = null;
+                String reply = null;
+                String login = null;
+                boolean scatter = false;
+                if (is(commandStart, commandEnd, LOGIN)) {
+                    if (argumentCount == 1) {
+                        reply = "ERR token login is not supported by the router";
+                    } else if (argumentCount == 0) {
+                        worker = quoteWorker(current, username);
+                    } else {
+                        login = string(argumentStart, argumentEnd);
+                        worker = current.nodeFor(login);
+                    }
+                } else if (is(commandStart, commandEnd, REGISTER)) {
+                    worker = argumentCount > 0 ? current.nodeFor(string(argumentStart, argumentEnd))
+                            : quoteWorker(current, username);
+                } else if (is(commandStart, commandEnd, QUOTE_HOME) || is(commandStart, commandEnd, QUOTE_AUTO)) {
+                    worker = quoteWorker(current, username);
+                } else if (is(commandStart, commandEnd, ADD_POLICY) || is(commandStart, commandEnd, LIST)
+                        || is(commandStart, commandEnd, CANCEL)) {
+                    if (username == null) {
+                        reply = "ERR not logged in";
+                    } else {
+                        worker = current.nodeFor(username);
+                    }
+                } else if (is(commandStart, commandEnd, PORTFOLIO)) {
+                    scatter = true;
+                    reply = argumentCount > 0 ? "ERR too many arguments" : null;
+                } else {
+                    reply = "ERR unknown command";
+                }
+
+                if (worker != null && login == null && last != null && worker.equals(last.worker)
+                        && !last.scatter) {
+                    last.end = next;
+                    last.commands++;
+                } else {
+                    last = nextRun();
+                    last.worker = reply == null ? worker : null;
+                    last.scatter = scatter && reply == null;
+                    last.start = lineStart;
+                    last.end = next;
+                    last.commands = 1;
+                    last.reply = reply;
+                    last.login = login;
+                }
+                lineStart = next;
+                if (last.login != null) {
+                    return next;
+                }
+            }
+            return limit;
+        }
+
+        private Run nextRun() {
+            if (runCount == runs.size()) {
+                runs.add(new Run());
+            }
+            Run run = runs.get(runCount++);
+            run.failed = false;
+            return run;
+        }
+
+        private String quoteWorker(ShardRing current, String user) {
+            if (user != null) {
+                return current.nodeFor(user);
+            }
+            List<String> nodes = current.getNodes();
+            nextQuoteWorker = (nextQuoteWorker + 1) % nodes.size();
+            return nodes.get(nextQuoteWorker);
+        }
+
+        private void send(Run run, ShardRing current) {
+            if (run.scatter) {
+                for (String worker : current.getNodes()) {
+                    run.failed |= !send(worker, PORTFOLIO_REQUEST, 0, PORTFOLIO_REQUEST.length);
+                }
+            } else if (run.worker != null) {
+                run.failed = !send(run.worker, request.array(), request.arrayOffset() + run.start,
+                        run.end - run.start);
+            }
+        }
+
+        private boolean send(String worker, byte[] bytes, int offset, int length) {
+            if (failed.contains(worker)) {
+                return false;
+            }
+            try {
+                client(workers, worker).send(bytes, offset, length);
+                return true;
+            } catch (IOException e) {
+                failed.add(worker);
+                return false;
+            }
+        }
+
+        /**
+         * Writes the responses of one run and returns the first of them, or {@code null} if the worker failed.
+         */
+        private String receive(Run run, ShardRing current) {
+            if (run.reply != null) {
+                writeLine(run.reply);
+                return run.reply;
+            }
+            if (run.scatter) {
+                // every worker that was sent the request must be read, even after another one failed
+                PortfolioSummary total = new PortfolioSummary();
+                boolean complete = !run.failed;
+                for (String worker : current.getNodes()) {
+                    byte[] reply = receive(worker);
+                    try {
+                        if (reply != null) {
+                            total.add(PortfolioSummary.parse(expectOk(
+                                    new String(reply, StandardCharsets.US_ASCII).trim())));
+                            continue;
+                        }
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        // reported below
+                    }
+                    complete = false;
+                }
+                String line = complete ? "OK " + total : "ERR worker unavailable";
+                writeLine(line);
+                return line;
+            }
+            byte[] reply = run.failed ? null : receive(run.worker);
+            if (reply == null) {
+                for (int i = 0; i < run.commands; i++) {
+                    writeLine("ERR worker unavailable");
+                }
+                return null;
+            }
+            write(reply, reply.length);
+            int firstEnd = 0;
+            while (firstEnd < reply.length && reply[firstEnd] != '\n') {
+                firstEnd++;
+            }
+            return new String(reply, 0, firstEnd, StandardCharsets.US_ASCII);
+        }
+
+        private byte[] receive(String worker) {
+            CommandClient client = workers.get(worker);
+            if (client == null || failed.contains(worker)) {
+                return null;
+            }
+            try {
+                return client.receive();
+            } catch (IOException e) {
+                failed.add(worker);
+                return null;
+            }
+        }
+
+        private void writeLine(String line) {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+            write(bytes, bytes.length);
+        }
+
+        private void write(byte[] bytes, int length) {
+            if (response.remaining() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(
+                        Math.max(response.capacity() * 2, response.position() + length));
+                response.flip();
+                response = larger.put(response);
+            }
+            response.put(bytes, 0, length);
+        }
+
+        private int skipSpaces(int i, int end) {
+            while (i < end && request.get(i) == ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        private int tokenEnd(int i, int end) {
+            while (i < end && request.get(i) != ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        private int trimCarriageReturn(int end, int lineEnd) {
+            return end == lineEnd && end > 0 && request.get(end - 1) == '\r' ? end - 1 : end;
+        }
+
+        private int countTokens(int i, int end) {
+            int count = 0;
+            while ((i = skipSpaces(i, end)) < end) {
+                i = tokenEnd(i, end);
+                count++;
+            }
+            return count;
+        }
+
+        private boolean is(int start, int end, byte[] name) {
+            if (end - start != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (request.get(start + i) != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String string(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            request.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // the connection is being discarded anyway
+        }
+    }
+
+    /**
+     * Runs a router in front of existing workers, or, with {@code local}, measures a deployment of worker
+     * processes started on this machine: users are loaded through a router with one worker, and for every worker
+     * added the users are rebalanced, the portfolio totals are checked against those before the move, and the
+     * command throughput through the router is measured.
+     *
+     * @param args {@code port host:port...} to run a router, or {@code local [workers] [users] [seconds]}.
+     *             Defaults: {@code local 4 2000 3}.
+     * @throws Exception If a worker cannot be started or reached, or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && !args[0].equals("local")) {
+            try (ShardRouter router = new ShardRouter(Integer.parseInt(args[0]),
+                    List.of(args).subList(1, args.length))) {
+                System.out.println("Taylor Insurance router listening on port " + router.getPort()
+                        + " for workers " + router.getRing().getNodes());
+                router.serve();
+            }
+            return;
+        }
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        byte[] secret = new byte[24];
+        new SecureRandom().nextBytes(secret);
+        String adminSecret = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        List<Process> processes = new ArrayList<>();
+        try {
+            List<String> workers = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                Process process = startWorker(adminSecret);
+                processes.add(process);
+                workers.add("localhost:" + awaitPort(process));
+            }
+            try (ShardRouter router = new ShardRouter(0, workers.subList(0, 1), adminSecret)) {
+                router.start();
+                load(router.getPort(), users);
+                PortfolioSummary expected = router.portfolio();
+                System.out.println("Loaded " + users + " users: " + expected);
+                for (int i = 1; i <= workerCount; i++) {
+                    if (i > 1) {
+                        long start = System.nanoTime();
+                        int moved = router.addWorker(workers.get(i - 1));
+                        PortfolioSummary actual = router.portfolio();
+                        System.out.printf("Added worker %d: moved %d users in %d ms, portfolio %s%n", i, moved,
+                                (System.nanoTime() - start) / 1_000_000,
+                                actual.equals(expected) ? "unchanged" : "CHANGED to " + actual);
+                    }
+                    double rate = measure(router.getPort(), users, i * 4, seconds);
+                    System.out.printf("%d worker(s): %,.0f commands/sec%n", i, rate);
+                }
+            }
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    static Process startWorker(String adminSecret) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-Dtaylor.password.iterations=1000",
+                "-Dtaylor.admin.secret=" + adminSecret,
+                "-cp", System.getProperty("java.class.path"), "InsuranceConsoleApp", "--server", "0", "--commands");
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    static int awaitPort(Process process) throws IOException {
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = output.readLine()) != null) {
+            Matcher matcher = LISTENING.matcher(line);
+            if (matcher.find()) {
+                // keep draining the worker's output so it never blocks on a full pipe
+                Thread.ofVirtual().start(() -> output.lines().forEach(ignored -> { }));
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        throw new IOException("Worker exited before listening");
+    }
+
+    private static void load(int port, int users) throws IOException {
+        try (CommandClient client = new CommandClient("localhost", port)) {
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                String username = "shard-user-" + i;
+                batch.add("REGISTER " + username + " secret");
+                batch.add("LOGIN " + username + " secret");
+                batch.add("ADD_POLICY HOME " + (i % 60) + " detached " + (i % 3 == 0 ? "oil" : "other")
+                        + " urban " + (200_000 + i) + " 1000000");
+                batch.add("ADD_POLICY AUTO " + (20 + i % 50) + " " + (i % 4) + " Honda Civic " + (2005 + i % 20));
+                if (batch.size() >= CommandClient.DEFAULT_BATCH_SIZE || i == users - 1) {
+                    for (String response : client.execute(batch)) {
+                        expectOk(response);
+                    }
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private static double measure(int port, int users, int clients, int seconds) throws Exception {
+        LongAdder executed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        for (int c = 0; c < clients; c++) {
+            String username = "shard-user-" + (c * 7919 % users);
+            Thread.ofPlatform().start(() -> {
+                try (CommandClient client = new CommandClient("localhost", port)) {
+                    expectOk(client.execute(List.of("LOGIN " + username + " secret")).get(0));
+                    List<String> batch = new ArrayList<>();
+                    for (int i = 0; i < 50; i++) {
+                        batch.add("QUOTE_AUTO " + (20 + i) + " " + (i % 3) + " 2015");
+                        batch.add("LIST LIMIT 10");
+                    }
+                    while (System.nanoTime() < deadline) {
+                        client.execute(batch);
+                        executed.add(batch.size());
+                    }
+                } catch (IOException e) {
+                    System.err.println("Client failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return executed.sum() * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * The {@code SimulationResult} class holds the outcome of a {@link RiskSimulator} run: totals and quantile
+ * sketches of the premium of each policy, of the total premium of each scenario and of each scenario's loss ratio.
+ */
+public class SimulationResult {
+    private final long seed;
+    private final int scenarios;
+    private final long policies;
+    private final long claims;
+    private final QuantileSketch policyPremiums;
+    private final QuantileSketch totalPremiums;
+    private final QuantileSketch lossRatios;
+    private final double premium;
+    private final double loss;
+    private final long elapsedNanos;
+
+    SimulationResult(long seed, int scenarios, long policies, long claims, QuantileSketch policyPremiums,
+                     QuantileSketch totalPremiums, QuantileSketch lossRatios, double premium, double loss,
+                     long elapsedNanos) {
+        this.seed = seed;
+        this.scenarios = scenarios;
+        this.policies = policies;
+        this.claims = claims;
+        this.policyPremiums = policyPremiums;
+        this.totalPremiums = totalPremiums;
+        this.lossRatios = lossRatios;
+        this.premium = premium;
+        this.loss = loss;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the seed the run was derived from.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of simulated scenarios.
+     *
+     * @return The scenario count.
+     */
+    public int getScenarios() {
+        return scenarios;
+    }
+
+    /**
+     * Gets the number of simulated policies over all scenarios.
+     *
+     * @return The policy count.
+     */
+    public long getPolicies() {
+        return policies;
+    }
+
+    /**
+     * Gets the number of simulated claims over all scenarios.
+     *
+     * @return The claim count.
+     */
+    public long getClaims() {
+        return claims;
+    }
+
+    /**
+     * Gets the distribution of the premium of a single policy.
+     *
+     * @return The sketch of policy premiums.
+     */
+    public QuantileSketch getPolicyPremiums() {
+        return policyPremiums;
+    }
+
+    /**
+     * Gets the distribution of the total premium of a scenario's book.
+     *
+     * @return The sketch of scenario total premiums.
+     */
+    public QuantileSketch getTotalPremiums() {
+        return totalPremiums;
+    }
+
+    /**
+     * Gets the distribution of a scenario's loss ratio, its claim losses divided by its total premium.
+     *
+     * @return The sketch of scenario loss ratios.
+     */
+    public QuantileSketch getLossRatios() {
+        return lossRatios;
+    }
+
+    /**
+     * Gets the loss ratio over all scenarios together.
+     *
+     * @return The overall loss ratio.
+     */
+    public double getOverallLossRatio() {
+        return loss / premium;
+    }
+
+    /**
+     * Gets the time the run took.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns a summary of the run.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("Simulated %,d policies in %,d scenarios (seed %d): %,d claims, loss ratio %.4f, "
+                        + "in %.2f s (%,.0f policies/s)", policies, scenarios, seed, claims, getOverallLossRatio(),
+                seconds, seconds > 0 ? policies / seconds : 0);
+    }
+}
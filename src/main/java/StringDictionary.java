@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code StringDictionary} class assigns small integer codes to repeated string values,
+ * so that columnar stores can keep a compact code per row instead of a reference to a {@code String}.
+ * Codes are assigned in first-seen order starting at zero.
+ */
+public class StringDictionary {
+    private final int maxSize;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Constructs a new dictionary that holds at most the given number of distinct values.
+     *
+     * @param maxSize The maximum number of distinct values (e.g., 256 for byte codes).
+     */
+    public StringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the code for the given value, assigning a new code if the value has not been seen before.
+     *
+     * @param value The value to encode.
+     * @return The code of the value.
+     * @throws IllegalStateException If the dictionary is full and the value is new.
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (values.size() >= maxSize) {
+            throw new IllegalStateException("Dictionary is full (" + maxSize + " values), cannot encode: " + value);
+        }
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+        return code;
+    }
+
+    /**
+     * Returns the code for the given value without assigning a new one.
+     *
+     * @param value The value to look up.
+     * @return The code of the value, or {@code -1} if the value has not been encoded.
+     */
+    public int lookup(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Returns the value for the given code.
+     *
+     * @param code The code to decode.
+     * @return The original value.
+     */
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Returns the number of distinct values in the dictionary.
+     *
+     * @return The dictionary size.
+     */
+    public int size() {
+        return values.size();
+    }
+}
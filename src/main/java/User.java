@@ -1,55 +1,148 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * The {@code User} class represents a user in the system with a username, password, and a list of associated insurance policies.
+ * The {@code User} class represents a user in the system with a username, a salted password hash, and a list of associated insurance policies.
  * It provides methods for managing policies, verifying login credentials, and checking the status of active policies.
+ * <p>
+ * Several threads may act on one user at once, e.g. two sessions logged in to the same account, or renewals and
+ * re-pricing in the background. Changes to the user's policies and their active counts are serialized on the
+ * user's monitor. Code that looks up a policy by position and then changes the list, or iterates over
+ * {@link #getPolicies()}, must hold the monitor ({@code synchronized (user)}) for the whole operation; otherwise
+ * use {@link #copyPolicies()}.
  */
 public class User {
     private String username;
-    private String password;
+    private Credential credential;
     private List<Policy> policies;
+    private volatile int activeHomePolicyCount;
+    private volatile int activeAutoPolicyCount;
 
     /**
      * Constructs a new {@code User} object with the specified username and password.
+     * Only a salted hash of the password is kept; see {@link PasswordHasher}.
      * The user's list of policies is initially empty.
      *
      * @param username The username for the user.
      * @param password The password for the user.
      */
     public User(String username, String password) {
+        this(username, PasswordHasher.hash(password));
+    }
+
+    /**
+     * Constructs a new {@code User} object with an already hashed password, e.g. when recovering accounts.
+     *
+     * @param username   The username for the user.
+     * @param credential The hashed password of the user.
+     */
+    User(String username, Credential credential) {
         this.username = username;
-        this.password = password;
+        this.credential = credential;
         this.policies = new ArrayList<>();
     }
 
     /**
-     * Verifies the login credentials by comparing the provided username and password with the user's stored values.
+     * Verifies the login credentials by comparing the provided username with the user's and hashing the provided
+     * password with the user's salt. The hashes are compared in constant time.
+     * Hashing takes milliseconds of CPU; {@link AuthManager#authenticate(String, String)} runs it on a bounded pool.
      *
      * @param inputUsername The username to verify.
      * @param inputPassword The password to verify.
      * @return {@code true} if the provided username and password match the stored values, {@code false} otherwise.
      */
     public boolean verifyLogin(String inputUsername, String inputPassword) {
-        return username.equals(inputUsername) && password.equals(inputPassword);
+        return username.equals(inputUsername) && PasswordHasher.verify(inputPassword, credential);
     }
 
     /**
      * Adds a new {@code Policy} to the user's list of policies.
+     * The policy becomes owned by this user, so later cancellations keep the active policy counts up to date.
      *
      * @param policy The policy to add.
      */
-    public void addPolicy(Policy policy) {
+    public synchronized void addPolicy(Policy policy) {
+        if (policy.policyId == 0) {
+            policy.policyId = Policy.nextPolicyId();
+        }
         policies.add(policy);
+        policy.owner = this;
+        if (policy.isActive()) {
+            adjustActiveCount(policy, 1);
+        }
+        PolicyEvents.policyAdded(this, policy);
+    }
+
+    /**
+     * Removes the policy at the given position from the user's list of policies.
+     *
+     * @param index The position of the policy in the list returned by {@link #getPolicies()}.
+     * @return The removed policy.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public synchronized Policy removePolicy(int index) {
+        Policy policy = policies.remove(index);
+        if (policy.isActive()) {
+            adjustActiveCount(policy, -1);
+        }
+        policy.owner = null;
+        PolicyEvents.policyRemoved(this, policy);
+        return policy;
+    }
+
+    /**
+     * Finds the position of a policy in the user's list of policies by its identifier.
+     *
+     * @param policyId The identifier of the policy.
+     * @return The position of the policy, or {@code -1} if the user has no policy with that identifier.
+     */
+    public synchronized int indexOfPolicy(long policyId) {
+        for (int i = 0; i < policies.size(); i++) {
+            if (policies.get(i).policyId == policyId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Starts a paged listing of the user's policies.
+     *
+     * @return A listing of all the user's policies, to be narrowed and paged through.
+     */
+    public PolicyListing listPolicies() {
+        return new PolicyListing(this);
     }
 
     /**
      * Returns the list of {@code Policy} objects associated with the user.
+     * Policies are kept in the order they were added, which is ascending identifier order.
+     * The list is read-only; use {@link #addPolicy(Policy)} and {@link #removePolicy(int)} to change it.
+     * It is a live view: hold the user's monitor while using it if other threads may change the user's policies.
      *
      * @return A list of the user's policies.
      */
     public List<Policy> getPolicies() {
-        return policies;
+        return Collections.unmodifiableList(policies);
+    }
+
+    /**
+     * Copies the user's policies, consistently even while other threads are changing them.
+     *
+     * @return A new list of the user's policies, in the order of {@link #getPolicies()}.
+     */
+    public synchronized List<Policy> copyPolicies() {
+        return new ArrayList<>(policies);
+    }
+
+    /**
+     * Returns the stored password hash. Used only to persist the account.
+     *
+     * @return The credential of the user.
+     */
+    Credential getCredential() {
+        return credential;
     }
 
     /**
@@ -67,7 +160,7 @@ public class User {
      * @return {@code true} if the user has at least one active {@code HomePolicy}, {@code false} otherwise.
      */
     public boolean hasActiveHomePolicy() {
-        return policies.stream().anyMatch(policy -> policy instanceof HomePolicy && policy.isActive());
+        return activeHomePolicyCount > 0;
     }
 
     /**
@@ -76,7 +169,7 @@ public class User {
      * @return {@code true} if the user has at least one active {@code AutoPolicy}, {@code false} otherwise.
      */
     public boolean hasActiveAutoPolicy() {
-        return policies.stream().anyMatch(policy -> policy instanceof AutoPolicy && policy.isActive());
+        return activeAutoPolicyCount > 0;
     }
 
     /**
@@ -85,8 +178,32 @@ public class User {
      * @return The count of active {@code AutoPolicy} objects associated with the user.
      */
     public int getActiveAutoPolicyCount() {
-        return (int) policies.stream().filter(policy -> policy instanceof AutoPolicy && policy.isActive()).count();
+        return activeAutoPolicyCount;
     }
-}
 
+    /**
+     * Counts the number of active home insurance policies the user has.
+     *
+     * @return The count of active {@code HomePolicy} objects associated with the user.
+     */
+    public int getActiveHomePolicyCount() {
+        return activeHomePolicyCount;
+    }
+
+    /**
+     * Called by an owned policy when it stops being active.
+     *
+     * @param policy The policy that was deactivated.
+     */
+    synchronized void policyDeactivated(Policy policy) {
+        adjustActiveCount(policy, -1);
+    }
 
+    private void adjustActiveCount(Policy policy, int delta) {
+        if (policy instanceof HomePolicy) {
+            activeHomePolicyCount += delta;
+        } else if (policy instanceof AutoPolicy) {
+            activeAutoPolicyCount += delta;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code UserRegistry} class stores registered users by username and is safe for use by many sessions at once.
+ * <p>
+ * Users are kept in a {@link ConcurrentHashMap}, which locks individual hash bins on update, so lookups never block
+ * and registrations only contend when they land in the same bin. Registration is a single atomic
+ * {@code putIfAbsent}, so two sessions registering the same username cannot both succeed.
+ */
+public class UserRegistry {
+    private static final int DEFAULT_EXPECTED_USERS = 16;
+
+    private final ConcurrentHashMap<String, User> users;
+
+    /**
+     * Constructs an empty registry with a small default capacity.
+     */
+    public UserRegistry() {
+        this(DEFAULT_EXPECTED_USERS);
+    }
+
+    /**
+     * Constructs an empty registry whose table is pre-sized for the given number of users,
+     * so that loading them does not trigger incremental resizing.
+     *
+     * @param expectedUsers The number of users the registry is expected to hold.
+     */
+    public UserRegistry(int expectedUsers) {
+        this.users = new ConcurrentHashMap<>(Math.max(expectedUsers, DEFAULT_EXPECTED_USERS));
+    }
+
+    /**
+     * Looks up a user by username without locking.
+     *
+     * @param username The username to look up.
+     * @return The registered {@link User}, or {@code null} if no user has that username.
+     */
+    public User get(String username) {
+        return users.get(username);
+    }
+
+    /**
+     * Checks whether a username is already registered.
+     *
+     * @param username The username to check.
+     * @return {@code true} if the username is taken, {@code false} otherwise.
+     */
+    public boolean contains(String username) {
+        return users.containsKey(username);
+    }
+
+    /**
+     * Atomically registers a user if no user with the same username exists.
+     *
+     * @param user The user to register.
+     * @return {@code true} if the user was registered, {@code false} if the username was already taken.
+     */
+    public boolean register(User user) {
+        return users.putIfAbsent(user.getUsername(), user) == null;
+    }
+
+    /**
+     * Unregisters a user, unless the username has been registered again for another user in the meantime.
+     *
+     * @param user The user to remove.
+     * @return {@code true} if the user was removed.
+     */
+    public boolean remove(User user) {
+        return users.remove(user.getUsername(), user);
+    }
+
+    /**
+     * Loads many users at once, for example when restoring accounts at startup.
+     * Users are inserted in parallel; users whose username is already registered are skipped.
+     * For best results, construct the registry with the expected total number of users.
+     *
+     * @param batch The users to load.
+     * @return The number of users actually registered.
+     */
+    public long bulkLoad(Collection<User> batch) {
+        LongAdder loaded = new LongAdder();
+        batch.parallelStream().forEach(user -> {
+            if (register(user)) {
+                loaded.increment();
+            }
+        });
+        return loaded.sum();
+    }
+
+    /**
+     * Returns the number of registered users.
+     *
+     * @return The user count.
+     */
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Returns a live, read-only view of the registered users.
+     * Iteration is weakly consistent and never throws {@link java.util.ConcurrentModificationException}.
+     *
+     * @return The registered users.
+     */
+    public Collection<User> users() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * The {@code UserView} class is a flyweight over the user records of a {@link PolicySnapshot}.
+ * It reads fields straight from the mapped file; moving it to another user allocates nothing.
+ * A view is not thread-safe.
+ */
+public class UserView {
+    private final PolicySnapshot snapshot;
+    private long index;
+    private long offset;
+
+    UserView(PolicySnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.offset = snapshot.userOffset(0);
+    }
+
+    /**
+     * Positions the view on a user.
+     *
+     * @param index The index of the user, from 0 to {@link PolicySnapshot#getUserCount()} - 1.
+     * @return This view.
+     */
+    public UserView moveTo(long index) {
+        if (index < 0 || index >= snapshot.getUserCount()) {
+            throw new IndexOutOfBoundsException("User " + index + " of " + snapshot.getUserCount());
+        }
+        this.index = index;
+        this.offset = snapshot.userOffset(index);
+        return this;
+    }
+
+    /**
+     * Gets the index of the user the view is on.
+     *
+     * @return The user index.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the username. This decodes a new string.
+     *
+     * @return The username.
+     */
+    public String getUsername() {
+        return snapshot.string(snapshot.getInt(offset + 12));
+    }
+
+    /**
+     * Gets the index of the user's first policy; the user's policies follow it contiguously.
+     *
+     * @return The index of the first policy, for {@link PolicyView#moveTo(long)}.
+     */
+    public long getFirstPolicyIndex() {
+        return snapshot.getLong(offset);
+    }
+
+    /**
+     * Gets the number of policies of the user, active or not.
+     *
+     * @return The policy count.
+     */
+    public int getPolicyCount() {
+        return snapshot.getInt(offset + 8);
+    }
+
+    /**
+     * Gets the number of active home policies of the user.
+     *
+     * @return The active home policy count.
+     */
+    public int getActiveHomePolicyCount() {
+        return snapshot.getInt(offset + 16);
+    }
+
+    /**
+     * Gets the number of active auto policies of the user.
+     *
+     * @return The active auto policy count.
+     */
+    public int getActiveAutoPolicyCount() {
+        return snapshot.getInt(offset + 20);
+    }
+
+    /**
+     * Checks whether the user has an active home insurance policy.
+     *
+     * @return {@code true} if the user has at least one active home policy.
+     */
+    public boolean hasActiveHomePolicy() {
+        return getActiveHomePolicyCount() > 0;
+    }
+
+    /**
+     * Checks whether the user has an active auto insurance policy.
+     *
+     * @return {@code true} if the user has at least one active auto policy.
+     */
+    public boolean hasActiveAutoPolicy() {
+        return getActiveAutoPolicyCount() > 0;
+    }
+}
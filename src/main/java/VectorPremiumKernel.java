@@ -0,0 +1,156 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorPremiumKernel} class is the SIMD half of {@link PremiumKernel}. It is only loaded when the
+ * {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Each lane carries one policy. The scalar formulas keep the premium in a {@code float} and multiply it by
+ * {@code double} factors, rounding back to {@code float} after every step. The kernel does the same in
+ * {@code double} lanes: a {@code float} converts to {@code double} exactly, the multiplication is the same IEEE
+ * operation, and every step is followed by a round trip through {@code float} lanes. The {@code float}
+ * additions and multiplications of the scalar code are done in {@code double} and then rounded to {@code float},
+ * which gives the same result because {@code double} has more than twice the precision of {@code float}.
+ * Table lookups become comparisons against the band bounds and blends.
+ */
+final class VectorPremiumKernel {
+    private static final VectorSpecies<Double> DOUBLE = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLE.vectorBitSize() / 2));
+    private static final VectorSpecies<Integer> INT =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLE.vectorBitSize() / 2));
+
+    private VectorPremiumKernel() {
+    }
+
+    /**
+     * Returns the number of policies priced per vector operation.
+     */
+    static int lanes() {
+        return DOUBLE.length();
+    }
+
+    /**
+     * Prices whole vectors of home policies, leaving the tail to the caller.
+     *
+     * @return The number of policies priced, a multiple of {@link #lanes()}.
+     */
+    static int priceHome(RatingTables tables, float[] homeValues, int[] homeAges, int[] heatingCodes,
+                         int[] locationCodes, boolean[] highLiability, boolean[] autoDiscount,
+                         float[] premiums, int count) {
+        DoubleVector basePremium = DoubleVector.broadcast(DOUBLE, tables.homeBasePremium());
+        double threshold = tables.getHomeValueThreshold();
+        double valueRate = tables.homeValueRate();
+        double lowLiability = tables.liabilityFactor(false);
+        double highLiabilityFactor = tables.liabilityFactor(true);
+        DoubleVector ageFactors = DoubleVector.broadcast(DOUBLE, tables.homeAgeBandFactor(0));
+        double over25 = tables.homeAgeBandFactor(1);
+        double over50 = tables.homeAgeBandFactor(2);
+        double oil = tables.heatingFactor(HeatingType.OIL);
+        double wood = tables.heatingFactor(HeatingType.WOOD);
+        DoubleVector otherHeating = DoubleVector.broadcast(DOUBLE, tables.heatingFactor(HeatingType.OTHER));
+        DoubleVector urban = DoubleVector.broadcast(DOUBLE, tables.locationFactor(LocationType.URBAN));
+        double rural = tables.locationFactor(LocationType.RURAL);
+        double discount = tables.multiPolicyDiscount();
+        double tax = tables.tax();
+
+        int bound = DOUBLE.loopBound(count);
+        for (int i = 0; i < bound; i += DOUBLE.length()) {
+            DoubleVector homeValue = (DoubleVector) FloatVector.fromArray(FLOAT, homeValues, i)
+                    .convertShape(VectorOperators.F2D, DOUBLE, 0);
+            DoubleVector homeAge = toDouble(homeAges, i);
+            DoubleVector heating = toDouble(heatingCodes, i);
+            DoubleVector location = toDouble(locationCodes, i);
+            checkCodes(heating, HeatingType.values().length, "heating", i);
+            checkCodes(location, LocationType.values().length, "location", i);
+
+            DoubleVector premium = basePremium;
+            DoubleVector surcharge = roundToFloat(roundToFloat(homeValue.sub(threshold)).mul(valueRate));
+            premium = premium.blend(roundToFloat(premium.add(surcharge)),
+                    homeValue.compare(VectorOperators.GT, threshold));
+
+            premium = roundToFloat(premium.mul(DoubleVector.broadcast(DOUBLE, lowLiability)
+                    .blend(highLiabilityFactor, VectorMask.fromArray(DOUBLE, highLiability, i))));
+            premium = roundToFloat(premium.mul(ageFactors
+                    .blend(over25, homeAge.compare(VectorOperators.GT, 25))
+                    .blend(over50, homeAge.compare(VectorOperators.GT, 50))));
+            premium = roundToFloat(premium.mul(otherHeating
+                    .blend(oil, heating.compare(VectorOperators.EQ, HeatingType.OIL.ordinal()))
+                    .blend(wood, heating.compare(VectorOperators.EQ, HeatingType.WOOD.ordinal()))));
+            premium = roundToFloat(premium.mul(urban
+                    .blend(rural, location.compare(VectorOperators.EQ, LocationType.RURAL.ordinal()))));
+            premium = premium.blend(roundToFloat(premium.mul(discount)), VectorMask.fromArray(DOUBLE, autoDiscount, i));
+
+            ((FloatVector) premium.mul(tax).convertShape(VectorOperators.D2F, FLOAT, 0)).intoArray(premiums, i);
+        }
+        return bound;
+    }
+
+    /**
+     * Prices whole vectors of auto policies, leaving the tail to the caller.
+     *
+     * @return The number of policies priced, a multiple of {@link #lanes()}.
+     */
+    static int priceAuto(RatingTables tables, int[] driverAges, int[] accidentCounts, int[] vehicleYears,
+                         int currentYear, boolean[] homeDiscount, float[] premiums, int count) {
+        DoubleVector basePremium = DoubleVector.broadcast(DOUBLE, tables.autoBasePremium());
+        DoubleVector under25 = DoubleVector.broadcast(DOUBLE, tables.driverAgeBandFactor(0));
+        double over24 = tables.driverAgeBandFactor(1);
+        DoubleVector noAccidents = DoubleVector.broadcast(DOUBLE, tables.accidentBandFactor(0));
+        double oneAccident = tables.accidentBandFactor(1);
+        double twoAccidents = tables.accidentBandFactor(2);
+        double threeAccidents = tables.accidentBandFactor(3);
+        DoubleVector newVehicle = DoubleVector.broadcast(DOUBLE, tables.vehicleAgeBandFactor(0));
+        double over5 = tables.vehicleAgeBandFactor(1);
+        double over10 = tables.vehicleAgeBandFactor(2);
+        double discount = tables.multiPolicyDiscount();
+        double tax = tables.tax();
+
+        int bound = DOUBLE.loopBound(count);
+        for (int i = 0; i < bound; i += DOUBLE.length()) {
+            DoubleVector driverAge = toDouble(driverAges, i);
+            DoubleVector accidents = toDouble(accidentCounts, i);
+            DoubleVector vehicleAge = (DoubleVector) IntVector.broadcast(INT, currentYear)
+                    .sub(IntVector.fromArray(INT, vehicleYears, i))
+                    .convertShape(VectorOperators.I2D, DOUBLE, 0);
+
+            DoubleVector premium = basePremium;
+            premium = roundToFloat(premium.mul(under25
+                    .blend(over24, driverAge.compare(VectorOperators.GE, 25))));
+            premium = roundToFloat(premium.mul(noAccidents
+                    .blend(oneAccident, accidents.compare(VectorOperators.GE, 1))
+                    .blend(twoAccidents, accidents.compare(VectorOperators.GE, 2))
+                    .blend(threeAccidents, accidents.compare(VectorOperators.GE, 3))));
+            premium = roundToFloat(premium.mul(newVehicle
+                    .blend(over5, vehicleAge.compare(VectorOperators.GT, 5))
+                    .blend(over10, vehicleAge.compare(VectorOperators.GT, 10))));
+            premium = premium.blend(roundToFloat(premium.mul(discount)), VectorMask.fromArray(DOUBLE, homeDiscount, i));
+
+            ((FloatVector) premium.mul(tax).convertShape(VectorOperators.D2F, FLOAT, 0)).intoArray(premiums, i);
+        }
+        return bound;
+    }
+
+    private static DoubleVector toDouble(int[] values, int offset) {
+        return (DoubleVector) IntVector.fromArray(INT, values, offset).convertShape(VectorOperators.I2D, DOUBLE, 0);
+    }
+
+    /**
+     * Rounds every lane to the nearest {@code float}, as a {@code (float)} cast of the scalar code does.
+     */
+    private static DoubleVector roundToFloat(DoubleVector value) {
+        return (DoubleVector) value.convertShape(VectorOperators.D2F, FLOAT, 0)
+                .convertShape(VectorOperators.F2D, DOUBLE, 0);
+    }
+
+    private static void checkCodes(DoubleVector codes, int limit, String name, int offset) {
+        if (codes.compare(VectorOperators.LT, 0).or(codes.compare(VectorOperators.GE, limit)).anyTrue()) {
+            throw new IllegalArgumentException("Invalid " + name + " code near index " + offset);
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import java.time.Year;
+import java.time.LocalDate;
 
 /**
  * The {@code Vehicle} class represents a vehicle with details such as make, model, and year.
@@ -50,12 +50,22 @@ public class Vehicle {
     }
 
     /**
-     * Calculates and returns the age of the vehicle based on the current year.
+     * Calculates and returns the age of the vehicle based on the current year of the {@link RatingClock}.
      *
      * @return The age of the vehicle in years.
      */
     public int getAge() {
-        return Year.now().getValue() - year;
+        return RatingClock.current().currentYear() - year;
+    }
+
+    /**
+     * Calculates the age the vehicle has on the given date.
+     *
+     * @param asOf The date to compute the age for.
+     * @return The age of the vehicle in years.
+     */
+    public int getAge(LocalDate asOf) {
+        return asOf.getYear() - year;
     }
 }
 
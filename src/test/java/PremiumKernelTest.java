@@ -0,0 +1,251 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link PremiumKernel} prices exactly as {@link RatingTables} does, on the vectorized and the scalar
+ * path, for inputs on and around every band bound and for batch sizes that leave a scalar tail.
+ */
+class PremiumKernelTest {
+    private static final int CURRENT_YEAR = 2026;
+
+    private RatingTables defaults;
+
+    @BeforeEach
+    void setUp() {
+        defaults = RatingTables.current();
+        RatingRules.install(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RatingTables.install(defaults);
+    }
+
+    @Test
+    void runsWithTheVectorModule() {
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "tests must run with --add-modules jdk.incubator.vector to cover the vectorized path");
+    }
+
+    @Test
+    void homePremiumsMatchTablesWithDefaultFactors() {
+        checkHome(RatingTables.current());
+    }
+
+    @Test
+    void homePremiumsMatchTablesWithRandomFactors() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5; i++) {
+            RatingTables tables = randomTables(random);
+            RatingTables.install(tables);
+            checkHome(tables);
+        }
+    }
+
+    @Test
+    void autoPremiumsMatchTablesWithDefaultFactors() {
+        checkAuto(RatingTables.current());
+    }
+
+    @Test
+    void autoPremiumsMatchTablesWithRandomFactors() {
+        Random random = new Random(43);
+        for (int i = 0; i < 5; i++) {
+            RatingTables tables = randomTables(random);
+            RatingTables.install(tables);
+            checkAuto(tables);
+        }
+    }
+
+    @Test
+    void everyBatchSizeUpToSeveralVectorsMatches() {
+        RatingTables tables = RatingTables.current();
+        HomeBatch home = HomeBatch.of(tables);
+        AutoBatch auto = AutoBatch.of();
+        int largest = Math.min(Math.min(home.count(), auto.count()), 4 * Math.max(1, VectorPremiumKernel.lanes()) + 3);
+        for (int count = 0; count <= largest; count++) {
+            home.check(tables, count);
+            auto.check(tables, count);
+        }
+    }
+
+    private static void checkHome(RatingTables tables) {
+        HomeBatch batch = HomeBatch.of(tables);
+        batch.check(tables, batch.count());
+        batch.check(tables, batch.count() - 1);
+    }
+
+    private static void checkAuto(RatingTables tables) {
+        AutoBatch batch = AutoBatch.of();
+        batch.check(tables, batch.count());
+        batch.check(tables, batch.count() - 1);
+    }
+
+    private static void assertSamePremium(float expected, float actual, String message) {
+        assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual),
+                () -> message + ": expected " + expected + " but was " + actual);
+    }
+
+    private static RatingTables randomTables(Random random) {
+        Properties properties = new Properties();
+        for (String key : new String[]{"home.liability.2M", "home.age.over25", "home.age.over50", "home.heating.oil",
+                "home.heating.wood", "home.heating.other", "home.location.rural", "home.location.urban",
+                "auto.driver.under25", "auto.accidents.1", "auto.accidents.2", "auto.accidents.3plus",
+                "auto.vehicle.over5", "auto.vehicle.over10", "discount.multiPolicy"}) {
+            properties.setProperty(key, Double.toString(0.5 + 2 * random.nextDouble()));
+        }
+        properties.setProperty("home.basePremium", Float.toString(100 + 900 * random.nextFloat()));
+        properties.setProperty("home.valueThreshold", Float.toString(100_000 + 400_000 * random.nextFloat()));
+        properties.setProperty("home.valueRate", Float.toString(0.01f * random.nextFloat()));
+        properties.setProperty("auto.basePremium", Float.toString(100 + 900 * random.nextFloat()));
+        properties.setProperty("tax", Float.toString(1 + 0.3f * random.nextFloat()));
+        return new RatingTables(properties);
+    }
+
+    /**
+     * Every combination of home inputs on and around the band bounds and the value threshold.
+     */
+    private static final class HomeBatch {
+        final float[] homeValues;
+        final int[] homeAges;
+        final int[] heatingCodes;
+        final int[] locationCodes;
+        final boolean[] highLiability;
+        final boolean[] autoDiscount;
+
+        private HomeBatch(int count) {
+            homeValues = new float[count];
+            homeAges = new int[count];
+            heatingCodes = new int[count];
+            locationCodes = new int[count];
+            highLiability = new boolean[count];
+            autoDiscount = new boolean[count];
+        }
+
+        static HomeBatch of(RatingTables tables) {
+            float threshold = tables.getHomeValueThreshold();
+            float[] values = {0, 1, threshold - 1, Math.nextDown(threshold), threshold, Math.nextUp(threshold),
+                    threshold + 1, 333_333.33f, 1_000_000, 12_345_678.9f};
+            int[] ages = {0, 1, 24, 25, 26, 27, 49, 50, 51, 52, 120};
+            List<int[]> combinations = new ArrayList<>();
+            for (int value = 0; value < values.length; value++) {
+                for (int age : ages) {
+                    for (int heating = 0; heating < HeatingType.values().length; heating++) {
+                        for (int location = 0; location < LocationType.values().length; location++) {
+                            for (int flags = 0; flags < 4; flags++) {
+                                combinations.add(new int[]{value, age, heating, location, flags});
+                            }
+                        }
+                    }
+                }
+            }
+            HomeBatch batch = new HomeBatch(combinations.size());
+            for (int i = 0; i < combinations.size(); i++) {
+                int[] combination = combinations.get(i);
+                batch.homeValues[i] = values[combination[0]];
+                batch.homeAges[i] = combination[1];
+                batch.heatingCodes[i] = combination[2];
+                batch.locationCodes[i] = combination[3];
+                batch.highLiability[i] = (combination[4] & 1) != 0;
+                batch.autoDiscount[i] = (combination[4] & 2) != 0;
+            }
+            return batch;
+        }
+
+        int count() {
+            return homeValues.length;
+        }
+
+        void check(RatingTables tables, int count) {
+            float[] kernel = new float[count() + 1];
+            float[] scalar = new float[count() + 1];
+            kernel[count] = -1;
+            PremiumKernel.priceHome(homeValues, homeAges, heatingCodes, locationCodes, highLiability, autoDiscount,
+                    kernel, count);
+            PremiumKernel.priceHomeScalar(homeValues, homeAges, heatingCodes, locationCodes, highLiability,
+                    autoDiscount, scalar, count);
+            for (int i = 0; i < count; i++) {
+                float expected = tables.rateHome(homeValues[i], homeAges[i], HeatingType.values()[heatingCodes[i]],
+                        LocationType.values()[locationCodes[i]], highLiability[i] ? 2_000_000f : 1_000_000f,
+                        autoDiscount[i]);
+                String policy = "home policy " + i + " of " + count + " (value " + homeValues[i] + ", age "
+                        + homeAges[i] + ")";
+                assertSamePremium(expected, kernel[i], policy + ", kernel");
+                assertSamePremium(expected, scalar[i], policy + ", scalar");
+            }
+            assertSamePremium(-1, kernel[count], "premium written past the batch");
+        }
+    }
+
+    /**
+     * Every combination of auto inputs on and around the band bounds.
+     */
+    private static final class AutoBatch {
+        final int[] driverAges;
+        final int[] accidentCounts;
+        final int[] vehicleYears;
+        final boolean[] homeDiscount;
+
+        private AutoBatch(int count) {
+            driverAges = new int[count];
+            accidentCounts = new int[count];
+            vehicleYears = new int[count];
+            homeDiscount = new boolean[count];
+        }
+
+        static AutoBatch of() {
+            int[] driverAges = {16, 23, 24, 25, 26, 90};
+            int[] accidentCounts = {0, 1, 2, 3, 4, 12};
+            int[] vehicleAges = {-1, 0, 4, 5, 6, 9, 10, 11, 12, 40};
+            int count = driverAges.length * accidentCounts.length * vehicleAges.length * 2;
+            AutoBatch batch = new AutoBatch(count);
+            int i = 0;
+            for (int driverAge : driverAges) {
+                for (int accidentCount : accidentCounts) {
+                    for (int vehicleAge : vehicleAges) {
+                        for (int discount = 0; discount < 2; discount++) {
+                            batch.driverAges[i] = driverAge;
+                            batch.accidentCounts[i] = accidentCount;
+                            batch.vehicleYears[i] = CURRENT_YEAR - vehicleAge;
+                            batch.homeDiscount[i] = discount == 1;
+                            i++;
+                        }
+                    }
+                }
+            }
+            return batch;
+        }
+
+        int count() {
+            return driverAges.length;
+        }
+
+        void check(RatingTables tables, int count) {
+            float[] kernel = new float[count() + 1];
+            float[] scalar = new float[count() + 1];
+            kernel[count] = -1;
+            PremiumKernel.priceAuto(driverAges, accidentCounts, vehicleYears, CURRENT_YEAR, homeDiscount, kernel,
+                    count);
+            PremiumKernel.priceAutoScalar(driverAges, accidentCounts, vehicleYears, CURRENT_YEAR, homeDiscount,
+                    scalar, count);
+            for (int i = 0; i < count; i++) {
+                float expected = tables.rateAuto(driverAges[i], accidentCounts[i], CURRENT_YEAR - vehicleYears[i],
+                        homeDiscount[i]);
+                String policy = "auto policy " + i + " of " + count + " (driver " + driverAges[i] + ", accidents "
+                        + accidentCounts[i] + ", vehicle " + vehicleYears[i] + ")";
+                assertSamePremium(expected, kernel[i], policy + ", kernel");
+                assertSamePremium(expected, scalar[i], policy + ", scalar");
+            }
+            assertSamePremium(-1, kernel[count], "premium written past the batch");
+        }
+    }
+}
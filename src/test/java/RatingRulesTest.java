@@ -0,0 +1,127 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link RatingRules#DEFAULT_RULES} price exactly as the default {@link RatingTables} do, on random
+ * inputs and on and around every band bound, and that installing rules takes effect for cached quotes.
+ */
+class RatingRulesTest {
+    private static final RatingTables DEFAULT_TABLES = new RatingTables(new Properties());
+
+    private RatingTables previous;
+    private RatingRules defaults;
+
+    @BeforeEach
+    void setUp() {
+        previous = RatingTables.current();
+        RatingTables.install(DEFAULT_TABLES);
+        RatingRules.install(null);
+        defaults = RatingRules.compile(RatingRules.DEFAULT_RULES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RatingRules.install(null);
+        RatingTables.install(previous);
+    }
+
+    @Test
+    void defaultRulesMatchTablesOnRandomInputs() {
+        Random random = new Random(42);
+        HeatingType[] heatingTypes = HeatingType.values();
+        LocationType[] locations = LocationType.values();
+        for (int i = 0; i < 200_000; i++) {
+            float homeValue = random.nextInt(4) == 0
+                    ? 250_000f + random.nextInt(3) - 1
+                    : 1_000_000 * random.nextFloat();
+            int homeAge = random.nextInt(120) - 10;
+            HeatingType heating = heatingTypes[random.nextInt(heatingTypes.length)];
+            LocationType location = locations[random.nextInt(locations.length)];
+            float liabilityLimit = random.nextBoolean() ? 2_000_000f : 1_000_000f;
+            boolean discount = random.nextBoolean();
+            checkHome(homeValue, homeAge, heating, location, liabilityLimit, discount);
+            checkAuto(random.nextInt(100) - 5, random.nextInt(8) - 2, random.nextInt(30) - 3, discount);
+        }
+    }
+
+    @Test
+    void defaultRulesMatchTablesOnBandBounds() {
+        float threshold = DEFAULT_TABLES.getHomeValueThreshold();
+        float[] homeValues = {0, 1, threshold - 1, Math.nextDown(threshold), threshold, Math.nextUp(threshold),
+                threshold + 1, 1_000_000, 12_345_678.9f};
+        int[] homeAges = {-1, 0, 24, 25, 26, 49, 50, 51, 120};
+        float[] liabilityLimits = {1_000_000f, Math.nextDown(2_000_000f), 2_000_000f, Math.nextUp(2_000_000f)};
+        for (float homeValue : homeValues) {
+            for (int homeAge : homeAges) {
+                for (HeatingType heating : HeatingType.values()) {
+                    for (LocationType location : LocationType.values()) {
+                        for (float liabilityLimit : liabilityLimits) {
+                            checkHome(homeValue, homeAge, heating, location, liabilityLimit, false);
+                            checkHome(homeValue, homeAge, heating, location, liabilityLimit, true);
+                        }
+                    }
+                }
+            }
+        }
+        for (int driverAge : new int[]{-1, 0, 16, 24, 25, 26, 90}) {
+            for (int accidentCount : new int[]{-1, 0, 1, 2, 3, 4, 12}) {
+                for (int vehicleAge : new int[]{-1, 0, 4, 5, 6, 9, 10, 11, 40}) {
+                    checkAuto(driverAge, accidentCount, vehicleAge, false);
+                    checkAuto(driverAge, accidentCount, vehicleAge, true);
+                }
+            }
+        }
+    }
+
+    @Test
+    void installedRulesReplaceCachedQuotes() {
+        AutoQuoteInput quote = new AutoQuoteInput(30, 0, RatingClock.current().currentYear() - 3);
+        float tablesPremium = QuoteCache.shared().priceAuto(quote);
+        assertSamePremium(DEFAULT_TABLES.rateAuto(30, 0, 3, false), tablesPremium, "tables before install");
+
+        RatingRules.install(RatingRules.compile("home:\n    base 1\nauto:\n    base 2\n"));
+        assertSamePremium(2, QuoteCache.shared().priceAuto(quote), "rules after install");
+
+        RatingRules.install(null);
+        assertSamePremium(tablesPremium, QuoteCache.shared().priceAuto(quote), "tables after uninstall");
+    }
+
+    @Test
+    void malformedRulesNameTheLine() {
+        IllegalArgumentException unknownStep = assertThrows(IllegalArgumentException.class,
+                () -> RatingRules.compile("home:\n    base 500\n    bogus 1\nauto:\n    base 750\n"));
+        assertTrue(unknownStep.getMessage().contains("line 3"), unknownStep.getMessage());
+        IllegalArgumentException unknownInput = assertThrows(IllegalArgumentException.class,
+                () -> RatingRules.compile("home:\n    base 500\nauto:\n    base 750\n    factor 2 if homeAge > 5\n"));
+        assertTrue(unknownInput.getMessage().contains("line 5"), unknownInput.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> RatingRules.compile("home:\n    base 500\n"));
+    }
+
+    private void checkHome(float homeValue, int homeAge, HeatingType heating, LocationType location,
+                           float liabilityLimit, boolean discount) {
+        assertSamePremium(DEFAULT_TABLES.rateHome(homeValue, homeAge, heating, location, liabilityLimit, discount),
+                defaults.rateHome(homeValue, homeAge, heating, location, liabilityLimit, discount),
+                "home (value " + homeValue + ", age " + homeAge + ", " + heating + ", " + location + ", limit "
+                        + liabilityLimit + ", discount " + discount + ")");
+    }
+
+    private void checkAuto(int driverAge, int accidentCount, int vehicleAge, boolean discount) {
+        assertSamePremium(DEFAULT_TABLES.rateAuto(driverAge, accidentCount, vehicleAge, discount),
+                defaults.rateAuto(driverAge, accidentCount, vehicleAge, discount),
+                "auto (driver " + driverAge + ", accidents " + accidentCount + ", vehicle " + vehicleAge
+                        + ", discount " + discount + ")");
+    }
+
+    private static void assertSamePremium(float expected, float actual, String message) {
+        assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual),
+                () -> message + ": expected " + expected + " but was " + actual);
+    }
+}
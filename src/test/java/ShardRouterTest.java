@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that adding a worker moves users with non-ASCII usernames to the worker the new ring assigns them to,
+ * with two worker processes on the loopback interface.
+ */
+class ShardRouterTest {
+    private static final String ADMIN_SECRET = "shard-router-test";
+    private static final int USERS = 40;
+
+    private final List<Process> processes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    @Test
+    void addWorkerMovesNonAsciiUsers() throws IOException {
+        List<String> workers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Process process = ShardRouter.startWorker(ADMIN_SECRET);
+            processes.add(process);
+            workers.add("localhost:" + ShardRouter.awaitPort(process));
+        }
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            usernames.add((i % 2 == 0 ? "José-" : "Zoë-") + i);
+        }
+        try (ShardRouter router = new ShardRouter(0, workers.subList(0, 1), ADMIN_SECRET)) {
+            router.start();
+            try (CommandClient client = new CommandClient("localhost", router.getPort())) {
+                List<String> commands = new ArrayList<>();
+                for (String username : usernames) {
+                    commands.add("REGISTER " + username + " secret");
+                    commands.add("LOGIN " + username + " secret");
+                    commands.add("ADD_POLICY AUTO 30 0 Honda Civic 2020");
+                }
+                client.execute(commands).forEach(ShardRouterTest::assertOk);
+            }
+            PortfolioSummary before = router.portfolio();
+
+            int moved = router.addWorker(workers.get(1));
+
+            assertTrue(moved > 0, "no user moved");
+            assertEquals(before, router.portfolio());
+            for (String username : usernames) {
+                String owner = router.getRing().nodeFor(username);
+                for (String worker : workers) {
+                    int colon = worker.lastIndexOf(':');
+                    try (CommandClient client = new CommandClient("localhost",
+                            Integer.parseInt(worker.substring(colon + 1)))) {
+                        String reply = client.execute(List.of("LOGIN " + username + " secret")).get(0);
+                        assertEquals(worker.equals(owner), reply.startsWith("OK"), username + " on " + worker);
+                    }
+                }
+            }
+            try (CommandClient client = new CommandClient("localhost", router.getPort())) {
+                List<String> replies = client.execute(List.of("LOGIN " + usernames.get(0) + " secret", "LIST"));
+                assertOk(replies.get(0));
+                assertTrue(replies.get(1).startsWith("OK 0 1 "), replies.get(1));
+            }
+        }
+    }
+
+    private static void assertOk(String reply) {
+        assertTrue(reply.startsWith("OK"), reply);
+    }
+}